@@ -5,6 +5,7 @@ module org.mbari.cthulhu {
     requires com.google.gson;
     requires com.google.common;
     requires io.reactivex.rxjava3;
+    requires java.desktop;
     requires javafx.controls;
     requires miglayout.javafx;
     requires miglayout.core;
@@ -0,0 +1,269 @@
+package org.mbari.cthulhu.annotations;
+
+import org.mbari.cthulhu.model.Annotation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * A position in the media timeline that tracks the set of active annotations as that position moves, reporting only the annotations that entered or exited
+ * the active set at each step.
+ * <p>
+ * During normal forward playback the work done at each step is proportional to the number of annotations that changed, not the number that are visible:
+ * <ul>
+ *     <li>annotations that entered are found by a query of the interval tree for intervals starting after the previous position, up to and including the new
+ *     position;</li>
+ *     <li>annotations that exited are taken from the head of a queue of the currently active annotations ordered by their end time.</li>
+ * </ul>
+ * If the annotations have changed since the previous step, the new active set is compared with the previous one by store row, so adding, removing or
+ * changing a few annotations reports just those annotations. The active set is instead rebuilt from scratch, and the step reports a replacement of the entire
+ * active set, if the position moves backwards, jumps forwards by a large amount, or the annotation store itself was replaced (e.g. by a load, or a bulk
+ * rebuild).
+ * <p>
+ * A cursor is not thread-safe, it is intended to be driven from a single thread (i.e. the JavaFX application thread). The delta returned from each step is
+ * owned by the cursor and is only valid until the next step.
+ */
+final class ActiveSetCursor implements IntervalTree.Visitor {
+
+    /**
+     * Largest forward step, in milliseconds, that is handled incrementally - anything larger is treated as a seek.
+     */
+    private static final long MAX_INCREMENTAL_STEP = 10_000;
+
+    private final AnnotationManager annotationManager;
+
+    /**
+     * Currently active annotations, ordered by the (padded) end time of their interval.
+     */
+    private final PriorityQueue<Active> active = new PriorityQueue<>(Comparator.comparingLong(Active::end));
+
+    private final Delta delta = new Delta();
+
+    /**
+     * Snapshot of the annotations at the previous step, or {@code null} if the cursor is not positioned.
+     */
+    private AnnotationManager.Snapshot snapshot;
+
+    /**
+     * Time of the previous step.
+     */
+    private long time;
+
+    /**
+     * Create a cursor.
+     *
+     * @param annotationManager annotation manager that owns the annotations
+     */
+    ActiveSetCursor(AnnotationManager annotationManager) {
+        this.annotationManager = annotationManager;
+    }
+
+    /**
+     * Move the cursor to a new position.
+     *
+     * @param elapsedTime new position
+     * @return changes to the active set, valid until the next step
+     */
+    Delta step(long elapsedTime) {
+        AnnotationManager.Snapshot current = annotationManager.snapshot();
+        delta.clear();
+        if (snapshot == null || current.generation != snapshot.generation || elapsedTime < time || elapsedTime - time > MAX_INCREMENTAL_STEP) {
+            replace(current, elapsedTime);
+        } else if (current != snapshot) {
+            reconcile(current, elapsedTime);
+        } else if (elapsedTime != time) {
+            advance(elapsedTime);
+        }
+        return delta;
+    }
+
+    /**
+     * Reset the cursor, the next step will report a replacement of the entire active set.
+     */
+    void reset() {
+        active.clear();
+        snapshot = null;
+    }
+
+    @Override
+    public void visit(long start, long end, long sequence) {
+        // Only the annotations that enter the active set are ever created
+        int row = (int) sequence;
+        Annotation annotation = snapshot.rows.annotation(row);
+        active.add(new Active(end, row, snapshot.rows.revision(row), annotation));
+        delta.entered.add(annotation);
+    }
+
+    private void advance(long elapsedTime) {
+        while (!active.isEmpty() && active.peek().end < elapsedTime) {
+            delta.exited.add(active.poll().annotation);
+        }
+        snapshot.tree.visitStarting(time, elapsedTime, elapsedTime, this);
+        time = elapsedTime;
+    }
+
+    /**
+     * Compare the active set of a newer snapshot, of the same store, with the previous active set.
+     * <p>
+     * The work done is proportional to the number of active annotations, and only annotations that entered, exited or changed are created.
+     *
+     * @param current newer snapshot
+     * @param elapsedTime new position
+     */
+    private void reconcile(AnnotationManager.Snapshot current, long elapsedTime) {
+        Map<Integer, Active> previous = new HashMap<>(active.size() * 2);
+        active.forEach(entry -> previous.put(entry.row, entry));
+        active.clear();
+        snapshot = current;
+        current.tree.visitContaining(elapsedTime, (start, end, sequence) -> {
+            Active entry = previous.remove((int) sequence);
+            if (entry == null) {
+                visit(start, end, sequence);
+            } else if (entry.revision != current.rows.revision(entry.row)) {
+                Annotation annotation = current.rows.annotation(entry.row);
+                active.add(new Active(end, entry.row, current.rows.revision(entry.row), annotation));
+                delta.changed.add(annotation);
+            } else {
+                active.add(entry);
+            }
+        });
+        // Whatever was not found again was either removed or is no longer in range
+        previous.values().forEach(entry -> delta.exited.add(entry.annotation));
+        time = elapsedTime;
+    }
+
+    private void replace(AnnotationManager.Snapshot current, long elapsedTime) {
+        active.clear();
+        delta.replaced = true;
+        snapshot = current;
+        current.tree.visitContaining(elapsedTime, this);
+        time = elapsedTime;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("time", time)
+            .add("active", active.size())
+            .toString();
+    }
+
+    /**
+     * An active annotation, the (padded) end time of its interval, and the row and revision it was created from.
+     */
+    private static final class Active {
+
+        private final long end;
+
+        private final int row;
+
+        private final int revision;
+
+        private final Annotation annotation;
+
+        private Active(long end, int row, int revision, Annotation annotation) {
+            this.end = end;
+            this.row = row;
+            this.revision = revision;
+            this.annotation = annotation;
+        }
+
+        private long end() {
+            return end;
+        }
+    }
+
+    /**
+     * Changes to the active set resulting from a single step of the cursor.
+     */
+    static final class Delta {
+
+        private final List<Annotation> entered = new ArrayList<>();
+
+        private final List<Annotation> exited = new ArrayList<>();
+
+        private final List<Annotation> changed = new ArrayList<>();
+
+        private final List<Annotation> enteredView = unmodifiableList(entered);
+
+        private final List<Annotation> exitedView = unmodifiableList(exited);
+
+        private final List<Annotation> changedView = unmodifiableList(changed);
+
+        private boolean replaced;
+
+        private Delta() {
+        }
+
+        /**
+         * Check whether the entire active set was replaced.
+         * <p>
+         * If so, {@link #entered()} contains the complete active set and {@link #exited()} and {@link #changed()} are empty.
+         *
+         * @return {@code true} if the active set was replaced; {@code false} if this is an incremental change
+         */
+        boolean replaced() {
+            return replaced;
+        }
+
+        /**
+         * Get the annotations that became active.
+         *
+         * @return unmodifiable list of annotations
+         */
+        List<Annotation> entered() {
+            return enteredView;
+        }
+
+        /**
+         * Get the annotations that are no longer active.
+         *
+         * @return unmodifiable list of annotations
+         */
+        List<Annotation> exited() {
+            return exitedView;
+        }
+
+        /**
+         * Get the annotations that remain active but whose caption, bounds or selection state changed.
+         *
+         * @return unmodifiable list of the changed annotations, with their new state
+         */
+        List<Annotation> changed() {
+            return changedView;
+        }
+
+        /**
+         * Check whether this delta contains no changes.
+         *
+         * @return {@code true} if nothing changed
+         */
+        boolean isEmpty() {
+            return !replaced && entered.isEmpty() && exited.isEmpty() && changed.isEmpty();
+        }
+
+        private void clear() {
+            entered.clear();
+            exited.clear();
+            changed.clear();
+            replaced = false;
+        }
+
+        @Override
+        public String toString() {
+            return toStringHelper(this)
+                .add("replaced", replaced)
+                .add("entered", entered)
+                .add("exited", exited)
+                .add("changed", changed)
+                .toString();
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package org.mbari.cthulhu.annotations;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import javafx.application.Platform;
-import javafx.collections.ListChangeListener.Change;
 import javafx.geometry.BoundingBox;
 import org.mbari.cthulhu.model.Annotation;
 import org.mbari.cthulhu.ui.components.annotationview.AnnotationImageView;
 import org.mbari.cthulhu.ui.player.PlayerComponent;
+import org.mbari.cthulhu.ui.player.RenderCoordinator;
 import org.mbari.vcr4j.sharktopoda.client.localization.Localization;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,14 +17,18 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
+import static org.mbari.cthulhu.annotations.LocalizationRouter.localizationRouter;
 import static org.mbari.cthulhu.app.CthulhuApplication.application;
 
 /**
  * Controller component that manages creation, queuing and display of video annotations.
+ * <p>
+ * Incoming localization changes and selections may arrive on any thread, but are always applied to the view on the JavaFX application thread.
  */
 final public class AnnotationController {
 
@@ -38,8 +44,53 @@ final public class AnnotationController {
      */
     private final AnnotationImageView annotationView;
 
+    /**
+     * Cursor tracking the set of annotations currently shown by the view, only used on the JavaFX application thread.
+     */
+    private final ActiveSetCursor activeSetCursor = annotationManager.cursor();
+
+    /**
+     * Latest time for which the view should show the active annotations, applied once per JavaFX pulse.
+     */
+    private final RenderCoordinator.LongSlot viewTime;
+
     private final UUID videoReferenceUuid;
 
+    /**
+     * Receiver of the incoming localizations, already partitioned by the {@link LocalizationRouter}, for the video.
+     */
+    private final LocalizationRouter.Listener localizationListener = new LocalizationRouter.Listener() {
+        @Override
+        public void localizationsAdded(List<Localization> localizations) {
+            handleLocalizationsAdded(localizations);
+        }
+
+        @Override
+        public void localizationsRemoved(List<Localization> localizations) {
+            handleLocalizationsRemoved(localizations);
+        }
+
+        @Override
+        public void localizationsUpdated(List<Localization> localizations) {
+            handleLocalizationsUpdated(localizations);
+        }
+
+        @Override
+        public void localizationsSelected(List<Localization> localizations) {
+            handleLocalizationsSelected(localizations);
+        }
+
+        @Override
+        public void localizationsDeselected(List<Localization> localizations) {
+            handleLocalizationsDeselected(localizations);
+        }
+    };
+
+    /**
+     * Stage that batches the incoming changes before they are applied.
+     */
+    private final LocalizationIngest ingest = new LocalizationIngest(this::applyBatch);
+
     private long lastTime = -1;
 
     /**
@@ -51,14 +102,10 @@ final public class AnnotationController {
     public AnnotationController(PlayerComponent playerComponent, AnnotationImageView annotationView) {
         this.annotationView = annotationView;
         this.videoReferenceUuid = playerComponent.uuid();
+        this.viewTime = playerComponent.renderCoordinator().longSlot(this::showAnnotations);
 
-        application().localization()
-            .getLocalizations()
-            .addListener(this::handleLocalizationChanged);
-
-        application().localizationSelection()
-            .getSelectedLocalizations()
-            .addListener(this::handleSelectionChanged);
+        localizationRouter().register(videoReferenceUuid, localizationListener);
+        loadLocalizations();
 
         playerComponent.eventSource().time().subscribe(this::handleTimeChanged);
     }
@@ -84,10 +131,28 @@ final public class AnnotationController {
     public void reset() {
         log.info("reset()");
 
+        ingest.clear();
         annotationManager.reset();
         annotationView.reset();
+        activeSetCursor.reset();
 
         lastTime = -1;
+
+        // The localizations for the video may already have been received
+        loadLocalizations();
+    }
+
+    /**
+     * Stop receiving localizations for the video.
+     * <p>
+     * Localizations for the video received after this are still kept by the {@link LocalizationRouter}, ready for when the video is opened again.
+     */
+    public void close() {
+        log.info("close()");
+
+        localizationRouter().unregister(videoReferenceUuid, localizationListener);
+        ingest.clear();
+        log.debug("ingest={}", ingest);
     }
 
     private void handleTimeChanged(long newTime) {
@@ -96,109 +161,89 @@ final public class AnnotationController {
         updateAnnotationView(newTime);
     }
 
-    private void handleLocalizationChanged(Change<? extends Localization> change) {
-        log.debug("handleLocalizationChanged(change={})", change);
-
-        while (change.next()) {
-            // Implementation note - updates may no longer be needed as it appears we receive a remove then an add instead
-            if (change.wasUpdated()) {
-                List<? extends Localization> updated = change.getList().subList(change.getFrom(), change.getTo());
-                log.debug("updated={}", updated);
-
-                List<Annotation> annotations = updated.stream()
-                    .filter(localization -> videoReferenceUuid.equals(localization.getVideoReferenceUuid()))
-                    .map(this::localizationToAnnotation)
-                    .collect(toList());
-                updateAnnotations(annotations);
-            } else {
-                if (change.wasRemoved()) {
-                    List<? extends Localization> removed = change.getRemoved();
-                    log.debug("removed={}", removed);
-
-                    List<Annotation> annotations = removed.stream()
-                        .filter(localization -> videoReferenceUuid.equals(localization.getVideoReferenceUuid()))
-                        .map(this::localizationToAnnotation)
-                        .collect(toList());
-                    removeAnnotations(annotations);
-                }
-
-                if (change.wasAdded()) {
-                    List<? extends Localization> added = change.getAddedSubList();
-                    log.debug("added={}", added);
-
-                    List<Annotation> annotations = added.stream()
-                        .filter(localization -> videoReferenceUuid.equals(localization.getVideoReferenceUuid()))
-                        .map(this::localizationToAnnotation)
-                        .collect(toList());
-                    addAnnotations(annotations);
-                }
-            }
+    /**
+     * Load all of the localizations already received for the video, e.g. those received before the video was opened.
+     * <p>
+     * These are loaded directly, in bulk, rather than being queued as individual additions.
+     */
+    private void loadLocalizations() {
+        List<Localization> localizations = localizationRouter().localizations(videoReferenceUuid);
+        log.debug("loadLocalizations(count={})", localizations.size());
+        if (!localizations.isEmpty()) {
+            annotationManager.load(toAnnotations(localizations));
+            updateAnnotationView(lastTime);
         }
+    }
 
-        // Force an update, the media player may be paused
-        updateAnnotationView(lastTime);
+    private void handleLocalizationsAdded(List<Localization> localizations) {
+        log.debug("added={}", localizations.size());
+        ingest.added(toAnnotations(localizations));
     }
 
-    private void handleSelectionChanged(Change<? extends Localization> change) {
-        log.debug("handleSelectionChanged(change={})", change);
-
-        while (change.next()) {
-            if (change.wasRemoved()) {
-                List<? extends Localization> removed = change.getRemoved();
-                log.debug("deslected={}", removed);
-
-                List<UUID> annotations = removed.stream()
-                    .filter(localization -> videoReferenceUuid.equals(localization.getVideoReferenceUuid()))
-                    .map(Localization::getLocalizationUuid)
-                    .collect(toList());
-                removeSelections(annotations);
-            }
-
-            if (change.wasAdded()) {
-                List<? extends Localization> added = change.getAddedSubList();
-                log.debug("selected={}", added);
-
-                List<UUID> annotations = added.stream()
-                    .filter(localization -> videoReferenceUuid.equals(localization.getVideoReferenceUuid()))
-                    .map(Localization::getLocalizationUuid)
-                    .collect(toList());
-                addSelections(annotations);
-            }
-        }
+    private void handleLocalizationsRemoved(List<Localization> localizations) {
+        log.debug("removed={}", localizations.size());
+        ingest.removed(toAnnotations(localizations));
+    }
+
+    private void handleLocalizationsUpdated(List<Localization> localizations) {
+        // Implementation note - updates may no longer be needed as it appears we receive a remove then an add instead
+        log.debug("updated={}", localizations.size());
+        ingest.updated(toAnnotations(localizations));
     }
 
-    private void updateAnnotations(List<Annotation> annotations) {
-        log.debug("updateAnnotations(annotations={}", annotations);
+    private void handleLocalizationsSelected(List<Localization> localizations) {
+        log.debug("selected={}", localizations);
+        Platform.runLater(() -> {
+            // The selected annotations may still be pending
+            ingest.flush();
+            addSelections(toIds(localizations));
+        });
+    }
 
-        annotationManager.update(annotations);
+    private void handleLocalizationsDeselected(List<Localization> localizations) {
+        log.debug("deselected={}", localizations);
+        Platform.runLater(() -> {
+            ingest.flush();
+            removeSelections(toIds(localizations));
+        });
+    }
+
+    private List<Annotation> toAnnotations(List<Localization> localizations) {
+        return localizations.stream()
+            .map(this::localizationToAnnotation)
+            .collect(toList());
+    }
+
+    private static List<UUID> toIds(List<Localization> localizations) {
+        // A view rather than a copy, the identifiers are only ever used for lookups
+        return Lists.transform(localizations, Localization::getLocalizationUuid);
     }
 
     /**
-     * Remove a collection of annotations.
+     * Apply a batch of incoming changes.
+     * <p>
+     * Invoked on the JavaFX application thread, like everything else that changes the view.
      * <p>
-     * The annotations are immediately removed from the view (if they were currently associated with the view), and then removed from the model via the
-     * {@link #annotationManager}.
+     * Removed and replaced annotations are immediately removed from the view (if they were currently associated with the view), then all of the changes are
+     * applied to the model via the {@link #annotationManager} in a single operation, and finally the view is refreshed once.
      *
-     * @param annotations annotations to remove
+     * @param batch batch of changes
      */
-    private void removeAnnotations(List<Annotation> annotations) {
-        log.debug("removeAnnotations(annotations={})", annotations);
+    private void applyBatch(LocalizationIngest.Batch batch) {
+        log.debug("applyBatch(batch={})", batch);
 
-        Set<UUID> idsToRemove = annotations.stream()
+        Set<UUID> idsToRemove = Stream.concat(batch.removed().stream(), batch.replaced().stream())
             .map(Annotation::id)
             .collect(toSet());
-        annotationView.remove(idsToRemove);
-        annotationManager.remove(annotations);
-    }
+        if (!idsToRemove.isEmpty()) {
+            annotationView.remove(idsToRemove);
+        }
 
-    /**
-     * Add a collection of annotations.
-     *
-     * @param annotations annotations to add
-     */
-    private void addAnnotations(List<Annotation> annotations) {
-        log.debug("addAnnotations(annotations={})", annotations);
-        annotationManager.add(annotations);
+        List<Annotation> added = batch.replaced().isEmpty() ? batch.added() : Lists.newArrayList(Iterables.concat(batch.replaced(), batch.added()));
+        annotationManager.apply(batch.removed(), added, batch.updated());
+
+        // Force an update, the media player may be paused
+        updateAnnotationView(lastTime);
     }
 
     private void removeSelections(List<UUID> annotations) {
@@ -282,6 +327,15 @@ final public class AnnotationController {
     }
 
     private void updateAnnotationView(long newTime) {
-        Platform.runLater(() -> annotationView.setAnnotations(annotationManager.current(newTime)));
+        viewTime.set(newTime);
+    }
+
+    private void showAnnotations(long time) {
+        ActiveSetCursor.Delta delta = activeSetCursor.step(time);
+        if (delta.replaced()) {
+            annotationView.setAnnotations(delta.entered());
+        } else if (!delta.isEmpty()) {
+            annotationView.updateAnnotations(delta.entered(), delta.exited(), delta.changed());
+        }
     }
 }
@@ -1,26 +1,22 @@
 package org.mbari.cthulhu.annotations;
 
-import com.google.common.collect.Range;
-import com.google.common.collect.RangeMap;
-import com.google.common.collect.TreeRangeMap;
 import org.mbari.cthulhu.model.Annotation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.BiFunction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static java.util.Collections.emptyList;
-import static java.util.Collections.singletonList;
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.Stream.concat;
 import static org.mbari.cthulhu.app.CthulhuApplication.application;
 
 /**
@@ -29,48 +25,63 @@ import static org.mbari.cthulhu.app.CthulhuApplication.application;
  * An annotation is active if the current elapsed time of the media is greater than or equal to the annotation start time, and the current elapsed time is less
  * then or equal to the annotation end time.
  * <p>
- * The fundamental approach is to maintain a {@link RangeMap} which can be given a key (the current elapsed time) to return the list of annotations that has a
- * start-time/end-time range that spans that key value.
+ * The fundamental approach is to maintain an {@link IntervalTree} which can be given a key (the current elapsed time) to return the list of annotations that
+ * have a start-time/end-time range that spans that key value. Each annotation's range is padded either side by the configured display "time window".
  * <p>
- * There are some complexities however.
+ * The interval tree keeps every annotation as its own node, so two annotations with the exact same start time and end time are simply two distinct nodes -
+ * there is no need to split or merge ranges as annotations are added and removed.
  * <p>
- * The RangeMap does not intrinsically support more than one value with the exact same range, so for example if two annotations each had the exact same start
- * time and end time this would ordinarily not be possible. The situation may be extremely unlikely, but it is clearly possible. Therefore rather than having
- * the map values be a single {@link Annotation} instance, we must instead maintain a {@link List} of those annotations.
+ * The interval tree is persistent - each change creates a new immutable version that shares structure with the previous version. Writers (the network
+ * localization handlers) are serialised with a lock, and publish each new version atomically. Readers (the media player timer) never take a lock, they simply
+ * query whatever version is current at that moment.
  * <p>
- * To support this approach, we must also use {@link RangeMap#merge(Range, Object, BiFunction)} rather than simply {@link RangeMap#put(Range, Object)} so that
- * if we do encounter two values with the exact same range we can add the new value to the existing list.
+ * The active annotations are read through an {@link ActiveSetCursor}, which reports only the changes to the active set at each step rather than re-querying
+ * the entire active set.
  * <p>
- * Similarly when removing values, it is not straightforward to simply remove the precise value - instead we must get the list of annotations that have the same
- * start time as the annotation to remove. If only one item is returned, we remove the entire list from the map (the range key must be reconstituted by using
- * the start time and the end time for the annotation being removed). If more than one item is returned, we must instead find the item to remove within the list
- * (by comparing the unique ids) and remove only that item, preserving the list.
+ * The annotations themselves are held in a compact, columnar, {@link AnnotationStore} rather than as individual objects - the row of an annotation in the store
+ * is also the sequence number of its node in the tree, so the tree holds nothing but the intervals. The store also indexes the rows by unique identifier, so
+ * an annotation can be removed (or have its selection state changed) directly, without having to search the tree. {@link Annotation} instances are only
+ * created for annotations that are returned by a query, i.e. those that are actually active.
+ * <p>
+ * When a large number of annotations arrive together, e.g. all of the existing localizations when a video is opened, the tree is instead built in a single
+ * bottom-up pass from the annotations sorted by start time, and the result is published in place of the previous version.
  * <p>
  * Note there is no concept of updating an in-place annotation - an update should be performed by a separate remove then an add.
  */
-@SuppressWarnings("UnstableApiUsage")
 final class AnnotationManager {
 
     private static final Logger log = LoggerFactory.getLogger(AnnotationManager.class);
 
     /**
-     * Maintain a separate map of annotation ids to the annotation itself.
+     * Smallest number of added annotations for which the tree is rebuilt in one pass rather than each annotation being inserted in turn.
+     */
+    private static final int BULK_THRESHOLD = 1024;
+
+    /**
+     * Storage for the state of all of the known annotations.
      * <p>
-     * This is used for direct lookup instead finding the range then searching the list for that range - useful e.g. when updating the selection status of an
-     * annotation.
+     * Only accessed while holding the {@link #writeLock}, readers instead use the rows captured by a {@link Snapshot}.
      */
-    private final Map<UUID, Annotation> annotationsByUuid = new HashMap<>();
+    private AnnotationStore store = new AnnotationStore();
 
     /**
-     * Map of all currently known annotations, keyed by their active time range.
+     * Currently published version of all known annotations, keyed by their (padded) active time range.
      * <p>
-     * This map contains all of the currently known annotation components whether they are currently active (based on their timestamp) or not.
+     * This contains all of the currently known annotations whether they are currently active (based on their timestamp) or not.
+     */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(new IntervalTree(), store.rows(), 0, 0));
+
+    /**
+     * Incremented each time the store is replaced.
      * <p>
-     * The map values are lists of annotations, since although unlikely it is possible that two distinct annotations have the exact same time range.
+     * Only accessed while holding the {@link #writeLock}.
      */
-    private final RangeMap<Long, List<Annotation>> annotationsByElapsedTime = TreeRangeMap.create();
+    private long generation;
 
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Lock used to serialise writers, readers do not use this lock.
+     */
+    private final Lock writeLock = new ReentrantLock();
 
     /**
      * Add a collection of annotations.
@@ -79,11 +90,25 @@ final class AnnotationManager {
      */
     void add(List<Annotation> annotations) {
         log.debug("add(annotations={})", annotations);
-        lock.writeLock().lock();
+        apply(emptyList(), annotations, emptyList());
+    }
+
+    /**
+     * Replace all of the annotations with a new collection.
+     * <p>
+     * The tree is built in a single pass, rather than by inserting each annotation in turn, and the new version is published atomically.
+     *
+     * @param annotations new annotations, in any order
+     */
+    void load(List<Annotation> annotations) {
+        log.debug("load(annotations={})", annotations.size());
+        List<Annotation> sorted = sortedByStart(unique(annotations).values());
+        writeLock.lock();
         try {
-            annotations.forEach(this::add);
+            replaceStore(new AnnotationStore());
+            publish(rebuild(new IntervalTree(), sorted));
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
 
@@ -94,12 +119,7 @@ final class AnnotationManager {
      */
     void update(List<Annotation> annotations) {
         log.debug("update(annotations={})", annotations);
-        lock.writeLock().lock();
-        try {
-            annotations.forEach(this::update);
-        } finally {
-            lock.writeLock().unlock();
-        }
+        apply(emptyList(), emptyList(), annotations);
     }
 
     /**
@@ -109,49 +129,71 @@ final class AnnotationManager {
      */
     void remove(List<Annotation> annotations) {
         log.debug("remove(annotations={})", annotations);
-        lock.writeLock().lock();
+        apply(annotations, emptyList(), emptyList());
+    }
+
+    /**
+     * Apply a collection of changes together, publishing a single new version of the annotations.
+     * <p>
+     * Removals are applied first, then additions (including replacements), then updates.
+     * <p>
+     * If there are many additions relative to the number of existing annotations, the tree is rebuilt in a single pass instead.
+     *
+     * @param removed annotations to remove
+     * @param added annotations to add, replacing any existing annotation with the same identifier
+     * @param updated annotations to update
+     */
+    void apply(List<Annotation> removed, List<Annotation> added, List<Annotation> updated) {
+        log.debug("apply(removed={}, added={}, updated={})", removed.size(), added.size(), updated.size());
+        writeLock.lock();
         try {
-            annotations.forEach(this::remove);
+            IntervalTree tree = snapshot.get().tree;
+            for (Annotation annotation : removed) {
+                tree = remove(tree, annotation.id());
+            }
+            if (added.size() >= BULK_THRESHOLD && added.size() >= tree.size()) {
+                tree = rebuild(tree, sortedByStart(unique(added).values()));
+            } else {
+                for (Annotation annotation : added) {
+                    tree = add(tree, annotation);
+                }
+            }
+            updated.forEach(this::update);
+            if (store.isSparse()) {
+                tree = rebuild(tree, emptyList());
+            }
+            publish(tree);
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
 
     void select(List<UUID> annotations) {
         log.debug("select(annotations={})", annotations);
-        lock.writeLock().lock();
-        try {
-            annotations.forEach(this::select);
-        } finally {
-            lock.writeLock().unlock();
-        }
+        select(annotations, true);
     }
 
     void deselect(List<UUID> annotations) {
         log.debug("deselect(annotations={})", annotations);
-        lock.writeLock().lock();
-        try {
-            annotations.forEach(this::deselect);
-        } finally {
-            lock.writeLock().unlock();
-        }
+        select(annotations, false);
     }
 
     /**
-     * Get the list of annotations active given a specific time.
+     * Create a cursor that tracks the changes to the set of active annotations as the elapsed time moves.
      *
-     * @param elapsedTime time
-     * @return list of annotations active for the given time
+     * @return new cursor
      */
-    List<Annotation> current(long elapsedTime) {
-        log.trace("current(elapsedTime={})", elapsedTime);
-        lock.readLock().lock();
-        try {
-            List<Annotation> result = annotationsByElapsedTime.get(elapsedTime);
-            return result != null ? new ArrayList<>(result): emptyList();
-        } finally {
-            lock.readLock().unlock();
-        }
+    ActiveSetCursor cursor() {
+        return new ActiveSetCursor(this);
+    }
+
+    /**
+     * Get the currently published version of the annotations.
+     *
+     * @return current snapshot
+     */
+    Snapshot snapshot() {
+        return snapshot.get();
     }
 
     /**
@@ -159,118 +201,195 @@ final class AnnotationManager {
      */
     void reset() {
         log.debug("reset()");
-        lock.writeLock().lock();
+        writeLock.lock();
         try {
-            annotationsByUuid.clear();
-            annotationsByElapsedTime.clear();
+            replaceStore(new AnnotationStore());
+            publish(new IntervalTree());
         } finally {
-            lock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
 
     /**
      * Add a single annotation.
+     * <p>
+     * Adding an annotation with the same unique identifier as an existing annotation replaces that existing annotation.
      *
+     * @param tree tree to add to
      * @param addedAnnotation annotation
+     * @return new version of the tree
      */
-    private void add(Annotation addedAnnotation) {
+    private IntervalTree add(IntervalTree tree, Annotation addedAnnotation) {
         log.debug("add(addedAnnotation={})", addedAnnotation);
-        annotationsByUuid.put(addedAnnotation.id(), addedAnnotation);
-        Range<Long> range = range(addedAnnotation);
-        // Most of the time this will create a lightweight singleton list wrapper, it is only the unlikely case that an annotation has the exact same start and
-        // end times that will cause a list concatenation
-        annotationsByElapsedTime.merge(
-            range,
-            singletonList(addedAnnotation),
-            (annotations1, annotations2) -> concat(annotations1.stream(), annotations2.stream()).collect(toList())
-        );
+        tree = remove(tree, addedAnnotation.id());
+        int timeWindow = application().settings().annotations().display().timeWindowMillis();
+        long start = addedAnnotation.startTime() - timeWindow;
+        int row = store.append(addedAnnotation, start);
+        return tree.insert(start, addedAnnotation.endTime() + timeWindow, row);
+    }
+
+    /**
+     * Remove a single annotation.
+     *
+     * @param tree tree to remove from
+     * @param id unique identifier of the annotation
+     * @return new version of the tree
+     */
+    private IntervalTree remove(IntervalTree tree, UUID id) {
+        int row = store.row(id);
+        if (row == -1) {
+            return tree;
+        }
+        log.debug("remove(id={})", id);
+        store.remove(row);
+        return tree.remove(store.key(row), row);
     }
 
     private void update(Annotation updatedAnnotation) {
         log.debug("update(updatedAnnotation={})", updatedAnnotation);
-        Annotation existingAnnotation = annotationsByUuid.get(updatedAnnotation.id());
-        if (existingAnnotation == null) {
+        int row = store.row(updatedAnnotation.id());
+        if (row == -1) {
             log.warn("Update ignored unknown annotation {}", updatedAnnotation.id());
             return;
         }
-        existingAnnotation.caption(updatedAnnotation.caption().orElse(null));
-        existingAnnotation.bounds(updatedAnnotation.bounds());
+        store.update(row, updatedAnnotation);
+    }
+
+    private void select(List<UUID> annotations, boolean select) {
+        writeLock.lock();
+        try {
+            for (UUID id : annotations) {
+                int row = store.row(id);
+                if (row == -1) {
+                    log.warn("{} ignored unknown annotation {}", select ? "Select" : "Deselect", id);
+                    continue;
+                }
+                store.select(row, select);
+            }
+            publish(snapshot.get().tree);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
-     * Remove a single annotation.
+     * Rebuild the tree and the store in a single pass, containing the annotations in a tree together with a collection of additional annotations.
+     * <p>
+     * An existing annotation with the same unique identifier as an additional annotation is replaced by it. Removed rows are discarded, so this also compacts
+     * the store.
      *
-     * @param removedAnnotation annotation
+     * @param tree tree containing the existing annotations
+     * @param added additional annotations, sorted by start time, with unique identifiers
+     * @return new tree
      */
-    private void remove(Annotation removedAnnotation) {
-        log.debug("remove(removedAnnotation={})", removedAnnotation);
-
-        // Get a range sub-map covering the entire period of the annotation that was removed - this sub-map will give us one or more ranges, any number of
-        // which may contain the removed annotation (the same annotation may be present in multiple ranges)
-        RangeMap<Long, List<Annotation>> subMap = annotationsByElapsedTime.subRangeMap(range(removedAnnotation));
-
-        List<Range> obsoleteRanges = new ArrayList<>();
+    private IntervalTree rebuild(IntervalTree tree, List<Annotation> added) {
+        for (Annotation annotation : added) {
+            tree = remove(tree, annotation.id());
+        }
+        // The rows, and their intervals, of the existing annotations in tree order
+        int[] existingRows = new int[tree.size()];
+        long[] existingEnds = new long[tree.size()];
+        int[] count = {0};
+        tree.visitStarting(Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, (start, end, sequence) -> {
+            existingRows[count[0]] = (int) sequence;
+            existingEnds[count[0]++] = end;
+        });
 
-        // Process each range in this sub-map...
-        subMap.asMapOfRanges().forEach((range, list) -> {
-            if (list.size() == 1) {
-                if (list.get(0).id().equals(removedAnnotation.id())) { // Must this always be true?
-                    log.debug("removing empty range");
-                    obsoleteRanges.add(range);
-                }
+        int timeWindow = application().settings().annotations().display().timeWindowMillis();
+        int size = existingRows.length + added.size();
+        AnnotationStore rebuilt = new AnnotationStore(size + size / 8);
+        long[] ends = new long[size];
+        int i = 0;
+        int j = 0;
+        while (i < existingRows.length || j < added.size()) {
+            // Existing annotations come first when the keys are the same, so they keep their relative order
+            if (j == added.size() || (i < existingRows.length && store.key(existingRows[i]) <= added.get(j).startTime() - timeWindow)) {
+                ends[rebuilt.append(store, existingRows[i])] = existingEnds[i++];
             } else {
-                list.removeIf(annotation -> annotation.id().equals(removedAnnotation.id()));
+                Annotation annotation = added.get(j++);
+                ends[rebuilt.append(annotation, annotation.startTime() - timeWindow)] = annotation.endTime() + timeWindow;
             }
-        });
-
-        // Delete any empty ranges post-iteration
-        for (Range range : obsoleteRanges) {
-            subMap.remove(range);
         }
+        replaceStore(rebuilt);
+        // Each row is also the sequence number of its interval
+        return IntervalTree.build(size, rebuilt::key, row -> ends[row], 0);
     }
 
-    private void select(UUID id) {
-        log.debug("select(id={})", id);
-        Annotation existingAnnotation = annotationsByUuid.get(id);
-        if (existingAnnotation == null) {
-            log.warn("Select ignored unknown annotation {}", id);
-            return;
-        }
-        existingAnnotation.selected(true);
+    /**
+     * Sort a collection of annotations by start time.
+     * <p>
+     * The sort is performed in parallel, and is stable.
+     *
+     * @param annotations annotations, in any order
+     * @return sorted annotations
+     */
+    private static List<Annotation> sortedByStart(Collection<Annotation> annotations) {
+        Annotation[] sorted = annotations.toArray(new Annotation[0]);
+        Arrays.parallelSort(sorted, Comparator.comparingLong(Annotation::startTime));
+        return Arrays.asList(sorted);
     }
 
-    private void deselect(UUID id) {
-        log.debug("deselect(id={})", id);
-        Annotation existingAnnotation = annotationsByUuid.get(id);
-        if (existingAnnotation == null) {
-            log.warn("Deselect ignored unknown annotation {}", id);
-            return;
-        }
-        existingAnnotation.selected(false);
+    /**
+     * Remove duplicate annotations, keeping the last of any annotations with the same unique identifier.
+     *
+     * @param annotations annotations
+     * @return unique annotations, by unique identifier
+     */
+    private static Map<UUID, Annotation> unique(List<Annotation> annotations) {
+        Map<UUID, Annotation> unique = new LinkedHashMap<>(Math.max(16, (int) (annotations.size() / 0.75f) + 1));
+        annotations.forEach(annotation -> unique.put(annotation.id(), annotation));
+        return unique;
     }
 
-    private Range<Long> range(Annotation annotation) {
-        int timeWindow = application().settings().annotations().display().timeWindowMillis();
-        return Range.closed(annotation.startTime() - timeWindow, annotation.endTime() + timeWindow);
+    /**
+     * Publish a new version of the annotations.
+     * <p>
+     * A new snapshot is published even if the tree itself is unchanged, since the state of the annotations it contains may have changed.
+     *
+     * @param tree new version of the tree
+     */
+    private void publish(IntervalTree tree) {
+        Snapshot previous = snapshot.get();
+        snapshot.set(new Snapshot(tree, store.rows(), generation, previous.version + 1));
+    }
+
+    private void replaceStore(AnnotationStore newStore) {
+        store = newStore;
+        generation++;
     }
 
     @Override
     public String toString() {
         return toStringHelper(this)
-            .add("annotationsByElapsedTime", annotationsByElapsedTime)
+            .add("annotations", snapshot.get().tree.size())
+            .add("store", store)
             .toString();
     }
 
-    private void dumpState(String msg) {
-        log.trace("{}:", msg);
-        Map<Range<Long>, List<Annotation>> map = annotationsByElapsedTime.asMapOfRanges();
-        for (Range<Long> range : map.keySet()) {
-            log.trace("Range {} to {}", range.lowerEndpoint(), range.upperEndpoint());
-            List<Annotation> values = map.get(range);
-            for (Annotation value : values) {
-                log.trace(" {} \"{}\" {}-{}", value.id(), value.caption().get(), value.startTime(), value.endTime());
-            }
+    /**
+     * An immutable, published, version of the annotations.
+     */
+    static final class Snapshot {
+
+        /**
+         * Tree of the (padded) active time ranges, the sequence number of each interval is the row of the annotation in {@link #rows}.
+         */
+        final IntervalTree tree;
+
+        final AnnotationStore.Rows rows;
+
+        /**
+         * Generation of the store the rows belong to - a row identifies the same annotation in every snapshot of the same generation.
+         */
+        final long generation;
+
+        final long version;
+
+        private Snapshot(IntervalTree tree, AnnotationStore.Rows rows, long generation, long version) {
+            this.tree = tree;
+            this.rows = rows;
+            this.generation = generation;
+            this.version = version;
         }
-        log.debug("No more ranges");
     }
 }
@@ -0,0 +1,410 @@
+package org.mbari.cthulhu.annotations;
+
+import javafx.geometry.BoundingBox;
+import org.mbari.cthulhu.model.Annotation;
+import org.mbari.cthulhu.model.ConceptDictionary;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Compact, columnar, storage for annotations.
+ * <p>
+ * Rather than keeping an {@link Annotation} object (with its associated {@link UUID}, {@link BoundingBox} and caption
+ * {@link String}) for every known annotation, the state of each annotation is held as a row in a set of parallel
+ * primitive arrays - the unique identifier as a pair of longs, the time range as longs, the bounds as floats (bounds
+ * may be fractional, e.g. for a box drawn by the user, and a float holds any on-screen coordinate to well under a
+ * hundredth of a pixel) and the caption as its identifier in the {@link ConceptDictionary}. An {@link Annotation}
+ * is only created, by {@link Rows#annotation(int)}, for an annotation that is actually needed, e.g. one that is
+ * currently active.
+ * <p>
+ * Lookup by unique identifier uses an open-addressing hash table of row numbers that probes the identifier columns
+ * directly, so there are no per-annotation map entries either.
+ * <p>
+ * Rows are only ever appended, a removed row is simply no longer indexed, so row numbers increase in the order the
+ * annotations were added - this allows a row number to double as the sequence number for an annotation in an
+ * {@link IntervalTree}. The time range and identifier of a row never change once written, and when the arrays grow new
+ * arrays are allocated, so the time range and identifier of a row can be safely read from a {@link Rows} view captured
+ * earlier, from any thread, while newer rows are appended. The caption, bounds and selection state of a row are changed
+ * in place, so they are visible through every view, and a view read concurrently with such a change may see the old
+ * or the new values. Each such change also increments the revision of the row, so a reader can tell that a row it
+ * read earlier has since changed.
+ * <p>
+ * A store accumulates removed rows, the owner is expected to replace it with a compacted copy when {@link #isSparse()}.
+ * <p>
+ * Modifications must be serialised by the caller.
+ */
+final class AnnotationStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Minimum number of rows before compaction is considered.
+     */
+    private static final int COMPACT_THRESHOLD = 4096;
+
+    /**
+     * Marker in the hash table for an empty slot.
+     */
+    private static final int EMPTY = -1;
+
+    private long[] mostSignificantBits;
+    private long[] leastSignificantBits;
+    private long[] startTime;
+    private long[] endTime;
+    private long[] key;
+    private float[] x;
+    private float[] y;
+    private float[] width;
+    private float[] height;
+    private int[] captionId;
+    private boolean[] selected;
+    private int[] revision;
+
+    /**
+     * Number of rows written.
+     */
+    private int allocated;
+
+    /**
+     * Number of rows that have not been removed.
+     */
+    private int live;
+
+    /**
+     * Hash table of the rows that have not been removed, by unique identifier, using linear probing.
+     */
+    private int[] table;
+
+    /**
+     * Create an empty store.
+     */
+    AnnotationStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create an empty store, with space for a number of rows.
+     *
+     * @param capacity initial number of rows
+     */
+    AnnotationStore(int capacity) {
+        capacity = Math.max(INITIAL_CAPACITY, capacity);
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+        startTime = new long[capacity];
+        endTime = new long[capacity];
+        key = new long[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+        width = new float[capacity];
+        height = new float[capacity];
+        captionId = new int[capacity];
+        selected = new boolean[capacity];
+        revision = new int[capacity];
+        table = newTable(capacity);
+    }
+
+    /**
+     * Append a row for an annotation.
+     * <p>
+     * There must not already be a row for an annotation with the same unique identifier.
+     *
+     * @param annotation annotation
+     * @param rowKey key for the annotation, e.g. the start of its interval in a tree
+     * @return row
+     */
+    int append(Annotation annotation, long rowKey) {
+        int row = newRow(annotation.id().getMostSignificantBits(), annotation.id().getLeastSignificantBits(), rowKey);
+        startTime[row] = annotation.startTime();
+        endTime[row] = annotation.endTime();
+        setBounds(row, annotation.bounds());
+        captionId[row] = annotation.captionId();
+        selected[row] = annotation.selected();
+        return row;
+    }
+
+    /**
+     * Append a copy of a row from another store.
+     *
+     * @param from store containing the row
+     * @param fromRow row to copy
+     * @return new row
+     */
+    int append(AnnotationStore from, int fromRow) {
+        int row = newRow(from.mostSignificantBits[fromRow], from.leastSignificantBits[fromRow], from.key[fromRow]);
+        startTime[row] = from.startTime[fromRow];
+        endTime[row] = from.endTime[fromRow];
+        x[row] = from.x[fromRow];
+        y[row] = from.y[fromRow];
+        width[row] = from.width[fromRow];
+        height[row] = from.height[fromRow];
+        captionId[row] = from.captionId[fromRow];
+        selected[row] = from.selected[fromRow];
+        return row;
+    }
+
+    /**
+     * Remove a row.
+     * <p>
+     * The row content is kept, so it can still be read via previously captured {@link Rows}, but it can no longer be
+     * found by unique identifier.
+     *
+     * @param row row
+     */
+    void remove(int row) {
+        int mask = table.length - 1;
+        int slot = slot(mostSignificantBits[row], leastSignificantBits[row]);
+        while (table[slot] != row) {
+            slot = (slot + 1) & mask;
+        }
+        // Backward shift deletion, so no tombstones are needed
+        int next = (slot + 1) & mask;
+        while (table[next] != EMPTY) {
+            int candidate = table[next];
+            int home = slot(mostSignificantBits[candidate], leastSignificantBits[candidate]);
+            // Move the candidate into the gap unless its home slot lies cyclically after the gap and at or before its current slot
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                table[slot] = candidate;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[slot] = EMPTY;
+        live--;
+    }
+
+    /**
+     * Find the row for an annotation.
+     *
+     * @param id unique identifier of the annotation
+     * @return row, or -1 if there is no such annotation
+     */
+    int row(UUID id) {
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        int mask = table.length - 1;
+        for (int slot = slot(most, least); ; slot = (slot + 1) & mask) {
+            int row = table[slot];
+            if (row == EMPTY) {
+                return -1;
+            }
+            if (mostSignificantBits[row] == most && leastSignificantBits[row] == least) {
+                return row;
+            }
+        }
+    }
+
+    /**
+     * Get the key for a row.
+     *
+     * @param row row
+     * @return key
+     */
+    long key(int row) {
+        return key[row];
+    }
+
+    /**
+     * Update the caption and bounds of a row from a newer version of the same annotation.
+     *
+     * @param row row
+     * @param annotation annotation
+     */
+    void update(int row, Annotation annotation) {
+        captionId[row] = annotation.captionId();
+        setBounds(row, annotation.bounds());
+        revision[row]++;
+    }
+
+    /**
+     * Set the selection state of a row.
+     *
+     * @param row row
+     * @param select selection state
+     */
+    void select(int row, boolean select) {
+        selected[row] = select;
+        revision[row]++;
+    }
+
+    /**
+     * Get the number of rows that have not been removed.
+     *
+     * @return number of annotations
+     */
+    int size() {
+        return live;
+    }
+
+    /**
+     * Check whether enough rows have been removed that the store should be compacted.
+     *
+     * @return <code>true</code> if the store should be compacted; <code>false</code> otherwise
+     */
+    boolean isSparse() {
+        return allocated > COMPACT_THRESHOLD && allocated > 2 * live;
+    }
+
+    /**
+     * Capture a view of the rows written so far.
+     *
+     * @return rows
+     */
+    Rows rows() {
+        return new Rows(this);
+    }
+
+    private int newRow(long most, long least, long rowKey) {
+        if (allocated == mostSignificantBits.length) {
+            grow(allocated * 2);
+        }
+        int row = allocated++;
+        mostSignificantBits[row] = most;
+        leastSignificantBits[row] = least;
+        key[row] = rowKey;
+        if (2 * (live + 1) > table.length) {
+            rehash(table.length * 2);
+        }
+        insert(row);
+        live++;
+        return row;
+    }
+
+    private void insert(int row) {
+        int mask = table.length - 1;
+        int slot = slot(mostSignificantBits[row], leastSignificantBits[row]);
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = row;
+    }
+
+    private void rehash(int tableSize) {
+        int[] previous = table;
+        table = new int[tableSize];
+        Arrays.fill(table, EMPTY);
+        for (int row : previous) {
+            if (row != EMPTY) {
+                insert(row);
+            }
+        }
+    }
+
+    private int slot(long most, long least) {
+        long hash = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (table.length - 1);
+    }
+
+    private void setBounds(int row, BoundingBox bounds) {
+        x[row] = (float) bounds.getMinX();
+        y[row] = (float) bounds.getMinY();
+        width[row] = (float) bounds.getWidth();
+        height[row] = (float) bounds.getHeight();
+    }
+
+    /**
+     * Grow the store.
+     * <p>
+     * New arrays are always allocated (rather than growing in place) so that previously captured {@link Rows} keep a
+     * consistent view of their own rows.
+     *
+     * @param capacity new capacity
+     */
+    private void grow(int capacity) {
+        mostSignificantBits = Arrays.copyOf(mostSignificantBits, capacity);
+        leastSignificantBits = Arrays.copyOf(leastSignificantBits, capacity);
+        startTime = Arrays.copyOf(startTime, capacity);
+        endTime = Arrays.copyOf(endTime, capacity);
+        key = Arrays.copyOf(key, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        captionId = Arrays.copyOf(captionId, capacity);
+        selected = Arrays.copyOf(selected, capacity);
+        revision = Arrays.copyOf(revision, capacity);
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("rows", allocated)
+            .add("live", live)
+            .toString();
+    }
+
+    /**
+     * A view of the rows of a store at a point in time.
+     * <p>
+     * The view has a fixed number of rows, and the time range and identifier of each of those rows never change. The
+     * caption, bounds, selection state and revision of a row are shared with the store, and reflect any later change to
+     * it.
+     */
+    static final class Rows {
+
+        private final long[] mostSignificantBits;
+        private final long[] leastSignificantBits;
+        private final long[] startTime;
+        private final long[] endTime;
+        private final float[] x;
+        private final float[] y;
+        private final float[] width;
+        private final float[] height;
+        private final int[] captionId;
+        private final boolean[] selected;
+        private final int[] revision;
+
+        private Rows(AnnotationStore store) {
+            this.mostSignificantBits = store.mostSignificantBits;
+            this.leastSignificantBits = store.leastSignificantBits;
+            this.startTime = store.startTime;
+            this.endTime = store.endTime;
+            this.x = store.x;
+            this.y = store.y;
+            this.width = store.width;
+            this.height = store.height;
+            this.captionId = store.captionId;
+            this.selected = store.selected;
+            this.revision = store.revision;
+        }
+
+        /**
+         * Get the revision of a row, incremented each time the caption, bounds or selection state of the row changes.
+         *
+         * @param row row
+         * @return revision
+         */
+        int revision(int row) {
+            return revision[row];
+        }
+
+        /**
+         * Create an annotation from a row.
+         * <p>
+         * A new instance is created each time.
+         *
+         * @param row row
+         * @return annotation
+         */
+        Annotation annotation(int row) {
+            Annotation annotation = new Annotation(
+                new UUID(mostSignificantBits[row], leastSignificantBits[row]),
+                startTime[row],
+                endTime[row],
+                new BoundingBox(x[row], y[row], width[row], height[row]),
+                captionId[row]
+            );
+            annotation.selected(selected[row]);
+            return annotation;
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package org.mbari.cthulhu.annotations;
+
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+/**
+ * An immutable, persistent, augmented interval tree with all node state held in parallel primitive arrays.
+ * <p>
+ * The tree holds only the intervals themselves - each interval is identified by its sequence number, which the caller
+ * uses to find whatever the interval stands for (e.g. the row of an annotation in an {@link AnnotationStore}).
+ * <p>
+ * The tree is a self-balancing (AVL) binary search tree ordered by interval start, with ties broken by a caller supplied
+ * sequence number so that any number of intervals may share the exact same start and end. Each node is augmented with
+ * the maximum end value found anywhere in its subtree, this allows a stabbing query to prune every subtree that can not
+ * possibly contain a match.
+ * <p>
+ * Each instance is an immutable version of the tree. Modifications return a new version that shares all unchanged
+ * nodes with the version it was derived from - only the O(log n) nodes on the path from the root to the modified node
+ * are copied. Nodes are written once to an append-only arena and never changed afterwards, so a version can be safely
+ * queried from any thread while newer versions are being created. When the arena accumulates too many unreachable
+ * nodes, a modification will instead produce a compacted copy of the tree in a fresh arena.
+ * <p>
+ * Complexity:
+ * <ul>
+ *     <li>insert - O(log n)</li>
+ *     <li>remove - O(log n)</li>
+ *     <li>query - O(log n + k), where k is the number of matching intervals</li>
+ *     <li>build - O(n), from intervals already sorted by start</li>
+ * </ul>
+ * <p>
+ * Interval bounds are closed, i.e. an interval contains both its start and end values.
+ * <p>
+ * Queries are thread-safe. Modifications must be serialised by the caller.
+ */
+final class IntervalTree {
+
+    /**
+     * Callback used to receive the intervals found by a traversal.
+     */
+    interface Visitor {
+
+        /**
+         * Visit an interval.
+         *
+         * @param start interval start
+         * @param end interval end
+         * @param sequence interval sequence number
+         */
+        void visit(long start, long end, long sequence);
+    }
+
+    private static final int NIL = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Minimum arena size before compaction is considered.
+     */
+    private static final int COMPACT_THRESHOLD = 4096;
+
+    /**
+     * Arena shared by all versions derived from the same original tree.
+     */
+    private final Arena arena;
+
+    /*
+     * Node arrays, captured when this version was created - the arena may subsequently replace its arrays when it grows,
+     * but the contents of all nodes reachable from this version's root never change.
+     */
+    private final long[] start;
+    private final long[] end;
+    private final long[] maxEnd;
+    private final long[] sequence;
+    private final int[] left;
+    private final int[] right;
+    private final int[] height;
+
+    private final int root;
+
+    private final int size;
+
+    /**
+     * Create an empty tree.
+     */
+    IntervalTree() {
+        this(new Arena(INITIAL_CAPACITY), NIL, 0);
+    }
+
+    private IntervalTree(Arena arena, int root, int size) {
+        this.arena = arena;
+        this.start = arena.start;
+        this.end = arena.end;
+        this.maxEnd = arena.maxEnd;
+        this.sequence = arena.sequence;
+        this.left = arena.left;
+        this.right = arena.right;
+        this.height = arena.height;
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Create a tree containing a collection of intervals, in a single pass.
+     * <p>
+     * This is much cheaper than inserting each interval in turn - the nodes are written to the arena in order, and then
+     * linked bottom-up into a perfectly balanced tree, with no rebalancing and no copying.
+     * <p>
+     * The intervals are identified by index, and each is given the next sequence number in turn, starting from the first
+     * sequence number.
+     *
+     * @param size number of intervals
+     * @param startFunction function to get the start (inclusive) of the interval at an index, must not decrease with index
+     * @param endFunction function to get the end (inclusive) of the interval at an index
+     * @param firstSequence sequence number for the first interval
+     * @return new tree
+     * @throws IllegalArgumentException if the intervals are not sorted by start
+     */
+    static IntervalTree build(int size, IntToLongFunction startFunction, IntToLongFunction endFunction, long firstSequence) {
+        // Only a little headroom, the tree may never be modified
+        Arena arena = new Arena(Math.max(INITIAL_CAPACITY, size + size / 8));
+        for (int index = 0; index < size; index++) {
+            long valueStart = startFunction.applyAsLong(index);
+            if (index > 0 && valueStart < arena.start[index - 1]) {
+                throw new IllegalArgumentException("Intervals must be sorted by start");
+            }
+            arena.start[index] = valueStart;
+            arena.end[index] = endFunction.applyAsLong(index);
+            arena.sequence[index] = firstSequence + index;
+        }
+        arena.allocated = size;
+        return new IntervalTree(arena, arena.link(0, size - 1), size);
+    }
+
+    /**
+     * Create a new version of this tree with an interval added.
+     *
+     * @param start interval start (inclusive)
+     * @param end interval end (inclusive)
+     * @param sequence sequence number used to order intervals with the same start, must be unique within the tree
+     * @return new version of the tree
+     */
+    IntervalTree insert(long start, long end, long sequence) {
+        int node = arena.newNode(start, end, sequence, NIL, NIL);
+        return derive(arena.insert(root, node), size + 1);
+    }
+
+    /**
+     * Create a new version of this tree with an interval removed.
+     * <p>
+     * If there is no such interval, this tree is returned unchanged.
+     *
+     * @param start start of the interval to remove
+     * @param sequence sequence number of the interval to remove
+     * @return new version of the tree
+     */
+    IntervalTree remove(long start, long sequence) {
+        arena.removed = false;
+        int newRoot = arena.remove(root, start, sequence);
+        if (!arena.removed) {
+            return this;
+        }
+        return derive(newRoot, size - 1);
+    }
+
+    /**
+     * Visit all of the intervals that contain a particular point, in interval start order, with intervals that have the
+     * same start in sequence order.
+     *
+     * @param point point to test
+     * @param visitor visitor to receive the intervals
+     */
+    void visitContaining(long point, Visitor visitor) {
+        visitContaining(root, point, visitor);
+    }
+
+    /**
+     * Visit all of the intervals that start within a particular range and end on or after a particular point, in
+     * interval start order.
+     *
+     * @param after lower bound for the start of an interval (exclusive)
+     * @param upTo upper bound for the start of an interval (inclusive)
+     * @param minEnd lower bound for the end of an interval (inclusive)
+     * @param visitor visitor to receive the intervals
+     */
+    void visitStarting(long after, long upTo, long minEnd, Visitor visitor) {
+        visitStarting(root, after, upTo, minEnd, visitor);
+    }
+
+    /**
+     * Get the number of intervals.
+     *
+     * @return size
+     */
+    int size() {
+        return size;
+    }
+
+    private IntervalTree derive(int newRoot, int newSize) {
+        if (arena.allocated > COMPACT_THRESHOLD && arena.allocated > 4 * newSize) {
+            return compact(newRoot, newSize);
+        }
+        return new IntervalTree(arena, newRoot, newSize);
+    }
+
+    /**
+     * Copy all of the live nodes from a version into a fresh, perfectly balanced, arena.
+     *
+     * @param oldRoot root of the version to compact
+     * @param newSize number of nodes in that version
+     * @return compacted tree
+     */
+    private IntervalTree compact(int oldRoot, int newSize) {
+        Arena fresh = new Arena(Math.max(INITIAL_CAPACITY, newSize * 2));
+        int[] nodes = new int[newSize];
+        collect(arena, oldRoot, nodes, 0);
+        return new IntervalTree(fresh, fresh.build(arena, nodes, 0, newSize - 1), newSize);
+    }
+
+    private static int collect(Arena arena, int node, int[] nodes, int index) {
+        while (node != NIL) {
+            index = collect(arena, arena.left[node], nodes, index);
+            nodes[index++] = node;
+            node = arena.right[node];
+        }
+        return index;
+    }
+
+    private void visitContaining(int node, long point, Visitor visitor) {
+        while (node != NIL && maxEnd[node] >= point) {
+            visitContaining(left[node], point, visitor);
+            if (start[node] > point) {
+                // Every interval in the right sub-tree starts even later
+                return;
+            }
+            if (end[node] >= point) {
+                visitor.visit(start[node], end[node], sequence[node]);
+            }
+            node = right[node];
+        }
+    }
+
+    private void visitStarting(int node, long after, long upTo, long minEnd, Visitor visitor) {
+        while (node != NIL && maxEnd[node] >= minEnd) {
+            if (start[node] <= after) {
+                // This node, and its entire left sub-tree, start too early
+                node = right[node];
+                continue;
+            }
+            visitStarting(left[node], after, upTo, minEnd, visitor);
+            if (start[node] > upTo) {
+                return;
+            }
+            if (end[node] >= minEnd) {
+                visitor.visit(start[node], end[node], sequence[node]);
+            }
+            node = right[node];
+        }
+    }
+
+    /**
+     * Append-only node storage.
+     * <p>
+     * A node, once written, is never modified - every structural change copies the affected node to a new slot.
+     */
+    private static final class Arena {
+
+        private long[] start;
+        private long[] end;
+        private long[] maxEnd;
+        private long[] sequence;
+        private int[] left;
+        private int[] right;
+        private int[] height;
+
+        /**
+         * High-water mark of allocated node slots.
+         */
+        private int allocated;
+
+        /**
+         * Scratch field used while deleting, holds the handle of the node detached by {@link #detachMin(int)}.
+         */
+        private int detached;
+
+        /**
+         * Scratch field used while deleting, flags whether or not a node was actually removed.
+         */
+        private boolean removed;
+
+        private Arena(int capacity) {
+            start = new long[capacity];
+            end = new long[capacity];
+            maxEnd = new long[capacity];
+            sequence = new long[capacity];
+            left = new int[capacity];
+            right = new int[capacity];
+            height = new int[capacity];
+        }
+
+        private int insert(int node, int newNode) {
+            if (node == NIL) {
+                return newNode;
+            }
+            if (compare(start[newNode], sequence[newNode], node) < 0) {
+                return balance(node, insert(left[node], newNode), right[node]);
+            } else {
+                return balance(node, left[node], insert(right[node], newNode));
+            }
+        }
+
+        private int remove(int node, long key, long keySequence) {
+            if (node == NIL) {
+                return NIL;
+            }
+            int cmp = compare(key, keySequence, node);
+            if (cmp < 0) {
+                int newLeft = remove(left[node], key, keySequence);
+                return removed ? balance(node, newLeft, right[node]) : node;
+            }
+            if (cmp > 0) {
+                int newRight = remove(right[node], key, keySequence);
+                return removed ? balance(node, left[node], newRight) : node;
+            }
+            removed = true;
+            if (left[node] == NIL) {
+                return right[node];
+            }
+            if (right[node] == NIL) {
+                return left[node];
+            }
+            int newRight = detachMin(right[node]);
+            return balance(detached, left[node], newRight);
+        }
+
+        private int detachMin(int node) {
+            if (left[node] == NIL) {
+                detached = node;
+                return right[node];
+            }
+            return balance(node, detachMin(left[node]), right[node]);
+        }
+
+        /**
+         * Create a copy of a node with new children, rebalancing as necessary.
+         *
+         * @param node node to copy
+         * @param newLeft new left child
+         * @param newRight new right child
+         * @return root of the resultant (balanced) subtree
+         */
+        private int balance(int node, int newLeft, int newRight) {
+            int balance = height(newLeft) - height(newRight);
+            if (balance > 1) {
+                if (height(left[newLeft]) < height(right[newLeft])) {
+                    newLeft = rotateLeft(newLeft, left[newLeft], right[newLeft]);
+                }
+                // Rotate right
+                int pivot = newLeft;
+                return copy(pivot, left[pivot], copy(node, right[pivot], newRight));
+            }
+            if (balance < -1) {
+                if (height(right[newRight]) < height(left[newRight])) {
+                    newRight = rotateRight(newRight, left[newRight], right[newRight]);
+                }
+                return rotateLeft(node, newLeft, newRight);
+            }
+            return copy(node, newLeft, newRight);
+        }
+
+        private int rotateLeft(int node, int newLeft, int pivot) {
+            return copy(pivot, copy(node, newLeft, left[pivot]), right[pivot]);
+        }
+
+        private int rotateRight(int node, int pivot, int newRight) {
+            return copy(pivot, left[pivot], copy(node, right[pivot], newRight));
+        }
+
+        private int copy(int node, int newLeft, int newRight) {
+            return newNode(start[node], end[node], sequence[node], newLeft, newRight);
+        }
+
+        /**
+         * Build a perfectly balanced subtree from a sorted range of nodes in another arena.
+         *
+         * @param from arena containing the source nodes
+         * @param nodes source node handles, in order
+         * @param lo index of the first node in the range
+         * @param hi index of the last node in the range
+         * @return root of the new subtree
+         */
+        private int build(Arena from, int[] nodes, int lo, int hi) {
+            if (lo > hi) {
+                return NIL;
+            }
+            int mid = (lo + hi) >>> 1;
+            int newLeft = build(from, nodes, lo, mid - 1);
+            int newRight = build(from, nodes, mid + 1, hi);
+            int node = nodes[mid];
+            return newNode(from.start[node], from.end[node], from.sequence[node], newLeft, newRight);
+        }
+
+        /**
+         * Link a sorted range of nodes, already written in order to this arena, into a perfectly balanced subtree.
+         *
+         * @param lo index of the first node in the range
+         * @param hi index of the last node in the range
+         * @return root of the subtree
+         */
+        private int link(int lo, int hi) {
+            if (lo > hi) {
+                return NIL;
+            }
+            int node = (lo + hi) >>> 1;
+            int newLeft = link(lo, node - 1);
+            int newRight = link(node + 1, hi);
+            left[node] = newLeft;
+            right[node] = newRight;
+            height[node] = 1 + Math.max(height(newLeft), height(newRight));
+            long max = end[node];
+            if (newLeft != NIL && maxEnd[newLeft] > max) {
+                max = maxEnd[newLeft];
+            }
+            if (newRight != NIL && maxEnd[newRight] > max) {
+                max = maxEnd[newRight];
+            }
+            maxEnd[node] = max;
+            return node;
+        }
+
+        private int newNode(long nodeStart, long nodeEnd, long nodeSequence, int newLeft, int newRight) {
+            if (allocated == start.length) {
+                grow(start.length * 2);
+            }
+            int node = allocated++;
+            start[node] = nodeStart;
+            end[node] = nodeEnd;
+            sequence[node] = nodeSequence;
+            left[node] = newLeft;
+            right[node] = newRight;
+            height[node] = 1 + Math.max(height(newLeft), height(newRight));
+            long max = nodeEnd;
+            if (newLeft != NIL && maxEnd[newLeft] > max) {
+                max = maxEnd[newLeft];
+            }
+            if (newRight != NIL && maxEnd[newRight] > max) {
+                max = maxEnd[newRight];
+            }
+            maxEnd[node] = max;
+            return node;
+        }
+
+        private int height(int node) {
+            return node != NIL ? height[node] : 0;
+        }
+
+        private int compare(long key, long keySequence, int node) {
+            int cmp = Long.compare(key, start[node]);
+            return cmp != 0 ? cmp : Long.compare(keySequence, sequence[node]);
+        }
+
+        /**
+         * Grow the arena.
+         * <p>
+         * New arrays are always allocated (rather than growing in place) so that existing versions keep a consistent
+         * view of their own nodes.
+         *
+         * @param capacity new capacity
+         */
+        private void grow(int capacity) {
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            maxEnd = Arrays.copyOf(maxEnd, capacity);
+            sequence = Arrays.copyOf(sequence, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            height = Arrays.copyOf(height, capacity);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package org.mbari.cthulhu.annotations;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import javafx.application.Platform;
+import org.mbari.cthulhu.model.Annotation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Component that accumulates incoming annotation changes and applies them in batches.
+ * <p>
+ * Localizations tend to arrive in bursts - when a video is opened the remote source may send many thousands of them, and an edit is sent as a remove followed
+ * by an add. Applying each change as it arrives means taking the annotation manager write lock, and refreshing the view, for every one of them.
+ * <p>
+ * Instead, changes are held for a short window (or until enough of them are pending) and then applied together as a single {@link Batch}. While pending, the
+ * changes for the same annotation are collapsed, so e.g. a remove followed by an add of the same annotation becomes a single replacement, and an add followed
+ * by a remove cancels out to just the remove.
+ * <p>
+ * The window is timed on a shared background thread, but each batch is taken and applied on the JavaFX application thread, since applying a batch changes the
+ * view. Batches are therefore applied one at a time, in the order the changes arrived, and never concurrently with a JavaFX pulse.
+ */
+final class LocalizationIngest {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalizationIngest.class);
+
+    /**
+     * Default time to hold pending changes before applying them, in milliseconds.
+     */
+    static final long WINDOW = 50;
+
+    /**
+     * Default number of pending changes that triggers a batch without waiting for the window to elapse.
+     */
+    static final int MAX_PENDING = 5000;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder()
+            .setNameFormat("localization-ingest")
+            .setDaemon(true)
+            .build()
+    );
+
+    private enum Kind {
+        ADD,
+        REMOVE,
+        REPLACE,
+        UPDATE
+    }
+
+    /**
+     * Action that applies each batch.
+     */
+    private final Consumer<Batch> applyAction;
+
+    /**
+     * Executor for the thread that batches are applied on.
+     */
+    private final Executor applyExecutor;
+
+    private final long window;
+
+    private final int maxPending;
+
+    /**
+     * Pending changes, keyed by annotation, in the order each annotation was first changed.
+     * <p>
+     * Guarded by this instance.
+     */
+    private Map<UUID, Change> pending = new LinkedHashMap<>();
+
+    /**
+     * Scheduled application of the pending changes, if there is one.
+     * <p>
+     * Guarded by this instance.
+     */
+    private ScheduledFuture<?> scheduled;
+
+    /**
+     * Lock used to apply one batch at a time.
+     */
+    private final Object applyLock = new Object();
+
+    private long batches;
+
+    /**
+     * Create an ingest component that applies batches on the JavaFX application thread, with the default window and size limit.
+     *
+     * @param applyAction action that applies each batch
+     */
+    LocalizationIngest(Consumer<Batch> applyAction) {
+        this(applyAction, Platform::runLater, WINDOW, MAX_PENDING);
+    }
+
+    /**
+     * Create an ingest component.
+     *
+     * @param applyAction action that applies each batch
+     * @param applyExecutor executor for the thread that batches are applied on
+     * @param window time to hold pending changes before applying them, in milliseconds
+     * @param maxPending number of pending changes that triggers a batch immediately
+     */
+    LocalizationIngest(Consumer<Batch> applyAction, Executor applyExecutor, long window, int maxPending) {
+        this.applyAction = applyAction;
+        this.applyExecutor = applyExecutor;
+        this.window = window;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Queue added annotations.
+     *
+     * @param annotations added annotations
+     */
+    void added(List<Annotation> annotations) {
+        queue(Kind.ADD, annotations);
+    }
+
+    /**
+     * Queue removed annotations.
+     *
+     * @param annotations removed annotations
+     */
+    void removed(List<Annotation> annotations) {
+        queue(Kind.REMOVE, annotations);
+    }
+
+    /**
+     * Queue updated annotations.
+     *
+     * @param annotations updated annotations
+     */
+    void updated(List<Annotation> annotations) {
+        queue(Kind.UPDATE, annotations);
+    }
+
+    /**
+     * Apply any pending changes now, on the calling thread.
+     * <p>
+     * Used where something else depends on the changes having been applied, e.g. selecting an annotation that was only just added. Must only be called on the
+     * thread that batches are applied on, so batches are still applied in order.
+     */
+    void flush() {
+        synchronized (applyLock) {
+            Batch batch = take();
+            if (batch != null) {
+                batches++;
+                log.debug("flush(batch={})", batch);
+                applyAction.accept(batch);
+            }
+        }
+    }
+
+    /**
+     * Discard any pending changes.
+     */
+    synchronized void clear() {
+        log.debug("clear()");
+        pending = new LinkedHashMap<>();
+        cancel();
+    }
+
+    private synchronized void queue(Kind kind, List<Annotation> annotations) {
+        if (annotations.isEmpty()) {
+            return;
+        }
+        for (Annotation annotation : annotations) {
+            pending.merge(annotation.id(), new Change(kind, annotation), Change::then);
+        }
+        if (pending.size() >= maxPending) {
+            cancel();
+            scheduled = executor.schedule(this::applyLater, 0, TimeUnit.MILLISECONDS);
+        } else if (scheduled == null) {
+            scheduled = executor.schedule(this::applyLater, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void applyLater() {
+        applyExecutor.execute(this::flush);
+    }
+
+    /**
+     * Take all of the pending changes.
+     *
+     * @return batch of changes, or <code>null</code> if there are none
+     */
+    private synchronized Batch take() {
+        scheduled = null;
+        if (pending.isEmpty()) {
+            return null;
+        }
+        Map<UUID, Change> changes = pending;
+        pending = new LinkedHashMap<>();
+        return new Batch(changes.values());
+    }
+
+    private void cancel() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return toStringHelper(this)
+            .add("pending", pending.size())
+            .add("batches", batches)
+            .toString();
+    }
+
+    /**
+     * A pending change to a single annotation.
+     */
+    private static final class Change {
+
+        private final Kind kind;
+
+        private final Annotation annotation;
+
+        private Change(Kind kind, Annotation annotation) {
+            this.kind = kind;
+            this.annotation = annotation;
+        }
+
+        /**
+         * Collapse this change with a subsequent change to the same annotation.
+         *
+         * @param next subsequent change
+         * @return single equivalent change
+         */
+        private Change then(Change next) {
+            switch (next.kind) {
+                case ADD:
+                    // An add of an annotation that was removed (or already replaced) replaces it
+                    return new Change(kind == Kind.REMOVE || kind == Kind.REPLACE ? Kind.REPLACE : Kind.ADD, next.annotation);
+                case REMOVE:
+                    return next;
+                case UPDATE:
+                    switch (kind) {
+                        case REMOVE:
+                            // Updating an annotation that will not exist has no effect
+                            return this;
+                        case ADD:
+                        case REPLACE:
+                            // The annotation is not applied yet, so apply the updated version instead
+                            return new Change(kind, next.annotation);
+                        default:
+                            return next;
+                    }
+                default:
+                    throw new IllegalStateException("Unexpected change " + next.kind);
+            }
+        }
+    }
+
+    /**
+     * A collapsed set of changes, at most one per annotation, to be applied together.
+     */
+    static final class Batch {
+
+        private final List<Annotation> removed = new ArrayList<>();
+
+        private final List<Annotation> replaced = new ArrayList<>();
+
+        private final List<Annotation> added = new ArrayList<>();
+
+        private final List<Annotation> updated = new ArrayList<>();
+
+        private Batch(Iterable<Change> changes) {
+            for (Change change : changes) {
+                switch (change.kind) {
+                    case ADD:
+                        added.add(change.annotation);
+                        break;
+                    case REMOVE:
+                        removed.add(change.annotation);
+                        break;
+                    case REPLACE:
+                        replaced.add(change.annotation);
+                        break;
+                    case UPDATE:
+                        updated.add(change.annotation);
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Get the annotations to remove.
+         *
+         * @return removed annotations
+         */
+        List<Annotation> removed() {
+            return removed;
+        }
+
+        /**
+         * Get the annotations that replace an existing annotation with the same identifier, e.g. the result of a remove followed by an add.
+         *
+         * @return replacement annotations
+         */
+        List<Annotation> replaced() {
+            return replaced;
+        }
+
+        /**
+         * Get the annotations to add.
+         *
+         * @return added annotations
+         */
+        List<Annotation> added() {
+            return added;
+        }
+
+        /**
+         * Get the annotations to update in place.
+         *
+         * @return updated annotations
+         */
+        List<Annotation> updated() {
+            return updated;
+        }
+
+        @Override
+        public String toString() {
+            return toStringHelper(this)
+                .add("removed", removed.size())
+                .add("replaced", replaced.size())
+                .add("added", added.size())
+                .add("updated", updated.size())
+                .toString();
+        }
+    }
+}
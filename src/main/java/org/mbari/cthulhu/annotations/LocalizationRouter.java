@@ -0,0 +1,223 @@
+package org.mbari.cthulhu.annotations;
+
+import javafx.collections.ListChangeListener.Change;
+import org.mbari.vcr4j.sharktopoda.client.localization.Localization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static org.mbari.cthulhu.app.CthulhuApplication.application;
+
+/**
+ * Component that partitions incoming localizations by video, so each player only ever sees the localizations for its own video.
+ * <p>
+ * The application has a single list of localizations, and a single list of selected localizations, shared by every video. Rather than every
+ * {@link AnnotationController} listening to those lists and filtering every change, the router listens once, groups each change by video reference, and
+ * dispatches each group only to the listener registered for that video.
+ * <p>
+ * The router also keeps an index of the current localizations for every video, whether or not a player is open for it, so a player that opens (or re-opens)
+ * a video is given all of its localizations immediately.
+ * <p>
+ * Listeners are invoked on the thread that changed the underlying list.
+ */
+final class LocalizationRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalizationRouter.class);
+
+    /**
+     * Receiver of the localization changes for a single video.
+     */
+    interface Listener {
+
+        /**
+         * Invoked when localizations were added.
+         *
+         * @param localizations added localizations
+         */
+        void localizationsAdded(List<Localization> localizations);
+
+        /**
+         * Invoked when localizations were removed.
+         *
+         * @param localizations removed localizations
+         */
+        void localizationsRemoved(List<Localization> localizations);
+
+        /**
+         * Invoked when localizations were updated in place.
+         *
+         * @param localizations updated localizations
+         */
+        void localizationsUpdated(List<Localization> localizations);
+
+        /**
+         * Invoked when localizations were selected.
+         *
+         * @param localizations selected localizations
+         */
+        void localizationsSelected(List<Localization> localizations);
+
+        /**
+         * Invoked when localizations were deselected.
+         *
+         * @param localizations deselected localizations
+         */
+        void localizationsDeselected(List<Localization> localizations);
+    }
+
+    private static final class Holder {
+        private static final LocalizationRouter INSTANCE = new LocalizationRouter();
+    }
+
+    /**
+     * Get the localization router.
+     *
+     * @return localization router
+     */
+    static LocalizationRouter localizationRouter() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Current localizations for each video, keyed by video reference and then by localization, in arrival order.
+     */
+    private final Map<UUID, Map<UUID, Localization>> localizationsByVideo = new HashMap<>();
+
+    private final Map<UUID, Listener> listeners = new HashMap<>();
+
+    private LocalizationRouter() {
+        synchronized (this) {
+            index(application().localization().getLocalizations(), true);
+        }
+        application().localization()
+            .getLocalizations()
+            .addListener(this::handleLocalizationChanged);
+
+        application().localizationSelection()
+            .getSelectedLocalizations()
+            .addListener(this::handleSelectionChanged);
+    }
+
+    /**
+     * Register the listener for a video, replacing any previous listener for the same video.
+     *
+     * @param videoReferenceUuid video reference
+     * @param listener listener
+     */
+    synchronized void register(UUID videoReferenceUuid, Listener listener) {
+        log.debug("register(videoReferenceUuid={})", videoReferenceUuid);
+        listeners.put(videoReferenceUuid, listener);
+    }
+
+    /**
+     * Unregister the listener for a video.
+     * <p>
+     * The localizations for the video continue to be tracked.
+     *
+     * @param videoReferenceUuid video reference
+     * @param listener listener, only unregistered if it is still the current listener for the video
+     */
+    synchronized void unregister(UUID videoReferenceUuid, Listener listener) {
+        log.debug("unregister(videoReferenceUuid={})", videoReferenceUuid);
+        listeners.remove(videoReferenceUuid, listener);
+    }
+
+    /**
+     * Get the current localizations for a video.
+     *
+     * @param videoReferenceUuid video reference
+     * @return localizations, in arrival order
+     */
+    synchronized List<Localization> localizations(UUID videoReferenceUuid) {
+        Map<UUID, Localization> localizations = localizationsByVideo.get(videoReferenceUuid);
+        return localizations != null ? new ArrayList<>(localizations.values()) : List.of();
+    }
+
+    private synchronized void handleLocalizationChanged(Change<? extends Localization> change) {
+        while (change.next()) {
+            // Implementation note - updates may no longer be needed as it appears we receive a remove then an add instead
+            if (change.wasUpdated()) {
+                List<? extends Localization> updated = change.getList().subList(change.getFrom(), change.getTo());
+                index(updated, true);
+                dispatch(updated, Listener::localizationsUpdated);
+            } else {
+                if (change.wasRemoved()) {
+                    index(change.getRemoved(), false);
+                    dispatch(change.getRemoved(), Listener::localizationsRemoved);
+                }
+                if (change.wasAdded()) {
+                    index(change.getAddedSubList(), true);
+                    dispatch(change.getAddedSubList(), Listener::localizationsAdded);
+                }
+            }
+        }
+    }
+
+    private synchronized void handleSelectionChanged(Change<? extends Localization> change) {
+        while (change.next()) {
+            if (change.wasRemoved()) {
+                dispatch(change.getRemoved(), Listener::localizationsDeselected);
+            }
+            if (change.wasAdded()) {
+                dispatch(change.getAddedSubList(), Listener::localizationsSelected);
+            }
+        }
+    }
+
+    private void index(List<? extends Localization> localizations, boolean add) {
+        for (Localization localization : localizations) {
+            UUID videoReferenceUuid = localization.getVideoReferenceUuid();
+            if (videoReferenceUuid == null) {
+                continue;
+            }
+            if (add) {
+                localizationsByVideo.computeIfAbsent(videoReferenceUuid, uuid -> new LinkedHashMap<>())
+                    .put(localization.getLocalizationUuid(), localization);
+            } else {
+                Map<UUID, Localization> videoLocalizations = localizationsByVideo.get(videoReferenceUuid);
+                if (videoLocalizations != null) {
+                    videoLocalizations.remove(localization.getLocalizationUuid());
+                    if (videoLocalizations.isEmpty()) {
+                        localizationsByVideo.remove(videoReferenceUuid);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Group localizations by video and pass each group to the listener for that video, if there is one.
+     *
+     * @param localizations localizations, for any number of videos
+     * @param action listener method to invoke with each group
+     */
+    private void dispatch(List<? extends Localization> localizations, BiConsumer<Listener, List<Localization>> action) {
+        if (localizations.isEmpty() || listeners.isEmpty()) {
+            return;
+        }
+        Map<UUID, List<Localization>> byVideo = new LinkedHashMap<>();
+        for (Localization localization : localizations) {
+            UUID videoReferenceUuid = localization.getVideoReferenceUuid();
+            if (videoReferenceUuid != null && listeners.containsKey(videoReferenceUuid)) {
+                byVideo.computeIfAbsent(videoReferenceUuid, uuid -> new ArrayList<>()).add(localization);
+            }
+        }
+        byVideo.forEach((videoReferenceUuid, group) -> action.accept(listeners.get(videoReferenceUuid), group));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return toStringHelper(this)
+            .add("videos", localizationsByVideo.size())
+            .add("listeners", listeners.size())
+            .toString();
+    }
+}
@@ -6,6 +6,8 @@ import javafx.application.Platform;
 import org.mbari.cthulhu.app.config.BuildInfo;
 import org.mbari.cthulhu.app.config.KeyMap;
 import org.mbari.cthulhu.app.config.MediaPlayerConfig;
+import org.mbari.cthulhu.capture.CaptureProgress;
+import org.mbari.cthulhu.capture.FrameCaptureBatch;
 import org.mbari.cthulhu.settings.Settings;
 import org.mbari.cthulhu.ui.player.PlayerComponent;
 import org.mbari.vcr4j.sharktopoda.client.localization.Localization;
@@ -25,6 +27,8 @@ import static java.util.stream.Collectors.toList;
 import static org.mbari.cthulhu.app.config.BuildInfo.readBuildInfo;
 import static org.mbari.cthulhu.app.config.KeyMap.readKeyMap;
 import static org.mbari.cthulhu.app.config.MediaPlayerConfig.readMediaPlayerConfig;
+import static org.mbari.cthulhu.capture.BatchFrameCapture.batchFrameCapture;
+import static org.mbari.cthulhu.decode.DecodeWorkerPool.decodeWorkerPool;
 import static org.mbari.cthulhu.settings.SettingsManager.settingsManager;
 
 /**
@@ -112,6 +116,15 @@ final public class CthulhuApplication {
         return buildInfo;
     }
 
+    /**
+     * Get the media player configuration.
+     *
+     * @return media player configuration
+     */
+    public MediaPlayerConfig mediaPlayerConfig() {
+        return mediaPlayerConfig;
+    }
+
     /**
      * Get the application key-bindings.
      *
@@ -219,6 +232,23 @@ final public class CthulhuApplication {
         playerComponents.close(uuid);
     }
 
+    /**
+     * Capture a batch of frames from the media currently open in a player component.
+     * <p>
+     * The frames are captured by a separate offscreen media player, so the player component itself is not disturbed.
+     *
+     * @param uuid unique identifier of the player component
+     * @param batch frames to capture
+     * @return observable progress, nothing is captured until this is subscribed to
+     */
+    public Observable<CaptureProgress> captureFrames(UUID uuid, FrameCaptureBatch batch) {
+        log.debug("captureFrames(uuid={}, batch={})", uuid, batch);
+        return playerComponents.get(uuid)
+            .map(playerComponent -> playerComponent.mediaPlayer().media().info())
+            .map(info -> batchFrameCapture().capture(info.mrl(), batch))
+            .orElseGet(() -> Observable.error(new IllegalArgumentException("No media open for " + uuid)));
+    }
+
     /**
      * Set the currently active (focussed) player component.
      *
@@ -240,6 +270,7 @@ final public class CthulhuApplication {
     public void quit() {
         log.debug("quit()");
         playerComponents.closeAll();
+        decodeWorkerPool().shutdown();
         close();
     }
 
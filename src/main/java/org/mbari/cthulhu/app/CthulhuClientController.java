@@ -1,6 +1,6 @@
 package org.mbari.cthulhu.app;
 
-import javafx.application.Platform;
+import org.mbari.cthulhu.app.config.FrameCaptureMode;
 import org.mbari.cthulhu.ui.player.PlayerComponent;
 import org.mbari.vcr4j.sharktopoda.client.ClientController;
 import org.mbari.vcr4j.sharktopoda.client.model.FrameCapture;
@@ -21,15 +21,26 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static java.util.stream.Collectors.toList;
 import static org.mbari.cthulhu.app.CthulhuApplication.application;
+import static org.mbari.cthulhu.app.RemoteCommandExecutor.onPlatform;
+import static org.mbari.cthulhu.capture.FrameEncoder.frameEncoder;
 
 /**
  * Component that translates incoming remote controller requests to application actions.
+ * <p>
+ * Requests arrive on the network receive thread. Commands that change player state are handed to a {@link RemoteCommandExecutor} so that the network thread
+ * is never blocked for long:
+ * <ul>
+ *     <li>play, pause, seek and frame advance are queued and acknowledged immediately;</li>
+ *     <li>open, close and show report their outcome, but the network thread waits only up to a timeout;</li>
+ *     <li>elapsed time requests and frame captures go through the same queue, so they observe the effect of any earlier seek.</li>
+ * </ul>
  *
  * @see IO
  */
@@ -41,25 +52,30 @@ final class CthulhuClientController implements ClientController {
 
     private static final String FILE_PREFIX = "file:";
 
+    private final RemoteCommandExecutor commands = new RemoteCommandExecutor();
+
     CthulhuClientController() {
     }
 
     @Override
     public boolean open(UUID uuid, URL url) {
         log.debug("open(uuid={}, url={})", uuid, url);
-        return platformExecute(() -> application().playerComponents().open(uuid).playNewMedia(convertMrl(url)));
+        return commands.execute("open", uuid, onPlatform(() -> application().playerComponents().open(uuid).playNewMedia(convertMrl(url))));
     }
 
     @Override
     public boolean close(UUID uuid) {
         log.debug("close(uuid={})", uuid);
-        return platformExecute(() -> application().playerComponents().close(uuid));
+        boolean result = commands.execute("close", uuid, onPlatform(() -> application().playerComponents().close(uuid)));
+        commands.release(uuid);
+        log.debug("commands={}", commands);
+        return result;
     }
 
     @Override
     public boolean show(UUID uuid) {
         log.debug("show(uuid={})", uuid);
-        return platformExecute(() -> application().playerComponents().show(uuid));
+        return commands.execute("show", uuid, onPlatform(() -> application().playerComponents().show(uuid)));
     }
 
     @Override
@@ -78,25 +94,22 @@ final class CthulhuClientController implements ClientController {
 
     @Override
     public boolean play(UUID uuid, double rate) {
-        log.debug("play(uuid={}, rate)", rate);
-        return application().playerComponents().get(uuid)
-            .map(playerComponent -> {
-                playerComponent.mediaPlayer().controls().setRate((float) rate);
-                playerComponent.mediaPlayer().controls().play();
-                return true;
-            }).orElse(false);
+        log.debug("play(uuid={}, rate={})", uuid, rate);
+        return submit("play", uuid, playerComponent -> {
+            playerComponent.play(rate);
+            return true;
+        });
     }
 
     @Override
     public boolean pause(UUID uuid) {
         log.debug("pause(uuid={})", uuid);
-        return application().playerComponents().get(uuid)
-            .map(playerComponent -> {
-                if (playerComponent.playing()) {
-                    playerComponent.mediaPlayer().controls().pause();
-                }
-                return true;
-            }).orElse(false);
+        return submit("pause", uuid, playerComponent -> {
+            if (playerComponent.playing()) {
+                playerComponent.mediaPlayer().controls().pause();
+            }
+            return true;
+        });
     }
 
     @Override
@@ -109,53 +122,63 @@ final class CthulhuClientController implements ClientController {
     @Override
     public Optional<Duration> requestElapsedTime(UUID uuid) {
         log.debug("requestElapsedTime(uuid={})", uuid);
-        return application().playerComponents().get(uuid)
-            .map(playerComponent -> Duration.ofMillis(playerComponent.mediaPlayer().status().time()));
+        if (application().playerComponents().get(uuid).isEmpty()) {
+            return Optional.empty();
+        }
+        // Queued, so the reply reflects any seek that was received earlier
+        return commands.query("elapsedTime", uuid, () -> application().playerComponents().get(uuid)
+            .map(playerComponent -> Duration.ofMillis(playerComponent.mediaPlayer().status().time()))
+        );
     }
 
     @Override
     public boolean seekElapsedTime(UUID uuid, Duration duration) {
         log.debug("seekElapsedTime(uuid={}, duration={})", uuid, duration);
         return application().playerComponents().get(uuid)
-            .map(playerComponent ->
-                platformExecute(() -> playerComponent.setTime(duration.toMillis()))
-            ).orElse(false);
+            .map(playerComponent -> {
+                commands.submit("seek", uuid, onPlatform(() -> playerComponent.setTime(duration.toMillis())));
+                return true;
+            }).orElse(false);
     }
 
     @Override
     public boolean frameAdvance(UUID uuid) {
         log.debug("frameAdvance(uuid={})", uuid);
-        return application().playerComponents().get(uuid)
-            .map(playerComponent -> {
-                playerComponent.mediaPlayer().controls().nextFrame();
-                return true;
-            }).orElse(false);
+        return submit("frameAdvance", uuid, playerComponent -> {
+            playerComponent.mediaPlayer().controls().nextFrame();
+            return true;
+        });
     }
 
     @Override
     public CompletableFuture<FrameCapture> framecapture(UUID uuid, Path path) {
         log.debug("framecapture(uuid={}, path={})", uuid, path);
-        return application().playerComponents().get(uuid)
-            .map(playerComponent -> takeSnapshot(playerComponent, path))
-            .orElseThrow();
+        PlayerComponent playerComponent = application().playerComponents().get(uuid).orElseThrow();
+        // Queued, so the frame is captured only after any seek that was received earlier has been applied
+        return commands.enqueue("framecapture", uuid, () -> application().mediaPlayerConfig().frameCaptureMode() == FrameCaptureMode.MEMORY ?
+                captureFrame(playerComponent, path) :
+                takeSnapshot(playerComponent, path)
+            )
+            .thenCompose(Function.identity());
     }
 
     /**
-     * Execute a task on the JavaFX application thread, wait for it to complete and return the result.
+     * Queue a command for a player component without waiting for it to complete.
+     * <p>
+     * The command is acknowledged if the player component exists when the command is received.
      *
-     * @param callable task to execute
-     * @return return value from task, or false on error
+     * @param name command name
+     * @param uuid unique identifier of the player component
+     * @param command command to execute with the player component
+     * @return <code>true</code> if the command was queued; <code>false</code> if there is no such player component
      */
-    private static Boolean platformExecute(Callable<Boolean> callable) {
-        FutureTask<Boolean> task = new FutureTask<>(callable);
-        Platform.runLater(task);
-        try {
-            log.debug("waiting for task result");
-            return task.get();
-        } catch (Exception e) {
-            log.error("Failed to execute task", e);
+    private boolean submit(String name, UUID uuid, Predicate<PlayerComponent> command) {
+        if (application().playerComponents().get(uuid).isEmpty()) {
             return false;
         }
+        // The player component is looked up again when the command runs, since it may have been closed by an earlier command in the queue
+        commands.submit(name, uuid, () -> application().playerComponents().get(uuid).map(command::test).orElse(false));
+        return true;
     }
 
     /**
@@ -173,6 +196,31 @@ final class CthulhuClientController implements ClientController {
         }
     }
 
+    /**
+     * Create a future for capturing the current frame directly from the video buffer.
+     * <p>
+     * The frame is copied as soon as the video surface shows the result of any earlier seek - the native media player seeks asynchronously, so the frame on
+     * screen when the seek returns is still the frame from before it. The copy is tagged with its estimated media time, and then encoded on the shared frame
+     * encoder. If no frame has been displayed yet, the media time of the frame is not known, or the frame encoder is too busy to accept the frame, a media
+     * player snapshot is taken instead.
+     *
+     * @param playerComponent media player component
+     * @param path file path for the saved frame
+     * @return future
+     */
+    private static CompletableFuture<FrameCapture> captureFrame(PlayerComponent playerComponent, Path path) {
+        log.debug("captureFrame(playerComponent={}, path={})", playerComponent, path);
+        File captureFile = convertSnapshotPath(path);
+        return playerComponent.captureSeekedFrame().thenCompose(capturedFrame -> capturedFrame
+            .filter(frame -> frame.mediaTime() != Long.MIN_VALUE)
+            .map(frame -> frameEncoder().encode(frame, captureFile)
+                .thenApply(file -> new FrameCapture(file.toPath(), Duration.ofMillis(frame.mediaTime())))
+                .exceptionallyCompose(e -> e.getCause() instanceof RejectedExecutionException ? takeSnapshot(playerComponent, path) : CompletableFuture.failedFuture(e))
+            )
+            .orElseGet(() -> takeSnapshot(playerComponent, path))
+        );
+    }
+
     /**
      * Create a future for taking a media player snapshot.
      *
@@ -0,0 +1,432 @@
+package org.mbari.cthulhu.app;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Component that executes remote control commands off the network receive thread.
+ * <p>
+ * Each player component has its own serial command queue, so commands for one player are always executed in the order they were received, but a slow command
+ * for one player (e.g. opening new media) never holds up commands for any other player. The queues share a single pool of daemon threads.
+ * <p>
+ * Commands are either:
+ * <ul>
+ *     <li>submitted - the network thread does not wait at all, used for commands like play and pause where the reply does not depend on the outcome;</li>
+ *     <li>executed - the network thread waits for the outcome, but only up to a timeout, used for commands like open where the reply reports the outcome;</li>
+ *     <li>enqueued - the result is delivered via a future, used for requests like frame capture that must observe the effect of earlier commands.</li>
+ * </ul>
+ * An executed command that times out before it has started is abandoned, so it never runs and the negative reply is accurate. A command that times out
+ * after it has started can not be recalled, it still completes (and its eventual outcome is logged) even though the reply was negative - e.g. opening slow
+ * network media may report failure and then open anyway.
+ * <p>
+ * A queue is only discarded, after its player component is closed, once every command already in it has completed, so a new queue for the same player
+ * component never runs alongside the old one.
+ * <p>
+ * The latency of every command, from receipt to completion, is recorded per command name, and reported to the log periodically whenever more commands have
+ * completed since the previous report.
+ */
+final class RemoteCommandExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(RemoteCommandExecutor.class);
+
+    /**
+     * Longest time to wait for the outcome of an executed command, in milliseconds.
+     */
+    private static final long COMMAND_TIMEOUT = 5000;
+
+    /**
+     * Time between metrics reports, in seconds.
+     */
+    private static final long REPORT_PERIOD = 60;
+
+    private static final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder()
+            .setNameFormat("remote-command-metrics")
+            .setDaemon(true)
+            .build()
+    );
+
+    private final ExecutorService pool = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder()
+            .setNameFormat("remote-command-%d")
+            .setDaemon(true)
+            .build()
+    );
+
+    /**
+     * Serial command queue for each player component, keyed by the player component unique identifier.
+     * <p>
+     * The state of each queue is only changed within an atomic compute operation on this map.
+     */
+    private final Map<UUID, CommandQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Metrics for each command, keyed by command name.
+     */
+    private final Map<String, CommandMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Total number of completed commands at the previous metrics report, only accessed by the reporter thread.
+     */
+    private long reportedCount;
+
+    RemoteCommandExecutor() {
+        reporter.scheduleWithFixedDelay(this::report, REPORT_PERIOD, REPORT_PERIOD, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Submit a command for a player component without waiting for it to complete.
+     *
+     * @param name command name, used for metrics
+     * @param uuid unique identifier of the player component
+     * @param command command to execute
+     */
+    void submit(String name, UUID uuid, Callable<Boolean> command) {
+        log.trace("submit(name={}, uuid={})", name, uuid);
+        long received = System.nanoTime();
+        enqueue(uuid, () -> run(name, received, command));
+    }
+
+    /**
+     * Queue a command for a player component, delivering its result via a future.
+     *
+     * @param name command name, used for metrics
+     * @param uuid unique identifier of the player component
+     * @param command command to execute
+     * @param <T> type of result
+     * @return future result of the command
+     */
+    <T> CompletableFuture<T> enqueue(String name, UUID uuid, Callable<T> command) {
+        log.trace("enqueue(name={}, uuid={})", name, uuid);
+        long received = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        enqueue(uuid, () -> {
+            try {
+                result.complete(call(name, received, command));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Query a player component via its command queue, waiting for the result up to a timeout.
+     * <p>
+     * The query is executed after every command already queued for the player component.
+     *
+     * @param name query name, used for metrics
+     * @param uuid unique identifier of the player component
+     * @param query query to execute
+     * @param <T> type of result
+     * @return result of the query, or empty if the query had no result, failed or timed out
+     */
+    <T> Optional<T> query(String name, UUID uuid, Callable<Optional<T>> query) {
+        log.trace("query(name={}, uuid={})", name, uuid);
+        try {
+            return enqueue(name, uuid, query).get(COMMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Timed out waiting for {} query for {}", name, uuid);
+            metrics(name).timeouts.increment();
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Execute a command for a player component, waiting for its outcome up to a timeout.
+     *
+     * @param name command name, used for metrics
+     * @param uuid unique identifier of the player component
+     * @param command command to execute
+     * @return outcome of the command, or <code>false</code> if the command failed or timed out
+     */
+    boolean execute(String name, UUID uuid, Callable<Boolean> command) {
+        log.trace("execute(name={}, uuid={})", name, uuid);
+        long received = System.nanoTime();
+        // Claimed either by the queue to start the command, or by this thread to abandon it on timeout, whichever comes first
+        AtomicBoolean claimed = new AtomicBoolean();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        enqueue(uuid, () -> {
+            if (!claimed.compareAndSet(false, true)) {
+                log.debug("Abandoned {} command for {}", name, uuid);
+                result.complete(false);
+                return;
+            }
+            result.complete(run(name, received, command));
+        });
+        try {
+            return result.get(COMMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            metrics(name).timeouts.increment();
+            if (claimed.compareAndSet(false, true)) {
+                log.warn("Timed out waiting for {} command for {} to start, it will not be executed", name, uuid);
+                return false;
+            }
+            log.warn("Timed out waiting for {} command for {} to complete, it is still executing", name, uuid);
+            result.thenAccept(outcome -> log.warn("Timed out {} command for {} eventually completed with outcome {}", name, uuid, outcome));
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            log.error("Failed to execute {} command for {}", name, uuid, e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Wrap a command so that it executes on the JavaFX application thread.
+     * <p>
+     * The wrapped command occupies its player component queue until the JavaFX application thread has finished with it, preserving the order of commands.
+     *
+     * @param command command to wrap
+     * @return wrapped command
+     */
+    static Callable<Boolean> onPlatform(Callable<Boolean> command) {
+        return () -> {
+            FutureTask<Boolean> task = new FutureTask<>(command);
+            Platform.runLater(task);
+            return task.get();
+        };
+    }
+
+    /**
+     * Discard the command queue for a player component that has been closed.
+     * <p>
+     * The queue is kept until every command already in it has completed.
+     *
+     * @param uuid unique identifier of the player component
+     */
+    void release(UUID uuid) {
+        log.debug("release(uuid={})", uuid);
+        queues.computeIfPresent(uuid, (key, queue) -> {
+            queue.released = true;
+            return queue.pending > 0 ? queue : null;
+        });
+    }
+
+    /**
+     * Get the current command metrics.
+     *
+     * @return map of command metrics, keyed and sorted by command name
+     */
+    Map<String, CommandMetrics> metrics() {
+        return new TreeMap<>(metrics);
+    }
+
+    private void enqueue(UUID uuid, Runnable task) {
+        CommandQueue commandQueue = queues.compute(uuid, (key, queue) -> {
+            if (queue == null) {
+                queue = new CommandQueue(MoreExecutors.newSequentialExecutor(pool));
+            }
+            queue.pending++;
+            return queue;
+        });
+        commandQueue.executor.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                queues.computeIfPresent(uuid, (key, queue) -> {
+                    queue.pending--;
+                    return queue.released && queue.pending == 0 ? null : queue;
+                });
+            }
+        });
+    }
+
+    /**
+     * Log the metrics for every command, unless no command has completed since the previous report.
+     */
+    private void report() {
+        Map<String, CommandMetrics> current = metrics();
+        long count = current.values().stream().mapToLong(CommandMetrics::count).sum();
+        if (count == reportedCount) {
+            return;
+        }
+        reportedCount = count;
+        current.values().forEach(commandMetrics -> log.info("{}", commandMetrics));
+    }
+
+    private CommandMetrics metrics(String name) {
+        return metrics.computeIfAbsent(name, CommandMetrics::new);
+    }
+
+    private <T> T call(String name, long received, Callable<T> command) throws Exception {
+        CommandMetrics commandMetrics = metrics(name);
+        boolean succeeded = false;
+        try {
+            T result = command.call();
+            succeeded = true;
+            return result;
+        } catch (Exception e) {
+            log.error("Failed to execute {} command", name, e);
+            throw e;
+        } finally {
+            commandMetrics.record(System.nanoTime() - received, succeeded);
+            log.trace("{}", commandMetrics);
+        }
+    }
+
+    private boolean run(String name, long received, Callable<Boolean> command) {
+        CommandMetrics commandMetrics = metrics(name);
+        boolean result = false;
+        try {
+            result = command.call();
+            return result;
+        } catch (Exception e) {
+            log.error("Failed to execute {} command", name, e);
+            return false;
+        } finally {
+            commandMetrics.record(System.nanoTime() - received, result);
+            log.trace("{}", commandMetrics);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("queues", queues.size())
+            .add("metrics", metrics())
+            .toString();
+    }
+
+    /**
+     * Serial command queue for a single player component.
+     */
+    private static final class CommandQueue {
+
+        private final Executor executor;
+
+        /**
+         * Number of commands queued but not yet completed.
+         */
+        private int pending;
+
+        /**
+         * Whether the player component has been closed, the queue is discarded as soon as it has no pending commands.
+         */
+        private boolean released;
+
+        private CommandQueue(Executor executor) {
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Latency and outcome counters for a single remote command.
+     */
+    static final class CommandMetrics {
+
+        private final String name;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+
+        private final LongAdder timeouts = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private CommandMetrics(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos, boolean succeeded) {
+            count.increment();
+            if (!succeeded) {
+                failures.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * Get the number of times the command was completed.
+         *
+         * @return count
+         */
+        long count() {
+            return count.sum();
+        }
+
+        /**
+         * Get the number of times the command failed, or completed with a negative outcome.
+         *
+         * @return count
+         */
+        long failures() {
+            return failures.sum();
+        }
+
+        /**
+         * Get the number of times the network thread gave up waiting for the command to complete.
+         *
+         * @return count
+         */
+        long timeouts() {
+            return timeouts.sum();
+        }
+
+        /**
+         * Get the mean latency, from receipt of the command to its completion.
+         *
+         * @return mean latency, in milliseconds
+         */
+        double meanLatency() {
+            long n = count.sum();
+            return n > 0 ? totalNanos.sum() / (double) n / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+        }
+
+        /**
+         * Get the maximum latency, from receipt of the command to its completion.
+         *
+         * @return maximum latency, in milliseconds
+         */
+        double maxLatency() {
+            return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        @Override
+        public String toString() {
+            return toStringHelper(this)
+                .add("name", name)
+                .add("count", count())
+                .add("failures", failures())
+                .add("timeouts", timeouts())
+                .add("meanLatency", String.format("%.2f", meanLatency()))
+                .add("maxLatency", String.format("%.2f", maxLatency()))
+                .toString();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.mbari.cthulhu.app.config;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Enumeration of ways in which a remote frame capture request can be satisfied.
+ */
+public enum FrameCaptureMode {
+
+    /**
+     * Ask the native media player to save a snapshot to disk.
+     * <p>
+     * The native media player decodes and encodes the frame again.
+     */
+    @SerializedName("snapshot")
+    SNAPSHOT,
+
+    /**
+     * Copy the frame currently displayed directly from the video buffer, and encode it on a dedicated pool of threads.
+     */
+    @SerializedName("memory")
+    MEMORY
+}
@@ -21,11 +21,36 @@ final public class MediaPlayerConfig {
      */
     private static final String CONFIG_RESOURCE = "/org/mbari/cthulhu/config/media-player-config.json";
 
+    /**
+     * Number of video buffers used if none is configured, a single buffer renders directly from the native buffer.
+     */
+    private static final int DEFAULT_VIDEO_BUFFER_COUNT = 1;
+
+    /**
+     * Number of background decode workers used if none is configured.
+     */
+    private static final int DEFAULT_DECODE_WORKER_COUNT = 2;
+
     /**
      * Configured arguments passed to LibVLC when creating a {@link MediaPlayerFactory}.
      */
     private List<String> libVlcArgs;
 
+    /**
+     * Configured number of video buffers used by each video surface.
+     */
+    private int videoBufferCount;
+
+    /**
+     * Configured way to satisfy remote frame capture requests.
+     */
+    private FrameCaptureMode frameCaptureMode;
+
+    /**
+     * Configured number of headless media players used for background decoding.
+     */
+    private int decodeWorkerCount;
+
     /**
      * Read media player configuration.
      *
@@ -47,10 +72,43 @@ final public class MediaPlayerConfig {
         return Collections.unmodifiableList(libVlcArgs);
     }
 
+    /**
+     * Get the number of video buffers used by each video surface.
+     * <p>
+     * With a single buffer, the video is displayed directly from the buffer the native media player decodes into. With more than one buffer, each decoded
+     * frame is copied into one of a set of rotating buffers so the native media player never writes to memory that is being displayed.
+     *
+     * @return number of video buffers
+     */
+    public int videoBufferCount() {
+        return videoBufferCount > 0 ? videoBufferCount : DEFAULT_VIDEO_BUFFER_COUNT;
+    }
+
+    /**
+     * Get the way to satisfy remote frame capture requests.
+     *
+     * @return frame capture mode
+     */
+    public FrameCaptureMode frameCaptureMode() {
+        return frameCaptureMode != null ? frameCaptureMode : FrameCaptureMode.SNAPSHOT;
+    }
+
+    /**
+     * Get the number of headless media players used for background decoding, e.g. batch frame capture.
+     *
+     * @return number of decode workers
+     */
+    public int decodeWorkerCount() {
+        return decodeWorkerCount > 0 ? decodeWorkerCount : DEFAULT_DECODE_WORKER_COUNT;
+    }
+
     @Override
     public String toString() {
         return toStringHelper(this)
             .add("libVlcArgs", libVlcArgs)
+            .add("videoBufferCount", videoBufferCount())
+            .add("frameCaptureMode", frameCaptureMode())
+            .add("decodeWorkerCount", decodeWorkerCount())
             .toString();
     }
 
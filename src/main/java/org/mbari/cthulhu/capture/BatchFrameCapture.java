@@ -0,0 +1,191 @@
+package org.mbari.cthulhu.capture;
+
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+import org.mbari.cthulhu.decode.DecodeWorker;
+import org.mbari.cthulhu.decode.DecodeWorkerPool;
+import org.mbari.cthulhu.ui.videosurface.VideoFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static org.mbari.cthulhu.capture.FrameEncoder.frameEncoder;
+import static org.mbari.cthulhu.decode.DecodeWorkerPool.decodeWorkerPool;
+
+/**
+ * Component that captures batches of video frames from media, independently of any player component.
+ * <p>
+ * Each batch runs as a single task on a headless worker from the {@link DecodeWorkerPool}. The requested media times are visited in ascending order, and the
+ * work is pipelined:
+ * <ul>
+ *     <li>the worker seeks to each media time in turn and waits for the decoded frame;</li>
+ *     <li>the decoded frame is copied out of the worker frame buffer;</li>
+ *     <li>the copy is encoded and written by the shared {@link FrameEncoder} while the worker seeks to the next media time.</li>
+ * </ul>
+ * The number of frames waiting to be encoded is bounded, so a slow disk holds up the seeking rather than exhausting memory. Likewise if the shared encoder is
+ * saturated by other work and rejects a frame, the frame is offered again after a short delay rather than being counted as failed.
+ * <p>
+ * Progress is reported as each frame is written (or fails), the progress observable completes when every frame in the batch has been accounted for. Disposing
+ * of the subscription abandons the batch.
+ */
+public final class BatchFrameCapture {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchFrameCapture.class);
+
+    /**
+     * Maximum number of captured frames waiting to be encoded for a single batch.
+     */
+    private static final int MAX_PENDING_FRAMES = 16;
+
+    /**
+     * Time to wait before offering a rejected frame to the encoder again, in milliseconds.
+     */
+    private static final long REJECTED_RETRY_DELAY = 20;
+
+    private static final class Holder {
+        private static final BatchFrameCapture INSTANCE = new BatchFrameCapture();
+    }
+
+    /**
+     * Get the batch frame capture component.
+     *
+     * @return batch frame capture component
+     */
+    public static BatchFrameCapture batchFrameCapture() {
+        return Holder.INSTANCE;
+    }
+
+    private BatchFrameCapture() {
+    }
+
+    /**
+     * Capture a batch of frames from media.
+     * <p>
+     * Nothing happens until the returned observable is subscribed to.
+     *
+     * @param mrl media resource locator
+     * @param batch frames to capture
+     * @return observable progress, emitted on background threads
+     */
+    public Observable<CaptureProgress> capture(String mrl, FrameCaptureBatch batch) {
+        log.debug("capture(mrl={}, batch={})", mrl, batch);
+        return Observable.create(emitter -> {
+            ObservableEmitter<CaptureProgress> serialEmitter = emitter.serialize();
+            decodeWorkerPool().submit(worker -> run(worker, mrl, batch, serialEmitter))
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        serialEmitter.tryOnError(e);
+                    }
+                });
+        });
+    }
+
+    private static Void run(DecodeWorker worker, String mrl, FrameCaptureBatch batch, ObservableEmitter<CaptureProgress> emitter) throws Exception {
+        if (emitter.isDisposed()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        if (!batch.directory().isDirectory() && !batch.directory().mkdirs()) {
+            throw new IOException("Failed to create " + batch.directory());
+        }
+        if (!worker.open(mrl)) {
+            throw new IOException("Failed to open " + mrl);
+        }
+        List<Long> times = batch.times(worker.length());
+        BatchProgress progress = new BatchProgress(times.size(), emitter);
+        Semaphore pending = new Semaphore(MAX_PENDING_FRAMES);
+        for (long time : times) {
+            if (emitter.isDisposed()) {
+                log.debug("Batch abandoned");
+                break;
+            }
+            if (!worker.seek(time)) {
+                progress.failed(time);
+                continue;
+            }
+            encode(worker.copyFrame(), time, batch.file(time), pending, progress, emitter);
+        }
+        // Wait for every outstanding frame to be written
+        pending.acquire(MAX_PENDING_FRAMES);
+        log.debug("Captured {} in {}ms", progress, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        emitter.onComplete();
+        return null;
+    }
+
+    private static void encode(VideoFrame frame, long time, File file, Semaphore pending, BatchProgress progress, ObservableEmitter<CaptureProgress> emitter) throws InterruptedException {
+        pending.acquire();
+        CompletableFuture<File> encoded = frameEncoder().encode(frame, file);
+        // The shared encoder is saturated by other work, hold up the batch until it has room
+        while (rejected(encoded) && !emitter.isDisposed()) {
+            log.trace("Encoder rejected frame for {}ms, retrying", time);
+            Thread.sleep(REJECTED_RETRY_DELAY);
+            encoded = frameEncoder().encode(frame, file);
+        }
+        encoded.whenComplete((result, e) -> {
+            if (e == null) {
+                progress.completed(time, frame.mediaTime(), result);
+            } else {
+                log.warn("Failed to write frame for {}ms: {}", time, e.getMessage());
+                progress.failed(time);
+            }
+            // Only released after reporting progress, so the batch can not complete before its final progress report
+            pending.release();
+        });
+    }
+
+    /**
+     * Check whether the encoder rejected a frame, a rejected frame is reported immediately via an already failed future.
+     *
+     * @param encoded future result of encoding the frame
+     * @return <code>true</code> if the frame was rejected; <code>false</code> otherwise
+     */
+    private static boolean rejected(CompletableFuture<File> encoded) {
+        return encoded.isCompletedExceptionally() && encoded.handle((result, e) -> e instanceof RejectedExecutionException).getNow(false);
+    }
+
+    /**
+     * Progress counters for a single batch.
+     */
+    private static final class BatchProgress {
+
+        private final int total;
+
+        private final ObservableEmitter<CaptureProgress> emitter;
+
+        private int completed;
+
+        private int failed;
+
+        private BatchProgress(int total, ObservableEmitter<CaptureProgress> emitter) {
+            this.total = total;
+            this.emitter = emitter;
+        }
+
+        private synchronized void completed(long requestedTime, long mediaTime, File file) {
+            completed++;
+            emitter.onNext(new CaptureProgress(total, completed, failed, requestedTime, mediaTime, file));
+        }
+
+        private synchronized void failed(long requestedTime) {
+            failed++;
+            emitter.onNext(new CaptureProgress(total, completed, failed, requestedTime, -1, null));
+        }
+
+        @Override
+        public synchronized String toString() {
+            return toStringHelper(this)
+                .add("total", total)
+                .add("completed", completed)
+                .add("failed", failed)
+                .toString();
+        }
+    }
+}
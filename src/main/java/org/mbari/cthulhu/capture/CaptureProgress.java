@@ -0,0 +1,107 @@
+package org.mbari.cthulhu.capture;
+
+import java.io.File;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Progress of a batch frame capture, reported each time a frame has been written (or has failed).
+ */
+public final class CaptureProgress {
+
+    private final int total;
+
+    private final int completed;
+
+    private final int failed;
+
+    private final long requestedTime;
+
+    private final long mediaTime;
+
+    private final File file;
+
+    CaptureProgress(int total, int completed, int failed, long requestedTime, long mediaTime, File file) {
+        this.total = total;
+        this.completed = completed;
+        this.failed = failed;
+        this.requestedTime = requestedTime;
+        this.mediaTime = mediaTime;
+        this.file = file;
+    }
+
+    /**
+     * Get the total number of frames in the batch.
+     *
+     * @return number of frames
+     */
+    public int total() {
+        return total;
+    }
+
+    /**
+     * Get the number of frames written so far.
+     *
+     * @return number of frames
+     */
+    public int completed() {
+        return completed;
+    }
+
+    /**
+     * Get the number of frames that could not be captured or written so far.
+     *
+     * @return number of frames
+     */
+    public int failed() {
+        return failed;
+    }
+
+    /**
+     * Get the requested media time of the frame this progress report is for.
+     *
+     * @return media time, in milliseconds
+     */
+    public long requestedTime() {
+        return requestedTime;
+    }
+
+    /**
+     * Get the media time reported for the frame that was actually captured.
+     *
+     * @return media time, in milliseconds, or -1 if the frame failed
+     */
+    public long mediaTime() {
+        return mediaTime;
+    }
+
+    /**
+     * Get the file that was written.
+     *
+     * @return file, or <code>null</code> if the frame failed
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Check whether every frame in the batch has been accounted for.
+     *
+     * @return <code>true</code> if the batch is finished
+     */
+    public boolean finished() {
+        return completed + failed == total;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("total", total)
+            .add("completed", completed)
+            .add("failed", failed)
+            .add("requestedTime", requestedTime)
+            .add("mediaTime", mediaTime)
+            .add("file", file)
+            .toString();
+    }
+}
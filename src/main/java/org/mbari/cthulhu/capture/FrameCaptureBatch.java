@@ -0,0 +1,129 @@
+package org.mbari.cthulhu.capture;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Description of a batch of video frames to capture from a single media.
+ * <p>
+ * A batch either lists the media times to capture, or gives a stride at which to capture frames over the whole length of the media.
+ * <p>
+ * Each frame is written to the output directory, to a file named after the requested media time, e.g. "frame-000012345.png" for the frame at 12.345s.
+ */
+public final class FrameCaptureBatch {
+
+    private static final String DEFAULT_IMAGE_FORMAT = "png";
+
+    private final File directory;
+
+    /**
+     * Requested media times, in ascending order without duplicates, or <code>null</code> if a stride is used.
+     */
+    private final List<Long> times;
+
+    private final long stride;
+
+    private final String imageFormat;
+
+    private FrameCaptureBatch(File directory, List<Long> times, long stride, String imageFormat) {
+        this.directory = directory;
+        this.times = times;
+        this.stride = stride;
+        this.imageFormat = imageFormat;
+    }
+
+    /**
+     * Create a batch that captures frames at particular media times.
+     *
+     * @param times media times, in milliseconds, in any order
+     * @param directory output directory
+     * @return batch
+     */
+    public static FrameCaptureBatch atTimes(Collection<Long> times, File directory) {
+        if (times.stream().anyMatch(time -> time < 0)) {
+            throw new IllegalArgumentException("Media times must not be negative");
+        }
+        // Seeking in media order is much cheaper than seeking back and forth
+        return new FrameCaptureBatch(directory, List.copyOf(new TreeSet<>(times)), 0, DEFAULT_IMAGE_FORMAT);
+    }
+
+    /**
+     * Create a batch that captures frames at a regular interval over the whole length of the media, starting at the beginning.
+     *
+     * @param stride interval between captured frames, in milliseconds
+     * @param directory output directory
+     * @return batch
+     */
+    public static FrameCaptureBatch everyMillis(long stride, File directory) {
+        if (stride <= 0) {
+            throw new IllegalArgumentException("Stride must be positive");
+        }
+        return new FrameCaptureBatch(directory, null, stride, DEFAULT_IMAGE_FORMAT);
+    }
+
+    /**
+     * Create a copy of this batch that writes a different image format.
+     *
+     * @param imageFormat image file name extension, e.g. "png" or "jpg"
+     * @return batch
+     */
+    public FrameCaptureBatch withImageFormat(String imageFormat) {
+        return new FrameCaptureBatch(directory, times, stride, imageFormat.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Get the output directory.
+     *
+     * @return directory
+     */
+    File directory() {
+        return directory;
+    }
+
+    /**
+     * Get the media times to capture, in ascending order.
+     *
+     * @param length length of the media, in milliseconds, or zero or less if not known
+     * @return media times, in milliseconds
+     */
+    List<Long> times(long length) {
+        if (times != null) {
+            return times;
+        }
+        if (length <= 0) {
+            throw new IllegalStateException("Media length is not known, a stride can not be used");
+        }
+        List<Long> result = new ArrayList<>();
+        for (long time = 0; time < length; time += stride) {
+            result.add(time);
+        }
+        return result;
+    }
+
+    /**
+     * Get the file to write for a particular requested media time.
+     *
+     * @param time requested media time, in milliseconds
+     * @return file
+     */
+    File file(long time) {
+        return new File(directory, String.format(Locale.ROOT, "frame-%09d.%s", time, imageFormat));
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("directory", directory)
+            .add("times", times != null ? times.size() : null)
+            .add("stride", times == null ? stride : null)
+            .add("imageFormat", imageFormat)
+            .omitNullValues()
+            .toString();
+    }
+}
@@ -0,0 +1,119 @@
+package org.mbari.cthulhu.capture;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.mbari.cthulhu.ui.videosurface.VideoFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Component that encodes captured video frames to image files.
+ * <p>
+ * Encoding is performed on a dedicated, bounded, pool of threads. If more frames are waiting to be encoded than the pool can queue, further requests fail
+ * immediately rather than accumulating without limit.
+ * <p>
+ * The image format is chosen from the file name extension - JPEG for ".jpg" or ".jpeg", otherwise PNG.
+ */
+public final class FrameEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(FrameEncoder.class);
+
+    /**
+     * Maximum number of frames waiting to be encoded.
+     */
+    private static final int QUEUE_CAPACITY = 64;
+
+    private static final class Holder {
+        private static final FrameEncoder INSTANCE = new FrameEncoder();
+    }
+
+    /**
+     * Get the frame encoder.
+     *
+     * @return frame encoder
+     */
+    public static FrameEncoder frameEncoder() {
+        return Holder.INSTANCE;
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    private FrameEncoder() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            30,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            new ThreadFactoryBuilder()
+                .setNameFormat("frame-encoder-%d")
+                .setDaemon(true)
+                .build(),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Encode a frame to a file.
+     *
+     * @param frame frame to encode
+     * @param file file to write
+     * @return future that completes with the file when it has been written, or completes exceptionally if the frame could not be encoded (or with a
+     *     {@link RejectedExecutionException} if the encoder was too busy to accept it)
+     */
+    public CompletableFuture<File> encode(VideoFrame frame, File file) {
+        log.debug("encode(frame={}, file={})", frame, file);
+        try {
+            return CompletableFuture.supplyAsync(() -> write(frame, file), executor);
+        } catch (RejectedExecutionException e) {
+            // The executor rejects synchronously, report it via the future like any other failure
+            log.warn("Frame encoder too busy to encode {}", file);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static File write(VideoFrame frame, File file) {
+        long start = System.nanoTime();
+        BufferedImage image = new BufferedImage(frame.width(), frame.height(), BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(frame.pixels(), 0, pixels, 0, pixels.length);
+        try {
+            if (!ImageIO.write(image, formatName(file), file)) {
+                throw new IOException("No image writer for " + file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.debug("Encoded {} in {}ms", file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return file;
+    }
+
+    private static String formatName(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") ? "jpg" : "png";
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("active", executor.getActiveCount())
+            .add("queued", executor.getQueue().size())
+            .toString();
+    }
+}
@@ -0,0 +1,19 @@
+package org.mbari.cthulhu.decode;
+
+/**
+ * A unit of background decoding work, executed with exclusive use of a {@link DecodeWorker}.
+ *
+ * @param <T> type of result
+ */
+@FunctionalInterface
+public interface DecodeTask<T> {
+
+    /**
+     * Execute the task.
+     *
+     * @param worker decode worker, for the exclusive use of this task until it returns
+     * @return result
+     * @throws Exception if the task fails
+     */
+    T execute(DecodeWorker worker) throws Exception;
+}
@@ -0,0 +1,359 @@
+package org.mbari.cthulhu.decode;
+
+import org.mbari.cthulhu.ui.videosurface.VideoFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.caprica.vlcj.factory.MediaPlayerFactory;
+import uk.co.caprica.vlcj.media.TrackType;
+import uk.co.caprica.vlcj.media.VideoTrackInfo;
+import uk.co.caprica.vlcj.player.base.MediaPlayer;
+import uk.co.caprica.vlcj.player.base.MediaPlayerEventAdapter;
+import uk.co.caprica.vlcj.player.embedded.EmbeddedMediaPlayer;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.BufferFormat;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.BufferFormatCallback;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.RenderCallback;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.format.RV32BufferFormat;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * A headless media player used for background decoding, e.g. capturing frames or generating thumbnails.
+ * <p>
+ * A worker has no user interface at all - it renders into memory via a callback video surface, with audio disabled, and never touches the JavaFX application
+ * thread. Media is opened paused, and frames are decoded only on demand by seeking.
+ * <p>
+ * A seek completes once the media player has reported arriving at the requested time, to within one frame, and a frame has been delivered since the seek
+ * was requested - the frame and the time event may arrive in either order, so the most recent frame is kept until the time event matches. The accepted frame
+ * is tagged with the reported time.
+ * <p>
+ * Each decoded frame is copied from the native buffer into a single off-heap frame buffer owned by the worker, reused for every frame and only reallocated if
+ * the video gets bigger. The frame buffer is only written while a seek is waiting for its frame, so once a seek has returned the frame buffer is stable until
+ * the next seek.
+ * <p>
+ * Workers are owned by a {@link DecodeWorkerPool}, and are only ever used by one task at a time.
+ */
+public final class DecodeWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(DecodeWorker.class);
+
+    /**
+     * Media options for the worker media player.
+     */
+    private static final String[] MEDIA_OPTIONS = {":no-audio"};
+
+    /**
+     * Longest time to wait for a frame to be decoded after opening media or seeking, in milliseconds.
+     */
+    private static final long FRAME_TIMEOUT = 5000;
+
+    /**
+     * Duration of a frame, in milliseconds, assumed until the frame rate of the video is known - one frame at 25 frames per second.
+     */
+    private static final long DEFAULT_FRAME_DURATION = 40;
+
+    private final int id;
+
+    private final EmbeddedMediaPlayer mediaPlayer;
+
+    private final AtomicReference<Request> request = new AtomicReference<>();
+
+    /**
+     * Media resource locator of the currently open media, or <code>null</code> if there is none.
+     */
+    private String mrl;
+
+    private volatile int width;
+
+    private volatile int height;
+
+    /**
+     * Reusable off-heap copy of the most recently accepted frame.
+     */
+    private volatile ByteBuffer frameBuffer;
+
+    private volatile long frameTime = -1;
+
+    /**
+     * Duration of a single frame of the open media, in milliseconds, the largest difference between a requested and a reported media time for a seek to have
+     * arrived.
+     */
+    private volatile long frameDuration = DEFAULT_FRAME_DURATION;
+
+    DecodeWorker(int id, MediaPlayerFactory mediaPlayerFactory) {
+        this.id = id;
+        this.mediaPlayer = mediaPlayerFactory.mediaPlayers().newEmbeddedMediaPlayer();
+        FrameCallback frameCallback = new FrameCallback();
+        this.mediaPlayer.videoSurface().set(mediaPlayerFactory.videoSurfaces().newVideoSurface(frameCallback, frameCallback, true));
+        this.mediaPlayer.events().addMediaPlayerEventListener(new SeekListener());
+    }
+
+    /**
+     * Open media, ready to seek.
+     * <p>
+     * If the same media is already open it is reused as-is.
+     *
+     * @param newMrl media resource locator
+     * @return <code>true</code> if the media was opened and its first frame decoded
+     */
+    public boolean open(String newMrl) {
+        log.debug("open(newMrl={})", newMrl);
+        if (Objects.equals(mrl, newMrl)) {
+            return true;
+        }
+        close();
+        if (awaitFrame(Long.MIN_VALUE, () -> mediaPlayer.media().startPaused(newMrl, MEDIA_OPTIONS))) {
+            mrl = newMrl;
+            return true;
+        }
+        mediaPlayer.controls().stop();
+        return false;
+    }
+
+    /**
+     * Seek to a media time, and wait for the frame there to be decoded into the frame buffer.
+     *
+     * @param time media time, in milliseconds
+     * @return <code>true</code> if a frame was decoded; <code>false</code> if the media is not open or no frame was decoded in time
+     */
+    public boolean seek(long time) {
+        if (mrl == null) {
+            return false;
+        }
+        // There may be no new frame if seeking to the time of the current frame
+        if (frameTime == time) {
+            return true;
+        }
+        return awaitFrame(time, () -> {
+            mediaPlayer.controls().setTime(time);
+            return true;
+        });
+    }
+
+    /**
+     * Get the length of the open media.
+     *
+     * @return length, in milliseconds, or zero or less if not known
+     */
+    public long length() {
+        return mediaPlayer.status().length();
+    }
+
+    /**
+     * Get the width of the decoded video.
+     *
+     * @return width, in pixels
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Get the height of the decoded video.
+     *
+     * @return height, in pixels
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Get the media time of the frame in the frame buffer.
+     *
+     * @return media time, in milliseconds, or -1 if there is no frame
+     */
+    public long frameTime() {
+        return frameTime;
+    }
+
+    /**
+     * Get the frame buffer.
+     * <p>
+     * The frame buffer contains BGRA pixels, in row order, and is only valid until the next seek.
+     *
+     * @return read-only view of the frame buffer
+     */
+    public ByteBuffer frameBuffer() {
+        return frameBuffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Copy the frame in the frame buffer.
+     *
+     * @return copy of the frame, independent of the frame buffer
+     */
+    public VideoFrame copyFrame() {
+        return VideoFrame.copyOf(frameBuffer, width, height, frameTime);
+    }
+
+    /**
+     * Close the open media, if any, keeping the native media player for reuse.
+     */
+    void close() {
+        if (mrl != null) {
+            log.debug("close()");
+            mediaPlayer.controls().stop();
+            mrl = null;
+            frameTime = -1;
+            frameDuration = DEFAULT_FRAME_DURATION;
+        }
+    }
+
+    /**
+     * Release the native media player, the worker can not be used afterwards.
+     */
+    void release() {
+        log.debug("release()");
+        close();
+        mediaPlayer.release();
+    }
+
+    private boolean awaitFrame(long time, BooleanSupplier action) {
+        Request current = new Request(time);
+        request.set(current);
+        try {
+            return action.getAsBoolean() && current.decoded.get(FRAME_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            log.warn("No frame decoded for {}ms", time);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            request.compareAndSet(current, null);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("id", id)
+            .add("mrl", mrl)
+            .add("frameTime", frameTime)
+            .add("frameDuration", frameDuration)
+            .toString();
+    }
+
+    /**
+     * Media player event listener, invoked on a native event thread, that detects when a seek has taken effect.
+     */
+    private class SeekListener extends MediaPlayerEventAdapter {
+
+        @Override
+        public void elementaryStreamSelected(MediaPlayer mediaPlayer, TrackType type, int id) {
+            if (type == TrackType.VIDEO && id != -1) {
+                VideoTrackInfo videoTrackInfo = mediaPlayer.media().info().videoTracks().get(0);
+                if (videoTrackInfo.frameRate() > 0 && videoTrackInfo.frameRateBase() > 0) {
+                    frameDuration = Math.max(Math.round(1000.0 * videoTrackInfo.frameRateBase() / videoTrackInfo.frameRate()), 1);
+                }
+            }
+        }
+
+        @Override
+        public void timeChanged(MediaPlayer mediaPlayer, long newTime) {
+            Request current = request.get();
+            if (current != null && current.time != Long.MIN_VALUE && Math.abs(newTime - current.time) <= frameDuration) {
+                synchronized (current) {
+                    current.arrivedTime = newTime;
+                    // The frame for the seek may already have been delivered, e.g. when paused
+                    if (current.buffered) {
+                        accept(current, newTime);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Video surface callbacks, invoked on native media player threads.
+     */
+    private class FrameCallback implements BufferFormatCallback, RenderCallback {
+
+        @Override
+        public BufferFormat getBufferFormat(int sourceWidth, int sourceHeight) {
+            width = sourceWidth;
+            height = sourceHeight;
+            return new RV32BufferFormat(sourceWidth, sourceHeight);
+        }
+
+        @Override
+        public void allocatedBuffers(ByteBuffer[] buffers) {
+            int capacity = buffers[0].capacity();
+            if (frameBuffer == null || frameBuffer.capacity() < capacity) {
+                frameBuffer = ByteBuffer.allocateDirect(capacity);
+            }
+        }
+
+        @Override
+        public void display(MediaPlayer mediaPlayer, ByteBuffer[] nativeBuffers, BufferFormat bufferFormat) {
+            Request current = request.get();
+            if (current == null || current.decoded.isDone()) {
+                return;
+            }
+            synchronized (current) {
+                if (current.decoded.isDone()) {
+                    return;
+                }
+                // Keep the most recent frame, it is only accepted once the seek is known to have taken effect
+                frameBuffer.put(0, nativeBuffers[0], 0, Math.min(nativeBuffers[0].capacity(), frameBuffer.capacity()));
+                current.buffered = true;
+                if (current.time == Long.MIN_VALUE) {
+                    // Any frame will do after opening media
+                    accept(current, mediaPlayer.status().time());
+                } else if (current.arrivedTime != Long.MIN_VALUE) {
+                    accept(current, current.arrivedTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Accept the frame in the frame buffer as the result of a request.
+     * <p>
+     * Invoked while synchronised on the request.
+     *
+     * @param current request
+     * @param mediaTime media time of the frame
+     */
+    private void accept(Request current, long mediaTime) {
+        if (!current.decoded.isDone()) {
+            frameTime = mediaTime;
+            // Completing the request publishes the frame buffer contents to the waiting task
+            current.decoded.complete(true);
+        }
+    }
+
+    /**
+     * A pending request for a decoded frame.
+     */
+    private static final class Request {
+
+        private final long time;
+
+        private final CompletableFuture<Boolean> decoded = new CompletableFuture<>();
+
+        /**
+         * Media time reported by the media player once the seek took effect, or {@link Long#MIN_VALUE} until then.
+         * <p>
+         * Only accessed while synchronised on the request.
+         */
+        private long arrivedTime = Long.MIN_VALUE;
+
+        /**
+         * Whether a frame has been copied to the frame buffer since the request was made, only accessed while synchronised on the request.
+         */
+        private boolean buffered;
+
+        private Request(long time) {
+            this.time = time;
+        }
+    }
+}
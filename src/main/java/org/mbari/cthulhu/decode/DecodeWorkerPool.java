@@ -0,0 +1,163 @@
+package org.mbari.cthulhu.decode;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static org.mbari.cthulhu.app.CthulhuApplication.application;
+
+/**
+ * Pool of headless {@link DecodeWorker} media players for background work.
+ * <p>
+ * Tasks are executed on a small, fixed, number of daemon threads, one per worker, so background decoding never competes with the visible player components
+ * for more than that many decoders. Tasks waiting for a worker are held in a bounded queue, further tasks are rejected rather than accumulating without limit.
+ * <p>
+ * Workers are created on first use, and are kept (with their media still open) between tasks so that consecutive tasks for the same media do not have to
+ * open it again. A worker whose task fails has its media closed. All workers are released when the pool is shut down.
+ */
+public final class DecodeWorkerPool {
+
+    private static final Logger log = LoggerFactory.getLogger(DecodeWorkerPool.class);
+
+    /**
+     * Maximum number of tasks waiting for a worker.
+     */
+    private static final int QUEUE_CAPACITY = 32;
+
+    private static final class Holder {
+        private static final DecodeWorkerPool INSTANCE = new DecodeWorkerPool(application().mediaPlayerConfig().decodeWorkerCount());
+    }
+
+    /**
+     * Get the decode worker pool.
+     *
+     * @return decode worker pool
+     */
+    public static DecodeWorkerPool decodeWorkerPool() {
+        return Holder.INSTANCE;
+    }
+
+    private final int workerCount;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Workers not currently executing a task.
+     */
+    private final BlockingQueue<DecodeWorker> idle = new LinkedBlockingQueue<>();
+
+    /**
+     * Every worker created, guarded by synchronising on this list.
+     */
+    private final List<DecodeWorker> workers = new ArrayList<>();
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private volatile boolean shutdown;
+
+    private DecodeWorkerPool(int workerCount) {
+        this.workerCount = workerCount;
+        this.executor = new ThreadPoolExecutor(
+            workerCount,
+            workerCount,
+            0,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            new ThreadFactoryBuilder()
+                .setNameFormat("decode-worker-%d")
+                .setDaemon(true)
+                .build(),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Submit a task to be executed when a worker is available.
+     *
+     * @param task task to execute
+     * @param <T> type of result
+     * @return future that completes with the result of the task, or completes exceptionally if the task failed or was rejected because the pool is busy or
+     *     shut down
+     */
+    public <T> CompletableFuture<T> submit(DecodeTask<T> task) {
+        log.trace("submit(task={})", task);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> execute(task, result));
+        } catch (RejectedExecutionException e) {
+            log.warn("Decode task rejected, {}", this);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Shut down the pool, abandoning any waiting tasks and releasing every worker.
+     */
+    public void shutdown() {
+        log.debug("shutdown()");
+        shutdown = true;
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (workers) {
+            workers.forEach(DecodeWorker::release);
+            workers.clear();
+        }
+        idle.clear();
+    }
+
+    private <T> void execute(DecodeTask<T> task, CompletableFuture<T> result) {
+        if (shutdown || result.isCancelled()) {
+            result.cancel(false);
+            return;
+        }
+        // There is one thread per worker, so a worker is always either idle or not yet created
+        DecodeWorker worker = idle.poll();
+        if (worker == null) {
+            worker = newWorker();
+        }
+        try {
+            result.complete(task.execute(worker));
+        } catch (Exception e) {
+            log.warn("Decode task failed on {}", worker, e);
+            worker.close();
+            result.completeExceptionally(e);
+        } finally {
+            idle.add(worker);
+        }
+    }
+
+    private DecodeWorker newWorker() {
+        DecodeWorker worker = new DecodeWorker(nextId.getAndIncrement(), application().mediaPlayerFactory());
+        log.debug("Created {}", worker);
+        synchronized (workers) {
+            workers.add(worker);
+        }
+        return worker;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("workerCount", workerCount)
+            .add("active", executor.getActiveCount())
+            .add("queued", executor.getQueue().size())
+            .toString();
+    }
+}
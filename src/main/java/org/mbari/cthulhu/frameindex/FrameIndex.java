@@ -0,0 +1,192 @@
+package org.mbari.cthulhu.frameindex;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Index of the presentation timestamps of every video frame, and of every keyframe, in a media.
+ * <p>
+ * Timestamps are held in microseconds, in presentation order, relative to the first frame. Media player times are whole milliseconds, so a media player time
+ * is taken to cover the whole millisecond - the frame displayed at a media player time is the last frame that starts before the end of that millisecond. A
+ * frame is addressed by the first whole millisecond at or after its presentation timestamp, which always lies within that frame provided frames are longer
+ * than a millisecond.
+ */
+public final class FrameIndex {
+
+    /**
+     * Version of the serialised form, changed whenever that form changes.
+     */
+    private static final int VERSION = 1;
+
+    private static final long MICROS_PER_MILLI = 1000;
+
+    private final long[] frames;
+
+    private final long[] keyframes;
+
+    /**
+     * Create a frame index.
+     *
+     * @param frames presentation timestamps of every frame, in microseconds, in ascending order, there must be at least one frame
+     * @param keyframes presentation timestamps of every keyframe, in microseconds, in ascending order
+     */
+    FrameIndex(long[] frames, long[] keyframes) {
+        this.frames = frames;
+        this.keyframes = keyframes;
+    }
+
+    /**
+     * Get the number of frames.
+     *
+     * @return number of frames
+     */
+    public int frameCount() {
+        return frames.length;
+    }
+
+    /**
+     * Get the number of keyframes.
+     *
+     * @return number of keyframes
+     */
+    public int keyframeCount() {
+        return keyframes.length;
+    }
+
+    /**
+     * Get the media player time that addresses the frame displayed at a media player time.
+     *
+     * @param time media player time, in milliseconds
+     * @return exact time of the frame, in milliseconds
+     */
+    public long snap(long time) {
+        return frameTime(frameAt(time));
+    }
+
+    /**
+     * Get the media player time that addresses the frame after the one displayed at a media player time.
+     *
+     * @param time media player time, in milliseconds
+     * @return exact time of the next frame, in milliseconds, or of the last frame if there is no next frame
+     */
+    public long nextFrameTime(long time) {
+        return frameTime(Math.min(frameAt(time) + 1, frames.length - 1));
+    }
+
+    /**
+     * Get the media player time that addresses the frame before the one displayed at a media player time.
+     *
+     * @param time media player time, in milliseconds
+     * @return exact time of the previous frame, in milliseconds, or of the first frame if there is no previous frame
+     */
+    public long previousFrameTime(long time) {
+        return frameTime(Math.max(frameAt(time) - 1, 0));
+    }
+
+    /**
+     * Get the media player time of the nearest keyframe at or before a media player time, i.e. where decoding must start to display that time.
+     *
+     * @param time media player time, in milliseconds
+     * @return exact time of the keyframe, in milliseconds
+     */
+    public long keyframeBefore(long time) {
+        int keyframe = indexAt(keyframes, time);
+        return keyframe >= 0 ? toMillis(keyframes[keyframe]) : 0;
+    }
+
+    /**
+     * Get the index of the frame displayed at a media player time.
+     *
+     * @param time media player time, in milliseconds
+     * @return frame index
+     */
+    int frameAt(long time) {
+        return Math.max(indexAt(frames, time), 0);
+    }
+
+    /**
+     * Get the media player time that addresses a frame.
+     *
+     * @param frame frame index
+     * @return time, in milliseconds
+     */
+    long frameTime(int frame) {
+        return toMillis(frames[frame]);
+    }
+
+    /**
+     * Write the serialised form of this index.
+     *
+     * @param out output
+     * @throws IOException if an error occurs
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(VERSION);
+        writeTimestamps(out, frames);
+        writeTimestamps(out, keyframes);
+    }
+
+    /**
+     * Read an index from its serialised form.
+     *
+     * @param in input
+     * @return frame index
+     * @throws IOException if an error occurs, the serialised form is from a different version, or the index has no frames
+     */
+    static FrameIndex read(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported frame index version " + version);
+        }
+        long[] frames = readTimestamps(in);
+        long[] keyframes = readTimestamps(in);
+        if (frames.length == 0) {
+            throw new IOException("Empty frame index");
+        }
+        return new FrameIndex(frames, keyframes);
+    }
+
+    /**
+     * Find the last timestamp that starts before the end of the millisecond at a media player time.
+     *
+     * @param timestamps timestamps to search
+     * @param time media player time, in milliseconds
+     * @return index of the timestamp, or -1 if every timestamp is later
+     */
+    private static int indexAt(long[] timestamps, long time) {
+        long key = time * MICROS_PER_MILLI + MICROS_PER_MILLI - 1;
+        int index = Arrays.binarySearch(timestamps, key);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private static long toMillis(long micros) {
+        return (micros + MICROS_PER_MILLI - 1) / MICROS_PER_MILLI;
+    }
+
+    private static void writeTimestamps(DataOutput out, long[] timestamps) throws IOException {
+        out.writeInt(timestamps.length);
+        for (long timestamp : timestamps) {
+            out.writeLong(timestamp);
+        }
+    }
+
+    private static long[] readTimestamps(DataInput in) throws IOException {
+        long[] timestamps = new long[in.readInt()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = in.readLong();
+        }
+        return timestamps;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("frames", frames.length)
+            .add("keyframes", keyframes.length)
+            .toString();
+    }
+}
@@ -0,0 +1,146 @@
+package org.mbari.cthulhu.frameindex;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Component that provides the {@link FrameIndex} for media, reading it from the media container metadata and caching it on disk.
+ * <p>
+ * Indexes are built on a dedicated background thread. Each index is cached in a file keyed by a hash of the media resource locator, and is rebuilt if the
+ * media file is modified after the index was cached.
+ * <p>
+ * Only local files are indexed - for other media (e.g. network streams), and for unsupported containers, no index is available and callers should fall back
+ * to approximate frame times from the frame rate.
+ */
+public final class FrameIndexCache {
+
+    private static final Logger log = LoggerFactory.getLogger(FrameIndexCache.class);
+
+    private static final String DEFAULT_CACHE_DIRECTORY = ".cache/mbari/cthulhu/frame-index";
+
+    private static final String INDEX_FILE_EXTENSION = ".idx";
+
+    private static final String FILE_SCHEME = "file";
+
+    private static final class Holder {
+        private static final FrameIndexCache INSTANCE = new FrameIndexCache();
+    }
+
+    /**
+     * Get the frame index cache.
+     *
+     * @return frame index cache
+     */
+    public static FrameIndexCache frameIndexCache() {
+        return Holder.INSTANCE;
+    }
+
+    private final File cacheDirectory;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder()
+            .setNameFormat("frame-index-%d")
+            .setDaemon(true)
+            .build()
+    );
+
+    private FrameIndexCache() {
+        this.cacheDirectory = new File(String.format("%s/%s", System.getProperty("user.home"), DEFAULT_CACHE_DIRECTORY));
+        log.debug("Frame index cache at {}", cacheDirectory);
+    }
+
+    /**
+     * Get the frame index for media.
+     *
+     * @param mrl media resource locator, or local file path
+     * @return future that completes with the frame index, or with empty if no index is available
+     */
+    public CompletableFuture<Optional<FrameIndex>> frameIndex(String mrl) {
+        log.debug("frameIndex(mrl={})", mrl);
+        return CompletableFuture.supplyAsync(() -> load(mrl), executor);
+    }
+
+    private Optional<FrameIndex> load(String mrl) {
+        Optional<File> mediaFile = mediaFile(mrl);
+        if (mediaFile.isEmpty()) {
+            return Optional.empty();
+        }
+        File indexFile = new File(cacheDirectory, Hashing.sha256().hashString(mrl, StandardCharsets.UTF_8) + INDEX_FILE_EXTENSION);
+        if (indexFile.lastModified() >= mediaFile.get().lastModified()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                FrameIndex frameIndex = FrameIndex.read(in);
+                log.debug("Read cached {} for {}", frameIndex, mrl);
+                return Optional.of(frameIndex);
+            } catch (IOException e) {
+                log.warn("Failed to read cached frame index for {}: {}", mrl, e.getMessage());
+            }
+        }
+        long start = System.nanoTime();
+        Optional<FrameIndex> frameIndex;
+        try {
+            frameIndex = Mp4FrameIndexReader.read(mediaFile.get());
+        } catch (IOException e) {
+            log.debug("No frame index for {}: {}", mrl, e.getMessage());
+            return Optional.empty();
+        }
+        frameIndex.ifPresent(index -> {
+            log.debug("Built {} for {} in {}ms", index, mrl, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            write(indexFile, index);
+        });
+        return frameIndex;
+    }
+
+    private static void write(File indexFile, FrameIndex frameIndex) {
+        if (!indexFile.getParentFile().exists()) {
+            indexFile.getParentFile().mkdirs();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            frameIndex.write(out);
+        } catch (IOException e) {
+            log.warn("Failed to write frame index cache file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Resolve a media resource locator to a local file.
+     *
+     * @param mrl media resource locator, or local file path
+     * @return file, or empty if the media is not a local file
+     */
+    private static Optional<File> mediaFile(String mrl) {
+        File file;
+        try {
+            URI uri = new URI(mrl);
+            if (FILE_SCHEME.equals(uri.getScheme())) {
+                file = new File(uri);
+            } else if (uri.getScheme() == null || uri.getScheme().length() == 1) {
+                // No scheme, or a Windows drive letter
+                file = new File(mrl);
+            } else {
+                return Optional.empty();
+            }
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            file = new File(mrl);
+        }
+        return file.isFile() ? Optional.of(file) : Optional.empty();
+    }
+}
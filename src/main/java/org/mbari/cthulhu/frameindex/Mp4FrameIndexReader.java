@@ -0,0 +1,268 @@
+package org.mbari.cthulhu.frameindex;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reader that builds a {@link FrameIndex} from the sample tables of an MP4 (ISO base media, including QuickTime) file.
+ * <p>
+ * Only the metadata ("moov") box is read, the media data is never touched, so even very large files are indexed in a few milliseconds. The first video track
+ * is used:
+ * <ul>
+ *     <li>decoding timestamps come from the decoding time-to-sample ("stts") box;</li>
+ *     <li>presentation timestamps add the composition offsets ("ctts") box, if there is one;</li>
+ *     <li>keyframes come from the sync sample ("stss") box, if there is none then every frame is a keyframe.</li>
+ * </ul>
+ * Edit lists are not applied, instead timestamps are made relative to the first presented frame, which is what an edit list does for the common case of
+ * skipping the initial composition delay.
+ * <p>
+ * The track type comes from the media handler ("hdlr") box directly within the media ("mdia") box. QuickTime files may have another handler box, for the data
+ * handler, within the media information ("minf") box, which is ignored.
+ * <p>
+ * Fragmented MP4 files keep their sample tables in fragments rather than in the metadata box, leaving the sample tables in the metadata box empty, and are not
+ * supported.
+ */
+final class Mp4FrameIndexReader {
+
+    private static final Logger log = LoggerFactory.getLogger(Mp4FrameIndexReader.class);
+
+    /**
+     * Boxes that contain other boxes, on the path to the sample tables.
+     */
+    private static final Set<String> CONTAINER_BOXES = Set.of("moov", "trak", "mdia", "minf", "stbl");
+
+    private static final String VIDEO_HANDLER = "vide";
+
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Largest leaf box that will be read into memory.
+     */
+    private static final long MAX_BOX_SIZE = 64 * 1024 * 1024;
+
+    private static final long MICROS_PER_SECOND = 1_000_000;
+
+    private final FileChannel channel;
+
+    /**
+     * Sample tables of the track currently being read.
+     */
+    private Track track;
+
+    /**
+     * First complete video track.
+     */
+    private Track videoTrack;
+
+    private Mp4FrameIndexReader(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Read the frame index for a file.
+     *
+     * @param file media file
+     * @return frame index, or empty if the file is not an MP4 file or has no usable video track
+     * @throws IOException if an error occurs reading the file
+     */
+    static Optional<FrameIndex> read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Mp4FrameIndexReader reader = new Mp4FrameIndexReader(channel);
+            reader.readBoxes(null, 0, channel.size());
+            if (reader.videoTrack == null) {
+                log.debug("No video sample tables in {}", file);
+                return Optional.empty();
+            }
+            return Optional.of(reader.videoTrack.frameIndex());
+        }
+    }
+
+    private void readBoxes(String parent, long start, long end) throws IOException {
+        long position = start;
+        while (position + HEADER_SIZE <= end && videoTrack == null) {
+            ByteBuffer header = read(position, HEADER_SIZE);
+            long size = Integer.toUnsignedLong(header.getInt());
+            String type = type(header);
+            int headerSize = HEADER_SIZE;
+            if (size == 1) {
+                size = read(position + HEADER_SIZE, 8).getLong();
+                headerSize += 8;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                throw new IOException("Invalid " + type + " box at " + position);
+            }
+            long bodyStart = position + headerSize;
+            long bodySize = size - headerSize;
+            if (CONTAINER_BOXES.contains(type)) {
+                if (type.equals("trak")) {
+                    track = new Track();
+                }
+                readBoxes(type, bodyStart, bodyStart + bodySize);
+                if (type.equals("trak")) {
+                    if (track.complete()) {
+                        videoTrack = track;
+                    }
+                    track = null;
+                }
+            } else if (track != null && isTrackBox(parent, type)) {
+                if (bodySize > MAX_BOX_SIZE) {
+                    throw new IOException("Unexpectedly large " + type + " box at " + position);
+                }
+                track.box(type, read(bodyStart, (int) bodySize));
+            }
+            position += size;
+        }
+    }
+
+    private static boolean isTrackBox(String parent, String type) {
+        switch (type) {
+            case "hdlr":
+                // Not the QuickTime data handler within "minf"
+                return parent.equals("mdia");
+            case "mdhd":
+            case "stts":
+            case "ctts":
+            case "stss":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static String type(ByteBuffer buffer) {
+        byte[] type = new byte[4];
+        buffer.get(type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Sample tables for a single track.
+     */
+    private static final class Track {
+
+        private String handler;
+
+        private long timescale;
+
+        private ByteBuffer stts;
+
+        private ByteBuffer ctts;
+
+        private ByteBuffer stss;
+
+        private void box(String type, ByteBuffer body) {
+            switch (type) {
+                case "hdlr":
+                    // Version and flags, pre-defined, then the handler type
+                    body.position(8);
+                    handler = type(body);
+                    break;
+                case "mdhd":
+                    // Version 1 has 64-bit creation and modification times
+                    body.position(body.get(0) == 1 ? 20 : 12);
+                    timescale = Integer.toUnsignedLong(body.getInt());
+                    break;
+                case "stts":
+                    stts = body;
+                    break;
+                case "ctts":
+                    ctts = body;
+                    break;
+                case "stss":
+                    stss = body;
+                    break;
+            }
+        }
+
+        private boolean complete() {
+            // A fragmented file has empty sample tables
+            return VIDEO_HANDLER.equals(handler) && timescale > 0 && stts != null && sampleCount() > 0;
+        }
+
+        private long sampleCount() {
+            int entries = stts.getInt(4);
+            long sampleCount = 0;
+            for (int i = 0; i < entries; i++) {
+                sampleCount += Integer.toUnsignedLong(stts.getInt(8 + i * 8));
+            }
+            return sampleCount;
+        }
+
+        private FrameIndex frameIndex() {
+            // Decoding timestamps, in decode order
+            stts.position(4);
+            int entries = stts.getInt();
+            long[] timestamps = new long[Math.toIntExact(sampleCount())];
+            int sample = 0;
+            long decodeTime = 0;
+            for (int i = 0; i < entries; i++) {
+                int count = stts.getInt();
+                int delta = stts.getInt();
+                for (int j = 0; j < count; j++) {
+                    timestamps[sample++] = decodeTime;
+                    decodeTime += Integer.toUnsignedLong(delta);
+                }
+            }
+            // Presentation timestamps, still in decode order, offsets are signed in version 1 and in practice never exceed the signed range in version 0
+            if (ctts != null) {
+                ctts.position(4);
+                int offsetEntries = ctts.getInt();
+                sample = 0;
+                for (int i = 0; i < offsetEntries && sample < timestamps.length; i++) {
+                    int count = ctts.getInt();
+                    int offset = ctts.getInt();
+                    for (int j = 0; j < count && sample < timestamps.length; j++) {
+                        timestamps[sample++] += offset;
+                    }
+                }
+            }
+            long[] keyframes;
+            if (stss != null) {
+                stss.position(4);
+                keyframes = new long[stss.getInt()];
+                for (int i = 0; i < keyframes.length; i++) {
+                    // Sample numbers start at one
+                    keyframes[i] = timestamps[stss.getInt() - 1];
+                }
+            } else {
+                keyframes = timestamps.clone();
+            }
+            Arrays.sort(timestamps);
+            Arrays.sort(keyframes);
+            long first = timestamps.length > 0 ? timestamps[0] : 0;
+            toMicros(timestamps, first);
+            toMicros(keyframes, first);
+            return new FrameIndex(timestamps, keyframes);
+        }
+
+        private void toMicros(long[] timestamps, long first) {
+            for (int i = 0; i < timestamps.length; i++) {
+                long time = Math.max(0, timestamps[i] - first);
+                // Split to avoid overflow for long media with fine timescales
+                timestamps[i] = time / timescale * MICROS_PER_SECOND + time % timescale * MICROS_PER_SECOND / timescale;
+            }
+        }
+    }
+}
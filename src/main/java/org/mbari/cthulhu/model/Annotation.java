@@ -6,6 +6,8 @@ import javafx.geometry.BoundingBox;
 import java.util.Optional;
 import java.util.UUID;
 
+import static org.mbari.cthulhu.model.ConceptDictionary.conceptDictionary;
+
 /**
  * Model of a video annotation.
  */
@@ -32,9 +34,9 @@ public class Annotation {
     private BoundingBox bounds;
 
     /**
-     * Optional caption text.
+     * Identifier of the optional caption text in the {@link ConceptDictionary}.
      */
-    private String caption;
+    private int captionId;
 
     /**
      *
@@ -51,11 +53,24 @@ public class Annotation {
      * @param caption caption text
      */
     public Annotation(UUID id, long startTime, long endTime, BoundingBox bounds, String caption) {
+        this(id, startTime, endTime, bounds, conceptDictionary().id(caption));
+    }
+
+    /**
+     * Create a video annotation, with a specific unique identifier and a caption that is already in the {@link ConceptDictionary}.
+     *
+     * @param id unique identifier
+     * @param startTime
+     * @param endTime
+     * @param bounds area of interest
+     * @param captionId caption identifier, or {@link ConceptDictionary#NONE}
+     */
+    public Annotation(UUID id, long startTime, long endTime, BoundingBox bounds, int captionId) {
         this.id = id;
         this.startTime = startTime;
         this.endTime = endTime;
         this.bounds = bounds;
-        this.caption = caption;
+        this.captionId = captionId;
         this.selected = false;
     }
 
@@ -69,11 +84,11 @@ public class Annotation {
      * @param bounds area of interest
      */
     public Annotation(long startTime, BoundingBox bounds) {
-        this(UUID.randomUUID(), startTime, startTime, bounds, null);
+        this(UUID.randomUUID(), startTime, startTime, bounds, ConceptDictionary.NONE);
     }
 
     public Annotation(UUID id, long startTime, BoundingBox bounds) {
-        this(id, startTime, startTime, bounds, null);
+        this(id, startTime, startTime, bounds, ConceptDictionary.NONE);
     }
 
     /**
@@ -127,7 +142,16 @@ public class Annotation {
      * @return caption text
      */
     public final Optional<String> caption() {
-        return Optional.ofNullable(caption);
+        return Optional.ofNullable(conceptDictionary().concept(captionId));
+    }
+
+    /**
+     * Get the identifier of the caption text for this video annotation.
+     *
+     * @return caption identifier, or {@link ConceptDictionary#NONE} if there is no caption
+     */
+    public final int captionId() {
+        return captionId;
     }
 
     /**
@@ -145,7 +169,7 @@ public class Annotation {
      * @param caption caption text
      */
     public final void caption(String caption) {
-        this.caption = caption;
+        this.captionId = conceptDictionary().id(caption);
     }
 
     public final boolean selected() {
@@ -160,7 +184,7 @@ public class Annotation {
     public String toString() {
         return MoreObjects.toStringHelper(this)
             .add("id", id)
-            .add("caption", caption)
+            .add("caption", conceptDictionary().concept(captionId))
             .add("startTime", startTime)
             .add("endTime", endTime)
             .add("bounds", bounds)
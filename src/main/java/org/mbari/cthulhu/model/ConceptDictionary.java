@@ -0,0 +1,114 @@
+package org.mbari.cthulhu.model;
+
+import com.google.common.base.Strings;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Dictionary of concepts (caption text), each assigned a small integer identifier.
+ * <p>
+ * There are relatively few distinct concepts, but very many annotations, and each incoming localization carries its own
+ * copy of the concept text. Annotations instead refer to their concept by identifier, so each distinct concept is held
+ * only once, comparing two concepts is an integer comparison, and anything derived from a concept (e.g. the measured
+ * size of a caption) can be cached in an array indexed by identifier rather than a map keyed by text.
+ * <p>
+ * Identifiers are assigned in sequence starting from zero, and are never reused or removed, so an identifier remains
+ * valid for the life of the application. A <code>null</code> or empty concept has the identifier {@link #NONE}.
+ * <p>
+ * This component is thread-safe, looking up an existing concept or identifier never blocks.
+ */
+public final class ConceptDictionary {
+
+    /**
+     * Identifier for no concept.
+     */
+    public static final int NONE = -1;
+
+    private static final class Holder {
+        private static final ConceptDictionary INSTANCE = new ConceptDictionary();
+    }
+
+    /**
+     * Get the concept dictionary.
+     *
+     * @return concept dictionary
+     */
+    public static ConceptDictionary conceptDictionary() {
+        return Holder.INSTANCE;
+    }
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Concepts, indexed by identifier.
+     * <p>
+     * Replaced (rather than modified) when it grows, and only ever written while holding the lock on this instance.
+     */
+    private volatile String[] concepts = new String[64];
+
+    private int size;
+
+    private ConceptDictionary() {
+    }
+
+    /**
+     * Get the identifier for a concept, assigning a new identifier if the concept has not been seen before.
+     *
+     * @param concept concept
+     * @return identifier, or {@link #NONE} if the concept is <code>null</code> or empty
+     */
+    public int id(String concept) {
+        if (Strings.isNullOrEmpty(concept)) {
+            return NONE;
+        }
+        Integer id = ids.get(concept);
+        return id != null ? id : assign(concept);
+    }
+
+    /**
+     * Get the concept for an identifier.
+     *
+     * @param id identifier
+     * @return concept, or <code>null</code> if the identifier is {@link #NONE}
+     */
+    public String concept(int id) {
+        return id != NONE ? concepts[id] : null;
+    }
+
+    /**
+     * Get the number of concepts.
+     *
+     * @return number of concepts
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int assign(String concept) {
+        Integer existing = ids.get(concept);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = concepts;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        int id = size++;
+        current[id] = concept;
+        // Publish the concept before the identifier can be seen by any other thread
+        concepts = current;
+        ids.put(concept, id);
+        return id;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return toStringHelper(this)
+            .add("size", size)
+            .toString();
+    }
+}
@@ -1,6 +1,7 @@
 package org.mbari.cthulhu.settings;
 
 import javafx.scene.paint.Color;
+import org.mbari.cthulhu.ui.components.annotationview.AnnotationRenderMode;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static org.mbari.cthulhu.ui.components.settings.Colours.colorToWebString;
@@ -18,6 +19,8 @@ final public class Display {
 
     private String decayBorderColour;
 
+    private AnnotationRenderMode renderMode;
+
     /**
      * Create settings with default values.
      */
@@ -26,6 +29,7 @@ final public class Display {
         this.borderColour = colorToWebString(Color.ANTIQUEWHITE);
         this.timeWindowMillis = 2000;
         this.decayBorderColour = colorToWebString(Color.color(1.0d, 1.0d, 1.0d, 0.0d));
+        this.renderMode = AnnotationRenderMode.NODES;
     }
 
     /**
@@ -38,6 +42,7 @@ final public class Display {
         this.borderColour = from.borderColour;
         this.timeWindowMillis = from.timeWindowMillis;
         this.decayBorderColour = from.decayBorderColour;
+        this.renderMode = from.renderMode;
     }
 
     public int borderSize() {
@@ -72,6 +77,14 @@ final public class Display {
         this.decayBorderColour = decayBorderColour;
     }
 
+    public AnnotationRenderMode renderMode() {
+        return renderMode;
+    }
+
+    public void renderMode(AnnotationRenderMode renderMode) {
+        this.renderMode = renderMode;
+    }
+
     @Override
     public String toString() {
         return toStringHelper(this)
@@ -79,6 +92,7 @@ final public class Display {
             .add("borderColour", borderColour)
             .add("timeWindowMillis", timeWindowMillis)
             .add("decayBorderColour", decayBorderColour)
+            .add("renderMode", renderMode)
             .toString();
     }
 }
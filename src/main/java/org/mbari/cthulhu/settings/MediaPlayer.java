@@ -15,9 +15,7 @@ final public class MediaPlayer {
 
     private int longSkip;
 
-    private int skipThrottle;
-
-    private int scrubThrottle;
+    private int thumbnailStride;
 
     /**
      * Create settings with default values.
@@ -26,8 +24,7 @@ final public class MediaPlayer {
         this.timeDisplay = TimerMode.REMAINING;
         this.normalSkip = 1000;
         this.longSkip = 5000;
-        this.skipThrottle = 100;
-        this.scrubThrottle = 200;
+        this.thumbnailStride = 0;
     }
 
     /**
@@ -39,8 +36,7 @@ final public class MediaPlayer {
         this.timeDisplay = from.timeDisplay;
         this.normalSkip = from.normalSkip;
         this.longSkip = from.longSkip;
-        this.skipThrottle = from.skipThrottle;
-        this.scrubThrottle = from.scrubThrottle;
+        this.thumbnailStride = from.thumbnailStride;
     }
 
     public TimerMode timeDisplay() {
@@ -67,20 +63,12 @@ final public class MediaPlayer {
         this.longSkip = longSkip;
     }
 
-    public int skipThrottle() {
-        return skipThrottle;
-    }
-
-    public void skipThrottle(int skipThrottle) {
-        this.skipThrottle = skipThrottle;
-    }
-
-    public int scrubThrottle() {
-        return scrubThrottle;
+    public int thumbnailStride() {
+        return thumbnailStride;
     }
 
-    public void scrubThrottle(int scrubThrottle) {
-        this.scrubThrottle = scrubThrottle;
+    public void thumbnailStride(int thumbnailStride) {
+        this.thumbnailStride = thumbnailStride;
     }
 
     @Override
@@ -89,8 +77,7 @@ final public class MediaPlayer {
             .add("timeDisplay", timeDisplay)
             .add("normalSkip", normalSkip)
             .add("longSkip", longSkip)
-            .add("skipThrottle", skipThrottle)
-            .add("scrubThrottle", scrubThrottle)
+            .add("thumbnailStride", thumbnailStride)
             .toString();
     }
 }
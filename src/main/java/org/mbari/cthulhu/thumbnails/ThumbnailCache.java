@@ -0,0 +1,289 @@
+package org.mbari.cthulhu.thumbnails;
+
+import com.google.common.base.Objects;
+import com.google.common.hash.Hashing;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.mbari.cthulhu.decode.DecodeWorker;
+import org.mbari.cthulhu.ui.videosurface.VideoFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static org.mbari.cthulhu.capture.FrameEncoder.frameEncoder;
+import static org.mbari.cthulhu.decode.DecodeWorkerPool.decodeWorkerPool;
+
+/**
+ * Cache of small preview images ("thumbnails") of media, taken at a regular stride through the media.
+ * <p>
+ * Thumbnails are generated in the background by a headless decode worker, and are then held in two tiers:
+ * <ul>
+ *     <li>a bounded in-memory cache of the most recently used thumbnails, across all media;</li>
+ *     <li>a persistent on-disk cache, with a directory for each media keyed by a hash of its media resource locator, so that thumbnails survive
+ *     restarting the application and only ever need to be generated once.</li>
+ * </ul>
+ * A thumbnail is looked up by media time, returning the thumbnail for the nearest preceding stride.
+ * <p>
+ * Looking up a thumbnail never blocks - a thumbnail that is only on disk is loaded in the background, and is available from a later lookup once loaded. Each
+ * thumbnail file is written under a temporary name and then renamed, so only complete files are ever loaded.
+ */
+public final class ThumbnailCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailCache.class);
+
+    private static final String DEFAULT_CACHE_DIRECTORY = ".cache/mbari/cthulhu/thumbnails";
+
+    private static final String THUMBNAIL_FILE_FORMAT = "%09d.jpg";
+
+    /**
+     * Prefix for the name of a thumbnail file while it is being written, so a partly written file is never mistaken for a thumbnail.
+     */
+    private static final String PARTIAL_FILE_PREFIX = ".";
+
+    /**
+     * Width of a thumbnail, in pixels, the height preserves the aspect ratio of the video.
+     */
+    private static final int THUMBNAIL_WIDTH = 160;
+
+    /**
+     * Maximum number of thumbnails held in memory, a 16:9 thumbnail takes around 56KB.
+     */
+    private static final int MEMORY_CAPACITY = 500;
+
+    private static final class Holder {
+        private static final ThumbnailCache INSTANCE = new ThumbnailCache();
+    }
+
+    /**
+     * Get the thumbnail cache.
+     *
+     * @return thumbnail cache
+     */
+    public static ThumbnailCache thumbnailCache() {
+        return Holder.INSTANCE;
+    }
+
+    private final File cacheDirectory;
+
+    /**
+     * Most recently used thumbnails, in access order, guarded by synchronising on the map.
+     */
+    private final Map<Key, Image> memory = new LinkedHashMap<>(MEMORY_CAPACITY, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Image> eldest) {
+            return size() > MEMORY_CAPACITY;
+        }
+    };
+
+    /**
+     * Generation tasks, keyed by media directory, so that thumbnails for the same media and stride are only generated once.
+     */
+    private final Map<File, CompletableFuture<Void>> generating = new ConcurrentHashMap<>();
+
+    private ThumbnailCache() {
+        this.cacheDirectory = new File(String.format("%s/%s", System.getProperty("user.home"), DEFAULT_CACHE_DIRECTORY));
+        log.debug("Thumbnail cache at {}", cacheDirectory);
+    }
+
+    /**
+     * Ensure that thumbnails are available for media, generating any that are missing in the background.
+     * <p>
+     * Thumbnails become available progressively, in media time order, as they are generated.
+     *
+     * @param mrl media resource locator
+     * @param stride interval between thumbnails, in milliseconds
+     */
+    public void generate(String mrl, long stride) {
+        log.debug("generate(mrl={}, stride={})", mrl, stride);
+        File directory = directory(mrl, stride);
+        generating.computeIfAbsent(directory, key -> decodeWorkerPool().<Void>submit(worker -> generate(worker, mrl, stride, directory))
+            .whenComplete((result, e) -> {
+                if (e != null) {
+                    log.warn("Failed to generate thumbnails for {}: {}", mrl, e.getMessage());
+                    // Allow another attempt later
+                    generating.remove(directory);
+                }
+            })
+        );
+    }
+
+    /**
+     * Get the thumbnail for a media time, if it is available.
+     * <p>
+     * If the thumbnail is on disk but not in memory, it starts loading in the background and is not available until it has loaded.
+     *
+     * @param mrl media resource locator
+     * @param stride interval between thumbnails, in milliseconds
+     * @param time media time, in milliseconds
+     * @return thumbnail for the nearest preceding stride, or empty if it is not available (yet)
+     */
+    public Optional<Image> thumbnail(String mrl, long stride, long time) {
+        long slot = Math.max(0, time) / stride * stride;
+        File directory = directory(mrl, stride);
+        Key key = new Key(directory, slot);
+        synchronized (memory) {
+            Image image = memory.get(key);
+            if (image != null) {
+                if (image.isError()) {
+                    // Allow another attempt later
+                    memory.remove(key);
+                    return Optional.empty();
+                }
+                return loaded(image) ? Optional.of(image) : Optional.empty();
+            }
+        }
+        File file = file(directory, slot);
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+        Image image = new Image(file.toURI().toString(), true);
+        synchronized (memory) {
+            memory.put(key, image);
+        }
+        return loaded(image) ? Optional.of(image) : Optional.empty();
+    }
+
+    private static boolean loaded(Image image) {
+        return !image.isBackgroundLoading() || image.getProgress() >= 1 && !image.isError();
+    }
+
+    private Void generate(DecodeWorker worker, String mrl, long stride, File directory) throws IOException {
+        long start = System.nanoTime();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+        if (!worker.open(mrl)) {
+            throw new IOException("Failed to open " + mrl);
+        }
+        // The length is read once, each read is a call to the native media player
+        long length = worker.length();
+        int count = 0;
+        for (long time = 0; time < length; time += stride) {
+            File file = file(directory, time);
+            if (file.isFile() || !worker.seek(time)) {
+                continue;
+            }
+            VideoFrame thumbnail = scale(worker.frameBuffer(), worker.width(), worker.height(), worker.frameTime());
+            synchronized (memory) {
+                memory.put(new Key(directory, time), toImage(thumbnail));
+            }
+            File partialFile = new File(directory, PARTIAL_FILE_PREFIX + file.getName());
+            long thumbnailTime = time;
+            frameEncoder().encode(thumbnail, partialFile)
+                .thenAccept(written -> rename(written, file))
+                .exceptionally(e -> {
+                    // Still in memory, it will be generated again next time
+                    log.debug("Failed to write thumbnail for {}ms: {}", thumbnailTime, e.getMessage());
+                    return null;
+                });
+            count++;
+        }
+        log.debug("Generated {} thumbnails for {} in {}ms", count, mrl, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return null;
+    }
+
+    private static void rename(File partialFile, File file) {
+        try {
+            Files.move(partialFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private File directory(String mrl, long stride) {
+        String mediaKey = Hashing.sha256().hashString(mrl, StandardCharsets.UTF_8).toString();
+        return new File(new File(cacheDirectory, mediaKey), Long.toString(stride));
+    }
+
+    private static File file(File directory, long time) {
+        return new File(directory, String.format(THUMBNAIL_FILE_FORMAT, time));
+    }
+
+    /**
+     * Scale a BGRA frame down to thumbnail size, using nearest-neighbour sampling directly from the frame buffer.
+     *
+     * @param frameBuffer frame buffer
+     * @param width width of the frame, in pixels
+     * @param height height of the frame, in pixels
+     * @param mediaTime media time of the frame
+     * @return thumbnail, with opaque pixels
+     */
+    private static VideoFrame scale(ByteBuffer frameBuffer, int width, int height, long mediaTime) {
+        int thumbnailWidth = Math.min(width, THUMBNAIL_WIDTH);
+        int thumbnailHeight = Math.max(1, height * thumbnailWidth / width);
+        IntBuffer source = frameBuffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        int[] pixels = new int[thumbnailWidth * thumbnailHeight];
+        for (int y = 0; y < thumbnailHeight; y++) {
+            int sourceRow = y * height / thumbnailHeight * width;
+            for (int x = 0; x < thumbnailWidth; x++) {
+                pixels[y * thumbnailWidth + x] = 0xff000000 | source.get(sourceRow + x * width / thumbnailWidth);
+            }
+        }
+        return new VideoFrame(thumbnailWidth, thumbnailHeight, pixels, mediaTime);
+    }
+
+    private static Image toImage(VideoFrame thumbnail) {
+        WritableImage image = new WritableImage(thumbnail.width(), thumbnail.height());
+        image.getPixelWriter().setPixels(0, 0, thumbnail.width(), thumbnail.height(), PixelFormat.getIntArgbInstance(), thumbnail.pixels(), 0, thumbnail.width());
+        return image;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (memory) {
+            return toStringHelper(this)
+                .add("memory", memory.size())
+                .add("generating", generating.size())
+                .toString();
+        }
+    }
+
+    /**
+     * Key for a single thumbnail.
+     */
+    private static final class Key {
+
+        private final File directory;
+
+        private final long time;
+
+        private Key(File directory, long time) {
+            this.directory = directory;
+            this.time = time;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            if (!getClass().equals(obj.getClass())) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return time == other.time && Objects.equal(directory, other.directory);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(directory, time);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.mbari.cthulhu.ui.components.annotationview;
+
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Dimension2D;
+import javafx.geometry.Point2D;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import org.mbari.cthulhu.model.ConceptDictionary;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mbari.cthulhu.model.ConceptDictionary.conceptDictionary;
+import static org.mbari.cthulhu.ui.components.annotationview.CaptionStyle.captionStyle;
+
+/**
+ * A single canvas layer that draws all of the active annotations in one pass.
+ * <p>
+ * This is the renderer for {@link AnnotationRenderMode#CANVAS}. Rather than each annotation being a group of styled
+ * nodes that take part in every CSS and layout pass, the view redraws the whole canvas at most once per JavaFX pulse
+ * whenever anything changes. Boxes and captions are drawn to look the same as the node renderer, with caption sizes
+ * taken from the shared {@link CaptionStyle} cache.
+ * <p>
+ * The canvas is mouse transparent, hit testing is done by the view.
+ */
+final class AnnotationCanvas extends Canvas {
+
+    /**
+     * Parsed colours, keyed by their web format.
+     */
+    private final Map<String, Color> colours = new HashMap<>();
+
+    AnnotationCanvas() {
+        setManaged(false);
+        setMouseTransparent(true);
+    }
+
+    /**
+     * Draw annotations, replacing whatever was drawn before.
+     *
+     * @param annotationComponents annotations to draw, in stacking order
+     */
+    void draw(Collection<AnnotationComponent> annotationComponents) {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, getWidth(), getHeight());
+
+        CaptionStyle.Style captionStyle = captionStyle().style();
+        gc.setFont(captionStyle.font());
+        gc.setTextBaseline(VPos.TOP);
+
+        for (AnnotationComponent annotationComponent : annotationComponents) {
+            BoundingBox bounds = annotationComponent.displayBounds();
+
+            // Inside stroke, as for the node renderer
+            double borderSize = annotationComponent.borderSize();
+            double inset = borderSize / 2;
+            gc.setStroke(colour(annotationComponent.borderColour()));
+            gc.setLineWidth(borderSize);
+            gc.strokeRect(bounds.getMinX() + inset, bounds.getMinY() + inset, Math.max(0, bounds.getWidth() - borderSize), Math.max(0, bounds.getHeight() - borderSize));
+
+            int captionId = annotationComponent.captionId();
+            if (captionId != ConceptDictionary.NONE) {
+                Dimension2D size = captionStyle.size(captionId);
+                Point2D position = AnnotationComponent.captionPosition(bounds, size.getWidth(), size.getHeight(), getWidth());
+                double x = bounds.getMinX() + position.getX();
+                double y = bounds.getMinY() + position.getY();
+                double border = CaptionStyle.BORDER_SIZE;
+                double arc = 2 * CaptionStyle.RADIUS;
+
+                gc.setFill(captionStyle.backgroundFill());
+                gc.fillRoundRect(x, y, size.getWidth(), size.getHeight(), arc, arc);
+                gc.setStroke(captionStyle.borderColour());
+                gc.setLineWidth(border);
+                gc.strokeRoundRect(x + border / 2, y + border / 2, size.getWidth() - border, size.getHeight() - border, arc - border, arc - border);
+                gc.setFill(captionStyle.textFill());
+                gc.fillText(conceptDictionary().concept(captionId), x + border + CaptionStyle.PADDING, y + border);
+            }
+        }
+    }
+
+    /**
+     * Clear the canvas.
+     */
+    void clear() {
+        getGraphicsContext2D().clearRect(0, 0, getWidth(), getHeight());
+    }
+
+    private Color colour(String webColour) {
+        return colours.computeIfAbsent(webColour, Color::web);
+    }
+}
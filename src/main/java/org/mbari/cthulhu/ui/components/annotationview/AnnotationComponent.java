@@ -1,51 +1,111 @@
 package org.mbari.cthulhu.ui.components.annotationview;
 
-import com.google.common.base.Strings;
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
+import javafx.geometry.Dimension2D;
+import javafx.geometry.Point2D;
 import javafx.scene.Group;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import org.mbari.cthulhu.model.Annotation;
+import org.mbari.cthulhu.model.ConceptDictionary;
 
 import static org.mbari.cthulhu.app.CthulhuApplication.application;
 import static org.mbari.cthulhu.ui.components.annotationview.ResourceFactory.createAnnotationRectangle;
-import static org.mbari.cthulhu.ui.components.layout.LayoutSupport.layoutNode;
 
 /**
  * A visual component to render an annotation.
  * <p>
  * An annotation comprises a bounding rectangle for an area of an interest, and an associated caption.
+ * <p>
+ * The component is mouse transparent, so the scene graph never has to pick through dense stacks of annotations - hit
+ * testing is instead done by the containing view with a {@link SpatialIndex}.
+ * <p>
+ * The display state (bounds, caption, selection) is always kept, but the child nodes that render it are only created
+ * when the component is first shown in the scene graph - with {@link AnnotationRenderMode#CANVAS} the component is
+ * drawn by an {@link AnnotationCanvas} instead and never pays for creating, styling and laying out its nodes.
+ * <p>
+ * Components are recycled via an {@link AnnotationComponentPool}, so once created a component may be rebound to many
+ * different annotations over its lifetime.
  */
 class AnnotationComponent extends Group {
 
-    private final Annotation annotation;
+    /**
+     * Gap between the caption and the annotation border.
+     */
+    static final int CAPTION_GAP = 2;
+
+    private Annotation annotation;
+
+    private Rectangle rectangle;
+
+    private CaptionComponent captionComponent;
 
-    private final Rectangle rectangle;
+    private BoundingBox displayBounds = new BoundingBox(0, 0, 0, 0);
 
-    private final CaptionComponent captionComponent;
+    private int captionId = ConceptDictionary.NONE;
 
     private boolean selected;
 
+    private boolean hovered;
+
     /**
      * Create a video annotation component.
      *
      * @param annotation associated annotation
      */
     public AnnotationComponent(Annotation annotation) {
+        setManaged(false);
+        setMouseTransparent(true);
+
+        bind(annotation);
+    }
+
+    /**
+     * Associate this component with an annotation, discarding any previous display state.
+     * <p>
+     * Any child nodes already created are kept, only their content is changed.
+     *
+     * @param annotation associated annotation
+     */
+    final void bind(Annotation annotation) {
         this.annotation = annotation;
+        this.selected = false;
+        this.hovered = false;
+        this.displayBounds = new BoundingBox(0, 0, 0, 0);
 
-        rectangle = createAnnotationRectangle();
-        captionComponent = new CaptionComponent();
+        setCaption(annotation.captionId());
+        applyBorder();
+    }
 
-        setManaged(false);
+    /**
+     * Associate this component with a newer instance of the same annotation, keeping the selection and hover state.
+     *
+     * @param annotation newer instance of the associated annotation
+     */
+    final void refresh(Annotation annotation) {
+        this.annotation = annotation;
+        setCaption(annotation.captionId());
+    }
 
-        setCaption(annotation.caption().orElse(null));
+    /**
+     * Create the child nodes that render this annotation, if they have not been created already.
+     * <p>
+     * Must be invoked before the component is first added to the view.
+     */
+    final void realise() {
+        if (rectangle != null) {
+            return;
+        }
 
-        // Perform an immediate layout of the caption component so its proper size can be determined
-        layoutNode(captionComponent);
+        rectangle = createAnnotationRectangle();
+        captionComponent = new CaptionComponent();
+
+        applyCaption();
 
         getChildren().addAll(rectangle, captionComponent);
+
+        applyBorder();
     }
 
     /**
@@ -58,14 +118,22 @@ class AnnotationComponent extends Group {
     }
 
     /**
-     * Set the caption text for this annotation.
+     * Set the caption for this annotation.
      *
-     * @param caption caption text
+     * @param captionId caption identifier in the {@link ConceptDictionary}, or {@link ConceptDictionary#NONE}
      */
-    final void setCaption(String caption) {
-         captionComponent.setCaption(caption);
-         boolean showCaption = !Strings.isNullOrEmpty(caption);
-         captionComponent.setVisible(showCaption);
+    final void setCaption(int captionId) {
+        this.captionId = captionId;
+        applyCaption();
+    }
+
+    /**
+     * Get the caption for this annotation.
+     *
+     * @return caption identifier in the {@link ConceptDictionary}, or {@link ConceptDictionary#NONE} if there is none
+     */
+    final int captionId() {
+        return captionId;
     }
 
     /**
@@ -74,34 +142,89 @@ class AnnotationComponent extends Group {
      * @param bounds new bounds
      */
     final void setBounds(BoundingBox bounds) {
+        this.displayBounds = bounds;
+
         setLayoutX(bounds.getMinX());
         setLayoutY(bounds.getMinY());
 
-        rectangle.setWidth(bounds.getWidth());
-        rectangle.setHeight(bounds.getHeight());
+        if (rectangle != null) {
+            rectangle.setWidth(bounds.getWidth());
+            rectangle.setHeight(bounds.getHeight());
 
-        repositionComponents();
+            repositionComponents();
+        }
     }
 
-    final Rectangle getRectangle() {
-        return rectangle;
+    /**
+     * Get the display bounds for this annotation.
+     *
+     * @return display bounds
+     */
+    final BoundingBox displayBounds() {
+        return displayBounds;
     }
-    
+
     final void select(boolean select) {
-        if (select) {
-            this.selected = true;
-            rectangle.setStroke(Color.web(application().settings().annotations().selection().borderColour()));
-            rectangle.setStrokeWidth(application().settings().annotations().selection().borderSize());
-        } else {
-            this.selected = false;
-            rectangle.setStroke(Color.web(application().settings().annotations().display().borderColour()));
-            rectangle.setStrokeWidth(application().settings().annotations().display().borderSize());
+        this.selected = select;
+        applyBorder();
+    }
+
+    /**
+     * Highlight this annotation while the mouse is over it.
+     * <p>
+     * A hovered annotation uses the selection border colour with the display border size, so it remains distinguishable
+     * from a selected annotation.
+     *
+     * @param hover <code>true</code> to highlight; <code>false</code> to remove the highlight
+     */
+    final void hover(boolean hover) {
+        this.hovered = hover;
+        applyBorder();
+    }
+
+    /**
+     * Get the colour of the border for the current selection and hover state.
+     *
+     * @return border colour, in web format
+     */
+    final String borderColour() {
+        if (selected || hovered) {
+            return application().settings().annotations().selection().borderColour();
+        }
+        return application().settings().annotations().display().borderColour();
+    }
+
+    /**
+     * Get the size of the border for the current selection state.
+     *
+     * @return border size
+     */
+    final int borderSize() {
+        if (selected) {
+            return application().settings().annotations().selection().borderSize();
+        }
+        return application().settings().annotations().display().borderSize();
+    }
+
+    private void applyBorder() {
+        if (rectangle != null) {
+            rectangle.setStroke(Color.web(borderColour()));
+            rectangle.setStrokeWidth(borderSize());
+        }
+    }
+
+    private void applyCaption() {
+        if (captionComponent != null) {
+            captionComponent.setCaption(captionId);
+            captionComponent.setVisible(captionId != ConceptDictionary.NONE);
         }
     }
 
     final void settingsChanged() {
-        select(this.selected);
-        captionComponent.applySettings();
+        applyBorder();
+        if (captionComponent != null) {
+            captionComponent.applySettings();
+        }
     }
 
     final boolean isSelected() {
@@ -114,38 +237,47 @@ class AnnotationComponent extends Group {
             return;
         }
 
-        Bounds videoBounds = videoView.videoViewBounds();
+        // The caption size is cached, so no CSS or layout pass is needed to measure it
+        Dimension2D captionSize = captionComponent.size();
 
-        int borderSize = application().settings().annotations().display().borderSize();
-        int captionBorderSize = 3;
-        int captionGap = 2;
-
-        captionComponent.applyCss();
-        captionComponent.layout();
+        Point2D position = captionPosition(displayBounds, captionSize.getWidth(), captionSize.getHeight(), videoView.videoViewBounds().getWidth());
+        captionComponent.setLayoutX(position.getX());
+        captionComponent.setLayoutY(position.getY());
+    }
 
-        Bounds captionBounds = captionComponent.getBoundsInParent();
+    /**
+     * Determine the position of a caption relative to the origin of its annotation.
+     * <p>
+     * The caption is placed above and left-aligned with the annotation where possible, otherwise it is right-aligned
+     * and/or placed below the annotation so that it fits in the display area.
+     *
+     * @param bounds display bounds of the annotation
+     * @param width width of the caption, including its border
+     * @param height height of the caption, including its border
+     * @param viewWidth width of the display area
+     * @return caption position, relative to the annotation origin
+     */
+    static Point2D captionPosition(Bounds bounds, double width, double height, double viewWidth) {
+        int borderSize = application().settings().annotations().display().borderSize();
 
-        double captionWidth = captionBounds.getWidth() + (2 * captionBorderSize);
-        double captionHeight = captionBounds.getHeight();
+        double captionWidth = width + (2 * CaptionStyle.BORDER_SIZE);
 
         // Optimal position is to left-align
         double x = -borderSize;
         // Check if the caption fits
-        if (getLayoutX() + captionWidth > videoBounds.getWidth()) {
+        if (bounds.getMinX() + captionWidth > viewWidth) {
             // Optimal position for caption does not fit, so right-align instead
-            x = rectangle.getWidth() - captionWidth + (2 * borderSize);
+            x = bounds.getWidth() - captionWidth + (2 * borderSize);
         }
 
         // Optional position is to place above the annotation
-        double y = 0 - borderSize - captionHeight - captionBorderSize - captionGap;
+        double y = 0 - borderSize - height - CaptionStyle.BORDER_SIZE - CAPTION_GAP;
         // Check if the caption fits
-        if (getLayoutY() + y < 0) {
+        if (bounds.getMinY() + y < 0) {
             // Optimal position for caption does not fit, so place below the annotation instead
-            y = rectangle.getHeight() + (2 * borderSize) + captionGap - 1;
+            y = bounds.getHeight() + (2 * borderSize) + CAPTION_GAP - 1;
         }
 
-        // Check if the optimal position for the label fits in the display area
-        captionComponent.setLayoutX(x);
-        captionComponent.setLayoutY(y);
+        return new Point2D(x, y);
     }
 }
@@ -0,0 +1,98 @@
+package org.mbari.cthulhu.ui.components.annotationview;
+
+import org.mbari.cthulhu.model.Annotation;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * A bounded pool of {@link AnnotationComponent} instances.
+ * <p>
+ * During playback annotations continually enter and leave the active time window. Building a new component each time
+ * means creating, styling and laying out its rectangle and caption nodes, only to throw them away again moments later.
+ * Instead, components that are no longer shown are returned to this pool, and rebound to the next annotation that
+ * becomes active.
+ * <p>
+ * The pool holds at most a fixed number of idle components, any more are simply left for garbage collection. Hits (a
+ * pooled component was reused) and misses (a new component had to be created) are counted so the effectiveness of the
+ * pool can be measured.
+ */
+final class AnnotationComponentPool {
+
+    /**
+     * Maximum number of idle components kept for reuse.
+     */
+    private static final int MAX_IDLE = 256;
+
+    private final Deque<AnnotationComponent> idle = new ArrayDeque<>();
+
+    private long hits;
+
+    private long misses;
+
+    /**
+     * Get a component for an annotation, reusing an idle component if there is one.
+     *
+     * @param annotation annotation
+     * @return component bound to the annotation
+     */
+    synchronized AnnotationComponent acquire(Annotation annotation) {
+        AnnotationComponent annotationComponent = idle.pollFirst();
+        if (annotationComponent != null) {
+            hits++;
+            annotationComponent.bind(annotation);
+            return annotationComponent;
+        }
+        misses++;
+        return new AnnotationComponent(annotation);
+    }
+
+    /**
+     * Return a component to the pool.
+     * <p>
+     * The component must already have been removed from the scene graph.
+     *
+     * @param annotationComponent component that is no longer used
+     */
+    synchronized void release(AnnotationComponent annotationComponent) {
+        if (idle.size() < MAX_IDLE) {
+            idle.addFirst(annotationComponent);
+        }
+    }
+
+    /**
+     * Discard all idle components, e.g. because they were styled with settings that have since changed.
+     */
+    synchronized void clear() {
+        idle.clear();
+    }
+
+    /**
+     * Get the number of requests satisfied by reusing an idle component.
+     *
+     * @return number of hits
+     */
+    synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of requests that needed a new component.
+     *
+     * @return number of misses
+     */
+    synchronized long misses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return toStringHelper(this)
+            .add("idle", idle.size())
+            .add("hits", hits)
+            .add("misses", misses)
+            .toString();
+    }
+}
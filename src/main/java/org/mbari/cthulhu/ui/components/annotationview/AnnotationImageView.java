@@ -1,9 +1,7 @@
 package org.mbari.cthulhu.ui.components.annotationview;
 
-import javafx.application.Platform;
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
-import javafx.scene.Node;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
@@ -13,6 +11,7 @@ import org.mbari.cthulhu.model.Annotation;
 import org.mbari.cthulhu.settings.Settings;
 import org.mbari.cthulhu.ui.components.imageview.ResizableImageView;
 import org.mbari.cthulhu.ui.player.PlayerComponent;
+import org.mbari.cthulhu.ui.player.RenderCoordinator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +31,10 @@ import static org.mbari.cthulhu.ui.components.annotationview.ResourceFactory.*;
  * <p>
  * Similarly, it is the responsibility of some other component to manage what annotations are shown, when, and for how
  * long.
+ * <p>
+ * Annotations are rendered either as individual groups of nodes, or all together on a single {@link AnnotationCanvas},
+ * according to the {@link AnnotationRenderMode} setting. In canvas mode only the box being edited (its corner handles
+ * and drag rectangle) uses nodes.
  */
 public class AnnotationImageView extends ResizableImageView implements BoxEditHandler.Listener {
 
@@ -41,6 +44,11 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
     
     private static final KeyCode EDIT_KEY_CODE = KeyCode.E;
 
+    /**
+     * Size of the cells in the spatial index, in display coordinates.
+     */
+    private static final double INDEX_CELL_SIZE = 64;
+
     private final Rectangle cursorRectangle = createCursorRectangle();
 
     private final Rectangle dragRectangle = createDragRectangle();
@@ -49,6 +57,20 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
     
     private final PlayerComponent playerComponent;
 
+    private final AnnotationCanvas annotationCanvas = new AnnotationCanvas();
+
+    /**
+     * Idle annotation components, recycled rather than rebuilt as annotations enter and leave the time window.
+     */
+    private final AnnotationComponentPool componentPool = new AnnotationComponentPool();
+
+    /**
+     * Signal that the annotation canvas needs to be redrawn, it is redrawn at most once per JavaFX pulse.
+     */
+    private final RenderCoordinator.SignalSlot canvasChanged;
+
+    private volatile AnnotationRenderMode renderMode;
+
     /**
      * Callback invoked when a new annotation is created.
      */
@@ -59,7 +81,18 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
      * <p>
      * This map contains only the currently active annotation components, i.e. those components that are visible in the view at the present time.
      */
-    private Map<UUID, AnnotationComponent> annotationsById = new HashMap<>();
+    private final Map<UUID, AnnotationComponent> annotationsById = new LinkedHashMap<>();
+
+    /**
+     * Spatial index of the display bounds of the currently active annotation components, kept in step with
+     * {@link #annotationsById} and used for all hit testing.
+     */
+    private final SpatialIndex<UUID> spatialIndex = new SpatialIndex<>(INDEX_CELL_SIZE);
+
+    /**
+     * Annotation component currently highlighted under the mouse, if any.
+     */
+    private AnnotationComponent hoveredComponent;
 
     /**
      * Elapsed time in the video (in milliseconds) when the mouse button was pressed to start creating an annotation.
@@ -84,10 +117,14 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
         super(playerComponent.videoImageView());
 
         this.playerComponent = playerComponent;
+        this.canvasChanged = playerComponent.renderCoordinator().signalSlot(this::drawCanvas);
 
+        add(annotationCanvas);
         getChildren().addAll(cursorRectangle, dragRectangle);
         getChildren().addAll(boxEditHandler.getComponents());
 
+        applyRenderMode(application().settings().annotations().display().renderMode());
+
         registerEventHandlers();
     }
 
@@ -123,11 +160,49 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
 
     private void mouseExited(MouseEvent event) {
         cursorRectangle.setVisible(false);
+        hover(null);
     }
 
     private void mouseMoved(MouseEvent event) {
         cursorRectangle.setX(event.getX());
         cursorRectangle.setY(event.getY());
+        hover(annotationAt(event.getX(), event.getY()).orElse(null));
+    }
+
+    /**
+     * Find the topmost annotation component at a point.
+     *
+     * @param x x display coordinate
+     * @param y y display coordinate
+     * @return annotation component, or empty if there is none at that point
+     */
+    private Optional<AnnotationComponent> annotationAt(double x, double y) {
+        return spatialIndex.at(x, y).stream()
+            .findFirst()
+            .map(id -> annotationsById.get(id));
+    }
+
+    /**
+     * Find the annotations whose display bounds intersect a region.
+     *
+     * @param region region, in display coordinates
+     * @return unique identifiers of the annotations, topmost first
+     */
+    public List<UUID> annotationsIntersecting(Bounds region) {
+        return spatialIndex.intersecting(region);
+    }
+
+    private void hover(AnnotationComponent annotationComponent) {
+        if (annotationComponent != hoveredComponent) {
+            if (hoveredComponent != null) {
+                hoveredComponent.hover(false);
+            }
+            if (annotationComponent != null) {
+                annotationComponent.hover(true);
+            }
+            hoveredComponent = annotationComponent;
+            canvasChanged();
+        }
     }
 
     private void mousePressed(MouseEvent event) {
@@ -316,23 +391,18 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
         }
         
         // get selected annotation components:
-        List<Node> annotationComponents = getChildren()
-            .filtered(child ->
-                (child instanceof AnnotationComponent) &&
-                ((AnnotationComponent) child).isSelected()
-            );
+        List<AnnotationComponent> annotationComponents = annotationsById.values().stream()
+            .filter(AnnotationComponent::isSelected)
+            .collect(toList());
 
         // for now, only handling one selection:
         if (annotationComponents.size() == 1) {
             mousePressedTime = playerComponent.mediaPlayer().status().time();
             // which should equal annotationComponent.annotation().startTime().
-            AnnotationComponent annotationComponent = (AnnotationComponent) annotationComponents.get(0);
+            AnnotationComponent annotationComponent = annotationComponents.get(0);
             UUID id = annotationComponent.annotation().id();
-            double lx = annotationComponent.getLayoutX();
-            double ly = annotationComponent.getLayoutY();
-            Rectangle r = annotationComponent.getRectangle();
-            BoundingBox bb = new BoundingBox(lx, ly, r.getWidth(), r.getHeight());
-            Platform.runLater(() -> boxEditHandler.activateHandling(id, bb));
+            BoundingBox bb = annotationComponent.displayBounds();
+            boxEditHandler.activateHandling(id, bb);
         }
     }
 
@@ -377,9 +447,53 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
         dragRectangle.setStroke(Color.web(application().settings().annotations().creation().borderColour()));
         dragRectangle.setStrokeWidth(application().settings().annotations().creation().borderSize());
 
-        getChildren()
-            .filtered(child -> child instanceof AnnotationComponent)
-            .forEach(annotationComponent -> ((AnnotationComponent) annotationComponent).settingsChanged());
+        applyRenderMode(settings.annotations().display().renderMode());
+        componentPool.clear();
+        annotationsById.values().forEach(AnnotationComponent::settingsChanged);
+        canvasChanged();
+    }
+
+    /**
+     * Switch to a different way of rendering the annotations, moving any active annotations across.
+     *
+     * @param newRenderMode new render mode
+     */
+    private void applyRenderMode(AnnotationRenderMode newRenderMode) {
+        if (newRenderMode == null || newRenderMode == renderMode) {
+            return;
+        }
+        log.debug("applyRenderMode(newRenderMode={})", newRenderMode);
+        renderMode = newRenderMode;
+        if (renderMode == AnnotationRenderMode.CANVAS) {
+            getChildren().removeAll(annotationsById.values());
+            annotationCanvas.setVisible(true);
+            canvasChanged();
+        } else {
+            annotationCanvas.clear();
+            annotationCanvas.setVisible(false);
+            annotationsById.values().forEach(annotationComponent -> {
+                annotationComponent.realise();
+                add(annotationComponent);
+                setBounds(annotationComponent, annotationComponent.annotation().bounds());
+            });
+        }
+    }
+
+    /**
+     * Request a redraw of the annotation canvas, if it is in use.
+     * <p>
+     * May be invoked on any thread.
+     */
+    private void canvasChanged() {
+        if (renderMode == AnnotationRenderMode.CANVAS) {
+            canvasChanged.signal();
+        }
+    }
+
+    private void drawCanvas() {
+        if (renderMode == AnnotationRenderMode.CANVAS) {
+            annotationCanvas.draw(annotationsById.values());
+        }
     }
 
     /**
@@ -404,17 +518,35 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
             log.debug("Not adding already added annotation with same UUID");
             return;
         }
-        AnnotationComponent annotationComponent = new AnnotationComponent(annotation);
+        AnnotationComponent annotationComponent = componentPool.acquire(annotation);
         annotationComponent.select(annotation.selected());
         BoundingBox absoluteBounds = annotationComponent.annotation().bounds();
-        add(annotationComponent);
-        annotationComponent.setBounds(absoluteToDisplayBounds(absoluteBounds));
+        if (renderMode == AnnotationRenderMode.NODES) {
+            annotationComponent.realise();
+            add(annotationComponent);
+        }
+        setBounds(annotationComponent, absoluteBounds);
         annotationsById.put(annotation.id(), annotationComponent);
+        canvasChanged();
     }
 
     public void update(Annotation annotation, AnnotationComponent annotationComponent) {
-        annotationComponent.setCaption(annotation.caption().orElse(null));
-        annotationComponent.setBounds(absoluteToDisplayBounds(annotation.bounds()));
+        // Annotation instances are created per query, so keep the newest one
+        annotationComponent.refresh(annotation);
+        setBounds(annotationComponent, annotation.bounds());
+        canvasChanged();
+    }
+
+    /**
+     * Set the display bounds of an annotation component, keeping the spatial index in step.
+     *
+     * @param annotationComponent annotation component
+     * @param absoluteBounds bounds in absolute coordinates
+     */
+    private void setBounds(AnnotationComponent annotationComponent, BoundingBox absoluteBounds) {
+        BoundingBox displayBounds = absoluteToDisplayBounds(absoluteBounds);
+        annotationComponent.setBounds(displayBounds);
+        spatialIndex.put(annotationComponent.annotation().id(), displayBounds);
     }
 
     /**
@@ -434,46 +566,57 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
      */
     public void remove(Set<UUID> idsToRemove) {
         log.trace("remove(idsToRemove={})", idsToRemove);
-        List<AnnotationComponent> componentsToRemove = idsToRemove.stream()
-            .map(id -> annotationsById.get(id))
-            .filter(Objects::nonNull)
-            .collect(toList());
+        List<AnnotationComponent> componentsToRemove = new ArrayList<>(idsToRemove.size());
+        for (UUID id : idsToRemove) {
+            AnnotationComponent annotationComponent = annotationsById.remove(id);
+            if (annotationComponent != null) {
+                componentsToRemove.add(annotationComponent);
+                spatialIndex.remove(id);
+            }
+        }
         log.trace("componentsToRemove={}", componentsToRemove);
-        Platform.runLater(() -> getChildren().removeAll(componentsToRemove));
-        idsToRemove.forEach(annotationsById::remove);
+        getChildren().removeAll(componentsToRemove);
+        componentsToRemove.forEach(componentPool::release);
+        if (hoveredComponent != null && idsToRemove.contains(hoveredComponent.annotation().id())) {
+            hoveredComponent = null;
+        }
+        canvasChanged();
     }
 
     public void select(List<UUID> annotations) {
         log.debug("select(annotations={})", annotations);
-        annotations.stream()
-            .map(id -> annotationsById.get(id))
-            .filter(Objects::nonNull)
-            .forEach(annotationComponent -> annotationComponent.select(true));
+        select(annotations, true);
+        canvasChanged();
 
         if (!boxEditHandler.isActive()) {
-            Platform.runLater(this::startBoxEditHandling);
+            startBoxEditHandling();
         }
     }
 
     public void deselect(List<UUID> annotations) {
         boxEditHandler.deactivateHandling();
         log.debug("deselect(annotations={})", annotations);
-        annotations.stream()
-            .map(id -> annotationsById.get(id))
-            .filter(Objects::nonNull)
-            .forEach(annotationComponent -> annotationComponent.select(false));
+        select(annotations, false);
+        canvasChanged();
+    }
+
+    private void select(List<UUID> annotations, boolean select) {
+        for (UUID id : annotations) {
+            AnnotationComponent annotationComponent = annotationsById.get(id);
+            if (annotationComponent != null) {
+                annotationComponent.select(select);
+            }
+        }
     }
 
     @Override
     protected void onNewSize() {
         log.trace("onNewSize()");
-        getChildren()
-            .filtered(child -> child instanceof AnnotationComponent)
-            .forEach(child -> {
-                AnnotationComponent annotationComponent = (AnnotationComponent) child;
-                BoundingBox absoluteBounds = annotationComponent.annotation().bounds();
-                annotationComponent.setBounds(absoluteToDisplayBounds(absoluteBounds));
-            });
+        Bounds videoViewBounds = videoViewBounds();
+        annotationCanvas.setWidth(videoViewBounds.getWidth());
+        annotationCanvas.setHeight(videoViewBounds.getHeight());
+        annotationsById.values().forEach(annotationComponent -> setBounds(annotationComponent, annotationComponent.annotation().bounds()));
+        canvasChanged();
     }
 
     /**
@@ -487,11 +630,15 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
         log.trace("setAnnotations(activeAnnotations={})", activeAnnotations);
 
         // Start with the set of all currently active ids
-        Set<UUID> allIds = activeAnnotations.stream().map(Annotation::id).collect(toSet());
+        Set<UUID> allIds = new HashSet<>(activeAnnotations.size() * 2);
+        activeAnnotations.forEach(annotation -> allIds.add(annotation.id()));
         // Remove the annotations that are not in the set of active ids
-        Set<UUID> idsToDelete = annotationsById.keySet().stream()
-            .filter(id -> !allIds.contains(id))
-            .collect(toSet());
+        Set<UUID> idsToDelete = new HashSet<>();
+        annotationsById.keySet().forEach(id -> {
+            if (!allIds.contains(id)) {
+                idsToDelete.add(id);
+            }
+        });
         log.trace("idsToDelete={}", idsToDelete);
         remove(idsToDelete);
 
@@ -509,14 +656,45 @@ public class AnnotationImageView extends ResizableImageView implements BoxEditHa
         });
     }
 
+    /**
+     * Incrementally change the current annotations.
+     * <p>
+     * Exited annotations are removed before entered annotations are added, so an annotation that was replaced by another with the same unique identifier is
+     * handled correctly.
+     *
+     * @param entered annotations that became active
+     * @param exited annotations that are no longer active
+     * @param changed annotations that remain active but have changed
+     */
+    public void updateAnnotations(List<Annotation> entered, List<Annotation> exited, List<Annotation> changed) {
+        log.trace("updateAnnotations(entered={}, exited={}, changed={})", entered, exited, changed);
+        if (!exited.isEmpty()) {
+            remove(exited.stream().map(Annotation::id).collect(toSet()));
+        }
+        entered.forEach(this::add);
+        changed.forEach(annotation -> {
+            AnnotationComponent annotationComponent = annotationsById.get(annotation.id());
+            if (annotationComponent != null) {
+                update(annotation, annotationComponent);
+            } else {
+                add(annotation);
+            }
+        });
+    }
+
     /**
      * Reset the view, removing all annotations.
      */
     public void reset() {
         log.info("reset()");
+        log.debug("componentPool={}", componentPool);
 
         getChildren().removeAll(annotationsById.values());
-        annotationsById = new HashMap<>();
+        annotationsById.values().forEach(componentPool::release);
+        annotationsById.clear();
+        spatialIndex.clear();
+        hoveredComponent = null;
+        canvasChanged();
     }
 
 }
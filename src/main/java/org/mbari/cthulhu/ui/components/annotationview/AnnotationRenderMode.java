@@ -0,0 +1,21 @@
+package org.mbari.cthulhu.ui.components.annotationview;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Enumeration of the ways an {@link AnnotationImageView} can render its annotations.
+ */
+public enum AnnotationRenderMode {
+
+    /**
+     * Each annotation is a separate group of scene graph nodes, styled with CSS.
+     */
+    @SerializedName("nodes")
+    NODES,
+
+    /**
+     * All annotations are drawn onto a single canvas layer once per pulse, only the annotation being edited uses nodes.
+     */
+    @SerializedName("canvas")
+    CANVAS
+}
@@ -1,76 +1,88 @@
 package org.mbari.cthulhu.ui.components.annotationview;
 
-import javafx.geometry.Insets;
-import javafx.scene.layout.Background;
-import javafx.scene.layout.BackgroundFill;
-import javafx.scene.layout.CornerRadii;
+import javafx.geometry.Dimension2D;
 import javafx.scene.layout.StackPane;
-import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
+import javafx.scene.text.FontSmoothingType;
 import javafx.scene.text.Text;
+import org.mbari.cthulhu.model.ConceptDictionary;
 
-import static org.mbari.cthulhu.app.CthulhuApplication.application;
+import static org.mbari.cthulhu.model.ConceptDictionary.conceptDictionary;
+import static org.mbari.cthulhu.ui.components.annotationview.CaptionStyle.captionStyle;
 
 /**
  * A component used to render a caption.
+ * <p>
+ * The style and size of the caption come from the shared {@link CaptionStyle} cache, so creating a caption involves no
+ * stylesheet and no measuring layout pass.
  */
 final class CaptionComponent extends StackPane {
 
-    private static final String STYLESHEET_RESOURCE_NAME = "/org/mbari/cthulhu/css/caption.css";
-
-    private static final String CONTAINER_STYLE_CLASS = "caption-component";
-
-    private static final String TEXT_STYLE_CLASS = "text";
-
     private final Text text;
 
+    private int captionId = ConceptDictionary.NONE;
+
     /**
      * Create a caption component.
      */
     CaptionComponent() {
-        // Unlike with a Scene, the stylesheet resource must be converted to URL form otherwise it will not be loaded
-        getStylesheets().add(getClass().getResource(STYLESHEET_RESOURCE_NAME).toExternalForm());
-
-        getStyleClass().add(CONTAINER_STYLE_CLASS);
-
         text = new Text();
-        text.getStyleClass().add(TEXT_STYLE_CLASS);
+        text.setFontSmoothingType(FontSmoothingType.LCD);
 
         applySettings();
 
         getChildren().add(text);
+    }
 
-        text.applyCss();
+    /**
+     * Set the caption.
+     *
+     * @param captionId caption identifier in the {@link ConceptDictionary}, or {@link ConceptDictionary#NONE}
+     */
+    final void setCaption(int captionId) {
+        this.captionId = captionId;
+        text.setText(conceptDictionary().concept(captionId));
+        applySize();
     }
 
     /**
-     * Set the caption text.
+     * Get the caption.
      *
-     * @param caption text
+     * @return caption identifier in the {@link ConceptDictionary}, or {@link ConceptDictionary#NONE}
      */
-    final void setCaption(String caption) {
-        text.setText(caption);
+    final int getCaption() {
+        return captionId;
     }
 
     /**
-     * Get the caption text.
+     * Get the size of this caption, including its padding and border.
      *
-     * @return text
+     * @return size
      */
-    final String getCaption() {
-        return text.getText();
+    final Dimension2D size() {
+        return captionStyle().style().size(captionId);
     }
 
     /**
      * Apply the current settings for this component.
      */
     public void applySettings() {
-        setBackground(new Background(new BackgroundFill(
-            Color.web(application().settings().annotations().captions().backgroundColour()),
-            new CornerRadii(6),
-            Insets.EMPTY
-        )));
-        text.setFont(new Font(application().settings().annotations().captions().fontSize()));
-        text.setFill(Color.web(application().settings().annotations().captions().textColour()));
+        CaptionStyle.Style style = captionStyle().style();
+        setBackground(style.background());
+        setBorder(style.border());
+        setPadding(style.insets());
+        text.setFont(style.font());
+        text.setFill(style.textFill());
+        applySize();
+    }
+
+    /**
+     * Fix the size of this component to the cached size of its caption, so it never needs to be measured.
+     */
+    private void applySize() {
+        Dimension2D size = size();
+        setMinSize(size.getWidth(), size.getHeight());
+        setPrefSize(size.getWidth(), size.getHeight());
+        setMaxSize(size.getWidth(), size.getHeight());
+        resize(size.getWidth(), size.getHeight());
     }
 }
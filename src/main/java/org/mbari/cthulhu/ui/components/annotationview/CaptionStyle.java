@@ -0,0 +1,217 @@
+package org.mbari.cthulhu.ui.components.annotationview;
+
+import javafx.geometry.Bounds;
+import javafx.geometry.Dimension2D;
+import javafx.geometry.Insets;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.Border;
+import javafx.scene.layout.BorderStroke;
+import javafx.scene.layout.BorderStrokeStyle;
+import javafx.scene.layout.BorderWidths;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import org.mbari.cthulhu.model.ConceptDictionary;
+import org.mbari.cthulhu.settings.Captions;
+
+import java.util.Arrays;
+
+import static org.mbari.cthulhu.app.CthulhuApplication.application;
+import static org.mbari.cthulhu.model.ConceptDictionary.conceptDictionary;
+
+/**
+ * Shared style and text metrics cache for annotation captions.
+ * <p>
+ * Every caption uses the same font, colours, background and border, so these immutable objects are created once per
+ * change of settings and shared by all captions - both {@link CaptionComponent} nodes and captions drawn on an
+ * {@link AnnotationCanvas}. The style is applied directly rather than via a stylesheet, so a new caption needs no
+ * stylesheet and no CSS pass to look right.
+ * <p>
+ * Most captions repeat the same few concept names, so the size of each distinct caption (including its padding and
+ * border) is measured once and then cached, creating or positioning a caption is then just an array lookup rather than
+ * a layout pass.
+ * <p>
+ * The cache is indexed by caption identifier in the {@link ConceptDictionary} within a {@link Style} - a style is built
+ * for a particular font size and set of colours, and is discarded as soon as any caption setting changes, via
+ * {@link org.mbari.cthulhu.app.CthulhuApplication#settingsChanged()}.
+ */
+final class CaptionStyle {
+
+    /**
+     * Size of the caption border.
+     */
+    static final int BORDER_SIZE = 3;
+
+    /**
+     * Horizontal padding either side of the caption text.
+     */
+    static final int PADDING = 4;
+
+    /**
+     * Corner radius of the caption background and border.
+     */
+    static final double RADIUS = 6;
+
+    private static final Color BORDER_COLOUR = Color.BLACK;
+
+    private static final Border BORDER = new Border(new BorderStroke(
+        BORDER_COLOUR,
+        BorderStrokeStyle.SOLID,
+        new CornerRadii(RADIUS),
+        new BorderWidths(BORDER_SIZE)
+    ));
+
+    private static final Insets INSETS = new Insets(0, PADDING, 0, PADDING);
+
+    private static final class Holder {
+        private static final CaptionStyle INSTANCE = new CaptionStyle();
+    }
+
+    /**
+     * Get the shared caption style cache.
+     *
+     * @return caption style cache
+     */
+    static CaptionStyle captionStyle() {
+        return Holder.INSTANCE;
+    }
+
+    private volatile Style style;
+
+    private CaptionStyle() {
+        application().settingsChanged().subscribe(settings -> style = null);
+    }
+
+    /**
+     * Get the style for the current settings.
+     *
+     * @return style
+     */
+    Style style() {
+        Captions captions = application().settings().annotations().captions();
+        Style current = style;
+        // Also checked here, as subscribers are not notified in any particular order and a caption may be re-styled before the cache hears of the change
+        if (current == null || !current.matches(captions)) {
+            current = new Style(captions);
+            style = current;
+        }
+        return current;
+    }
+
+    /**
+     * Immutable style for captions, with a cache of measured caption sizes.
+     */
+    static final class Style {
+
+        private final double fontSize;
+
+        private final String textColour;
+
+        private final String backgroundColour;
+
+        private final Font font;
+
+        private final Color textFill;
+
+        private final Color backgroundFill;
+
+        private final Background background;
+
+        private static final Dimension2D EMPTY_SIZE = new Dimension2D(0, 0);
+
+        /**
+         * Measured caption sizes, indexed by caption identifier.
+         * <p>
+         * Replaced (rather than modified) when it grows, and only ever written while holding the lock on this instance.
+         */
+        private volatile Dimension2D[] sizes = new Dimension2D[64];
+
+        /**
+         * Node used only to measure text, it is never shown.
+         */
+        private final Text measure = new Text();
+
+        private Style(Captions captions) {
+            this.fontSize = captions.fontSize();
+            this.textColour = captions.textColour();
+            this.backgroundColour = captions.backgroundColour();
+            this.font = new Font(fontSize);
+            this.textFill = Color.web(textColour);
+            this.backgroundFill = Color.web(backgroundColour);
+            this.background = new Background(new BackgroundFill(backgroundFill, new CornerRadii(RADIUS), Insets.EMPTY));
+            this.measure.setFont(font);
+        }
+
+        private boolean matches(Captions captions) {
+            return fontSize == captions.fontSize() && textColour.equals(captions.textColour()) && backgroundColour.equals(captions.backgroundColour());
+        }
+
+        Font font() {
+            return font;
+        }
+
+        Color textFill() {
+            return textFill;
+        }
+
+        Color backgroundFill() {
+            return backgroundFill;
+        }
+
+        Background background() {
+            return background;
+        }
+
+        Border border() {
+            return BORDER;
+        }
+
+        Color borderColour() {
+            return BORDER_COLOUR;
+        }
+
+        Insets insets() {
+            return INSETS;
+        }
+
+        /**
+         * Get the size of a caption, including its padding and border.
+         *
+         * @param captionId caption identifier in the {@link ConceptDictionary}, or {@link ConceptDictionary#NONE}
+         * @return size
+         */
+        Dimension2D size(int captionId) {
+            if (captionId == ConceptDictionary.NONE) {
+                return EMPTY_SIZE;
+            }
+            Dimension2D[] current = sizes;
+            Dimension2D size = captionId < current.length ? current[captionId] : null;
+            return size != null ? size : measure(captionId);
+        }
+
+        private synchronized Dimension2D measure(int captionId) {
+            Dimension2D[] current = sizes;
+            if (captionId >= current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, captionId + 1));
+            }
+            Dimension2D size = current[captionId];
+            if (size == null) {
+                size = measure(conceptDictionary().concept(captionId));
+                current[captionId] = size;
+                sizes = current;
+            }
+            return size;
+        }
+
+        private Dimension2D measure(String caption) {
+            measure.setText(caption);
+            Bounds bounds = measure.getLayoutBounds();
+            return new Dimension2D(
+                Math.ceil(bounds.getWidth()) + 2 * (PADDING + BORDER_SIZE),
+                Math.ceil(bounds.getHeight()) + 2 * BORDER_SIZE
+            );
+        }
+    }
+}
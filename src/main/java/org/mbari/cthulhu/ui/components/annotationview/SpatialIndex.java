@@ -0,0 +1,229 @@
+package org.mbari.cthulhu.ui.components.annotationview;
+
+import javafx.geometry.Bounds;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * A uniform grid spatial index of rectangular display bounds, used to hit-test annotations without walking the scene graph.
+ * <p>
+ * The display area is divided into square cells, and each item is registered in every cell its bounds overlap. A point query only needs to examine the items
+ * in a single cell, and a region query only the items in the cells the region overlaps, so the cost depends on how crowded the area around the query is rather
+ * than on the total number of items.
+ * <p>
+ * Annotations are mostly small relative to the display, and on dense frames (e.g. swarms) they are crowded together rather than nested, which suits a uniform
+ * grid better than a tree - updates are cheap and there is no rebalancing.
+ * <p>
+ * Items keep the order in which they were first added, which matches the stacking order of the corresponding components in the scene graph, so query
+ * results are returned topmost first.
+ * <p>
+ * This component is not thread-safe, it is only used on the JavaFX application thread.
+ *
+ * @param <T> type of item
+ */
+final class SpatialIndex<T> {
+
+    private final double cellSize;
+
+    private final Map<T, Entry> entries = new HashMap<>();
+
+    private final Map<Long, Set<T>> cells = new HashMap<>();
+
+    private long nextSequence;
+
+    /**
+     * Create a spatial index.
+     *
+     * @param cellSize width and height of each grid cell, in display coordinates
+     */
+    SpatialIndex(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Add an item, or move an existing item to new bounds.
+     * <p>
+     * A moved item keeps its original stacking order.
+     *
+     * @param item item
+     * @param bounds display bounds of the item
+     */
+    void put(T item, Bounds bounds) {
+        Entry existing = entries.get(item);
+        long sequence;
+        if (existing != null) {
+            if (existing.sameBounds(bounds)) {
+                return;
+            }
+            unregister(item, existing);
+            sequence = existing.sequence;
+        } else {
+            sequence = nextSequence++;
+        }
+        Entry entry = new Entry(bounds, sequence);
+        entries.put(item, entry);
+        for (int cellY = cell(entry.minY); cellY <= cell(entry.maxY); cellY++) {
+            for (int cellX = cell(entry.minX); cellX <= cell(entry.maxX); cellX++) {
+                cells.computeIfAbsent(key(cellX, cellY), key -> new HashSet<>()).add(item);
+            }
+        }
+    }
+
+    /**
+     * Remove an item.
+     *
+     * @param item item
+     */
+    void remove(T item) {
+        Entry existing = entries.remove(item);
+        if (existing != null) {
+            unregister(item, existing);
+        }
+    }
+
+    /**
+     * Remove all items.
+     */
+    void clear() {
+        entries.clear();
+        cells.clear();
+    }
+
+    /**
+     * Get the number of items.
+     *
+     * @return number of items
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Find the items whose bounds contain a point.
+     *
+     * @param x x display coordinate
+     * @param y y display coordinate
+     * @return items, topmost first
+     */
+    List<T> at(double x, double y) {
+        Set<T> candidates = cells.get(key(cell(x), cell(y)));
+        if (candidates == null) {
+            return List.of();
+        }
+        List<T> result = new ArrayList<>();
+        for (T item : candidates) {
+            if (entries.get(item).contains(x, y)) {
+                result.add(item);
+            }
+        }
+        return topmostFirst(result);
+    }
+
+    /**
+     * Find the items whose bounds intersect a region, e.g. for rubber-band selection.
+     *
+     * @param region region, in display coordinates
+     * @return items, topmost first
+     */
+    List<T> intersecting(Bounds region) {
+        Set<T> found = new HashSet<>();
+        for (int cellY = cell(region.getMinY()); cellY <= cell(region.getMaxY()); cellY++) {
+            for (int cellX = cell(region.getMinX()); cellX <= cell(region.getMaxX()); cellX++) {
+                Set<T> candidates = cells.get(key(cellX, cellY));
+                if (candidates != null) {
+                    for (T item : candidates) {
+                        if (entries.get(item).intersects(region)) {
+                            found.add(item);
+                        }
+                    }
+                }
+            }
+        }
+        return topmostFirst(new ArrayList<>(found));
+    }
+
+    private List<T> topmostFirst(List<T> items) {
+        if (items.size() > 1) {
+            items.sort(Comparator.comparingLong((T item) -> entries.get(item).sequence).reversed());
+        }
+        return items;
+    }
+
+    private void unregister(T item, Entry entry) {
+        for (int cellY = cell(entry.minY); cellY <= cell(entry.maxY); cellY++) {
+            for (int cellX = cell(entry.minX); cellX <= cell(entry.maxX); cellX++) {
+                Long key = key(cellX, cellY);
+                Set<T> cell = cells.get(key);
+                if (cell != null && cell.remove(item) && cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    private int cell(double value) {
+        return (int) Math.floor(value / cellSize);
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("cellSize", cellSize)
+            .add("items", entries.size())
+            .add("cells", cells.size())
+            .toString();
+    }
+
+    /**
+     * Bounds and stacking order of a single item.
+     * <p>
+     * The bounds are copied, rather than the {@link Bounds} instance kept, so the cells an item occupies can always be recomputed exactly on removal.
+     */
+    private static final class Entry {
+
+        private final double minX;
+
+        private final double minY;
+
+        private final double maxX;
+
+        private final double maxY;
+
+        private final long sequence;
+
+        private Entry(Bounds bounds, long sequence) {
+            this.minX = bounds.getMinX();
+            this.minY = bounds.getMinY();
+            this.maxX = bounds.getMaxX();
+            this.maxY = bounds.getMaxY();
+            this.sequence = sequence;
+        }
+
+        private boolean contains(double x, double y) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY;
+        }
+
+        private boolean intersects(Bounds region) {
+            return region.getMaxX() >= minX && region.getMinX() <= maxX && region.getMaxY() >= minY && region.getMinY() <= maxY;
+        }
+
+        private boolean sameBounds(Bounds bounds) {
+            return minX == bounds.getMinX() && minY == bounds.getMinY() && maxX == bounds.getMaxX() && maxY == bounds.getMaxY();
+        }
+    }
+}
@@ -76,7 +76,12 @@ public class ResizableImageView extends Pane {
      * Register the event handlers necessary to react to changes in component size.
      */
     private void registerEventHandlers() {
-        imageView.imageProperty().addListener((observableValue, oldValue, newValue) -> imageChanged());
+        imageView.imageProperty().addListener((observableValue, oldValue, newValue) -> {
+            // The video surface may swap between images of the same size on every frame, only a change in size needs a new layout
+            if (oldValue == null || newValue == null || oldValue.getWidth() != newValue.getWidth() || oldValue.getHeight() != newValue.getHeight()) {
+                imageChanged();
+            }
+        });
         imageView.fitWidthProperty().addListener((observableValue, oldValue, newValue) -> sizeChanged());
         imageView.fitHeightProperty().addListener((observableValue, oldValue, newValue) -> sizeChanged());
     }
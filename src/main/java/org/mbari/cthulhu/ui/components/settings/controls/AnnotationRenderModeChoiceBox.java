@@ -0,0 +1,30 @@
+package org.mbari.cthulhu.ui.components.settings.controls;
+
+import javafx.scene.control.ChoiceBox;
+import javafx.util.StringConverter;
+import org.mbari.cthulhu.ui.components.annotationview.AnnotationRenderMode;
+
+/**
+ * A custom choice-box for selecting how annotations are rendered (scene graph nodes or a canvas).
+ */
+final public class AnnotationRenderModeChoiceBox extends ChoiceBox<AnnotationRenderMode> {
+
+    public AnnotationRenderModeChoiceBox() {
+        setConverter(new AnnotationRenderModeStringConverter());
+
+        getItems().add(AnnotationRenderMode.NODES);
+        getItems().add(AnnotationRenderMode.CANVAS);
+    }
+
+    private static final class AnnotationRenderModeStringConverter extends StringConverter<AnnotationRenderMode> {
+        @Override
+        public String toString(AnnotationRenderMode renderMode) {
+            return renderMode.name().toLowerCase();
+        }
+
+        @Override
+        public AnnotationRenderMode fromString(String s) {
+            return AnnotationRenderMode.valueOf(s.toUpperCase());
+        }
+    }
+}
@@ -8,6 +8,7 @@ import javafx.scene.paint.Color;
 import org.mbari.cthulhu.settings.Settings;
 import org.mbari.cthulhu.ui.components.settings.SettingsPage;
 import org.mbari.cthulhu.ui.components.settings.SettingsValidationException;
+import org.mbari.cthulhu.ui.components.settings.controls.AnnotationRenderModeChoiceBox;
 import org.mbari.cthulhu.ui.components.settings.controls.HelpTextLabel;
 import org.mbari.cthulhu.ui.components.settings.controls.ItemLabel;
 import org.mbari.cthulhu.ui.components.settings.controls.SectionDivider;
@@ -38,6 +39,7 @@ final public class AnnotationSettingsPane extends SettingsPage {
     private final ColorPicker displayBorderColourPicker;
     private final TextField timeWindowTextField;
     private final ColorPicker decayBorderColourPicker;
+    private final AnnotationRenderModeChoiceBox renderModeChoiceBox;
     private final TextField selectionBorderSizeTextField;
     private final ColorPicker selectionBorderColourPicker;
     private final TextField captionFontSizeTextField;
@@ -67,6 +69,8 @@ final public class AnnotationSettingsPane extends SettingsPage {
 
         decayBorderColourPicker = new ColorPicker();
 
+        renderModeChoiceBox = new AnnotationRenderModeChoiceBox();
+
         selectionBorderSizeTextField = new TextField();
         selectionBorderSizeTextField.setPrefColumnCount(3);
         selectionBorderColourPicker = new ColorPicker();
@@ -114,6 +118,9 @@ final public class AnnotationSettingsPane extends SettingsPage {
         displayPane.add(new ItemLabel("Decay Colour:"), "width 100::");
         displayPane.add(decayBorderColourPicker);
         displayPane.add(new HelpTextLabel("millis"), "skip, span 3");
+        displayPane.add(new ItemLabel("Render Mode:"), "width 120::");
+        displayPane.add(renderModeChoiceBox, "wrap");
+        displayPane.add(new HelpTextLabel("A canvas is faster with many annotations on screen"), "skip, span 3");
 
         contentPane.add(displayPane);
 
@@ -154,6 +161,7 @@ final public class AnnotationSettingsPane extends SettingsPage {
         displayBorderColourPicker.setValue(Color.web(settings.annotations().display().borderColour()));
         timeWindowTextField.setText(Integer.toString(settings.annotations().display().timeWindowMillis()));
         decayBorderColourPicker.setValue(Color.web(settings.annotations().display().decayBorderColour()));
+        renderModeChoiceBox.setValue(settings.annotations().display().renderMode());
         selectionBorderSizeTextField.setText(Integer.toString(settings.annotations().selection().borderSize()));
         selectionBorderColourPicker.setValue(Color.web(settings.annotations().selection().borderColour()));
         captionFontSizeTextField.setText(Double.toString(settings.annotations().captions().fontSize()));
@@ -174,6 +182,7 @@ final public class AnnotationSettingsPane extends SettingsPage {
         settings.annotations().display().borderColour(colorToWebString(displayBorderColourPicker.getValue()));
         settings.annotations().display().timeWindowMillis(parseInt(timeWindowTextField.getText()));
         settings.annotations().display().decayBorderColour(colorToWebString(decayBorderColourPicker.getValue()));
+        settings.annotations().display().renderMode(renderModeChoiceBox.getValue());
         settings.annotations().selection().borderSize(parseInt(selectionBorderSizeTextField.getText()));
         settings.annotations().selection().borderColour(colorToWebString(selectionBorderColourPicker.getValue()));
         settings.annotations().captions().fontSize(parseDouble(captionFontSizeTextField.getText()));
@@ -204,6 +213,8 @@ final public class AnnotationSettingsPane extends SettingsPage {
 
         validateRequired(decayBorderColourPicker, "Decay border colour is required.");
 
+        validateRequired(renderModeChoiceBox, "Render mode is required.");
+
         validateRequired(selectionBorderSizeTextField, "Selection border size is required.");
         validateRequired(selectionBorderColourPicker, "Selection border colour is required.");
 
@@ -32,9 +32,7 @@ final public class MediaPlayerSettingsPane extends SettingsPage {
 
     private final TextField longSkipTextField;
 
-    private final TextField skipThrottleTextField;
-
-    private final TextField scrubThrottleTextField;
+    private final TextField thumbnailStrideTextField;
 
     public MediaPlayerSettingsPane() {
         super(HEADING_TEXT, PROMPT_TEXT);
@@ -47,11 +45,8 @@ final public class MediaPlayerSettingsPane extends SettingsPage {
         longSkipTextField = new TextField();
         longSkipTextField.setPrefColumnCount(5);
 
-        skipThrottleTextField = new TextField();
-        skipThrottleTextField.setPrefColumnCount(5);
-
-        scrubThrottleTextField = new TextField();
-        scrubThrottleTextField.setPrefColumnCount(5);
+        thumbnailStrideTextField = new TextField();
+        thumbnailStrideTextField.setPrefColumnCount(5);
 
         setContent(createContent());
     }
@@ -75,21 +70,18 @@ final public class MediaPlayerSettingsPane extends SettingsPage {
         skipPane.add(new ItemLabel("Long skip:"), "width 100::");
         skipPane.add(longSkipTextField);
         skipPane.add(new HelpTextLabel("milliseconds"));
-        skipPane.add(new ItemLabel("Throttle:"), "width 100::");
-        skipPane.add(skipThrottleTextField);
-        skipPane.add(new HelpTextLabel("milliseconds"));
         skipPane.add(new HelpTextLabel("Skips are approximate any may not be frame-perfect"), "skip, span 2");
         contentPane.add(skipPane);
 
-        contentPane.add(new SectionDivider("Scrub"));
+        contentPane.add(new SectionDivider("Thumbnails"));
 
-        MigPane scrubPane = new MigPane("ins 0 12 0 0, wrap 3, gapy 12", "[][]8[]", "");
-        scrubPane.add(new ItemLabel("Throttle:"), "width 100::");
-        scrubPane.add(scrubThrottleTextField);
-        scrubPane.add(new HelpTextLabel("milliseconds"), "grow");
-        scrubPane.add(new HelpTextLabel("Too short a throttle can cause playback glitches"), "skip, span 2");
+        MigPane thumbnailPane = new MigPane("ins 0 12 0 0, wrap 3, gapy 12", "[][]8[]", "");
+        thumbnailPane.add(new ItemLabel("Stride:"), "width 100::");
+        thumbnailPane.add(thumbnailStrideTextField);
+        thumbnailPane.add(new HelpTextLabel("milliseconds"), "grow");
+        thumbnailPane.add(new HelpTextLabel("Previews shown while scrubbing, zero (the default) to disable"), "skip, span 2");
 
-        contentPane.add(scrubPane);
+        contentPane.add(thumbnailPane);
 
         return contentPane;
     }
@@ -100,8 +92,7 @@ final public class MediaPlayerSettingsPane extends SettingsPage {
         defaultTimeDisplayChoiceBox.setValue(settings.mediaPlayer().timeDisplay());
         normalSkipTextField.setText(Integer.toString(settings.mediaPlayer().normalSkip()));
         longSkipTextField.setText(Integer.toString(settings.mediaPlayer().longSkip()));
-        skipThrottleTextField.setText(Integer.toString(settings.mediaPlayer().skipThrottle()));
-        scrubThrottleTextField.setText(Integer.toString(settings.mediaPlayer().scrubThrottle()));
+        thumbnailStrideTextField.setText(Integer.toString(settings.mediaPlayer().thumbnailStride()));
     }
 
     @Override
@@ -110,8 +101,7 @@ final public class MediaPlayerSettingsPane extends SettingsPage {
         settings.mediaPlayer().timeDisplay(defaultTimeDisplayChoiceBox.getValue());
         settings.mediaPlayer().normalSkip(parseInt(normalSkipTextField.getText()));
         settings.mediaPlayer().longSkip(parseInt(longSkipTextField.getText()));
-        settings.mediaPlayer().skipThrottle(parseInt(skipThrottleTextField.getText()));
-        settings.mediaPlayer().scrubThrottle(parseInt(scrubThrottleTextField.getText()));
+        settings.mediaPlayer().thumbnailStride(parseInt(thumbnailStrideTextField.getText()));
     }
 
     @Override
@@ -124,10 +114,7 @@ final public class MediaPlayerSettingsPane extends SettingsPage {
         validateRequired(longSkipTextField, "Long skip time is required.");
         validateInteger(longSkipTextField, "Invalid long skip time value: %s.");
 
-        validateRequired(skipThrottleTextField, "Skip throttle time is required.");
-        validateInteger(skipThrottleTextField, "Invalid skip throttle time: %s.");
-
-        validateRequired(scrubThrottleTextField, "Scrub throttle time is required.");
-        validateInteger(scrubThrottleTextField, "Invalid scrub throttle time: %s.");
+        validateRequired(thumbnailStrideTextField, "Thumbnail stride is required.");
+        validateInteger(thumbnailStrideTextField, "Invalid thumbnail stride: %s.");
     }
 }
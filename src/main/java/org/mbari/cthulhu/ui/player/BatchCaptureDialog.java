@@ -0,0 +1,131 @@
+package org.mbari.cthulhu.ui.player;
+
+import io.reactivex.rxjava3.disposables.Disposable;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.TextInputDialog;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.Window;
+import org.mbari.cthulhu.capture.CaptureProgress;
+import org.mbari.cthulhu.capture.FrameCaptureBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Optional;
+
+import static org.mbari.cthulhu.app.CthulhuApplication.application;
+
+/**
+ * User interface to capture a batch of frames, at a regular interval over the whole length of the media open in a player component, to a chosen directory.
+ * <p>
+ * The capture runs in the background, on a separate headless media player, so the player component can still be used meanwhile. Progress is shown in a
+ * dialog, closing the dialog before the capture has finished cancels it.
+ */
+final class BatchCaptureDialog {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchCaptureDialog.class);
+
+    private static final String TITLE = "Capture Frames";
+
+    private static final String DEFAULT_INTERVAL = "1.0";
+
+    private final PlayerComponent playerComponent;
+
+    /**
+     * Create a batch capture dialog.
+     *
+     * @param playerComponent player component containing the media to capture frames from
+     */
+    BatchCaptureDialog(PlayerComponent playerComponent) {
+        this.playerComponent = playerComponent;
+    }
+
+    /**
+     * Ask for the capture interval and output directory, then start the capture.
+     *
+     * @param owner owner window for the dialogs
+     */
+    void show(Window owner) {
+        log.debug("show()");
+
+        TextInputDialog intervalDialog = new TextInputDialog(DEFAULT_INTERVAL);
+        intervalDialog.initOwner(owner);
+        intervalDialog.setTitle(TITLE);
+        intervalDialog.setHeaderText("Capture a frame at a regular interval over the whole video");
+        intervalDialog.setContentText("Interval (seconds):");
+        Optional<String> interval = intervalDialog.showAndWait();
+        if (interval.isEmpty()) {
+            return;
+        }
+        long stride = stride(interval.get());
+        if (stride <= 0) {
+            Alert alert = new Alert(Alert.AlertType.ERROR, "The interval must be a positive number of seconds.");
+            alert.initOwner(owner);
+            alert.setTitle(TITLE);
+            alert.showAndWait();
+            return;
+        }
+
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Capture Frames To");
+        File directory = directoryChooser.showDialog(owner);
+        if (directory == null) {
+            return;
+        }
+
+        start(FrameCaptureBatch.everyMillis(stride, directory), directory, owner);
+    }
+
+    private void start(FrameCaptureBatch batch, File directory, Window owner) {
+        log.debug("start(batch={})", batch);
+
+        ProgressBar progressBar = new ProgressBar(0);
+        progressBar.setMaxWidth(Double.MAX_VALUE);
+        Label status = new Label("Starting...");
+
+        Alert progressDialog = new Alert(Alert.AlertType.INFORMATION);
+        progressDialog.initOwner(owner);
+        progressDialog.setTitle(TITLE);
+        progressDialog.setHeaderText(String.format("Capturing frames to %s", directory));
+        progressDialog.getDialogPane().setContent(new VBox(8, progressBar, status));
+        progressDialog.getButtonTypes().setAll(ButtonType.CANCEL);
+
+        Disposable subscription = application().captureFrames(playerComponent.uuid(), batch).subscribe(
+            progress -> Platform.runLater(() -> {
+                progressBar.setProgress(progress.total() > 0 ? (double) (progress.completed() + progress.failed()) / progress.total() : 1);
+                status.setText(describe(progress));
+            }),
+            error -> Platform.runLater(() -> {
+                log.error("Batch frame capture failed", error);
+                progressDialog.setAlertType(Alert.AlertType.ERROR);
+                status.setText(String.format("Failed: %s", error.getMessage()));
+                progressDialog.getButtonTypes().setAll(ButtonType.CLOSE);
+            }),
+            () -> Platform.runLater(() -> {
+                progressBar.setProgress(1);
+                progressDialog.getButtonTypes().setAll(ButtonType.CLOSE);
+            })
+        );
+        // Has no effect if the capture already finished
+        progressDialog.setOnHidden(event -> subscription.dispose());
+        progressDialog.show();
+    }
+
+    private static String describe(CaptureProgress progress) {
+        String description = String.format("Captured %d of %d frames", progress.completed(), progress.total());
+        return progress.failed() > 0 ? String.format("%s, %d failed", description, progress.failed()) : description;
+    }
+
+    private static long stride(String interval) {
+        try {
+            return Math.round(Double.parseDouble(interval.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.mbari.cthulhu.ui.player;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Component that tracks whether the video surface is showing the result of the most recent seek.
+ * <p>
+ * The native media player seeks asynchronously, so the frame on the video surface just after a seek was requested is still the frame from before the seek.
+ * Anything that must observe the result of a seek (e.g. a frame capture) waits for a frame to be delivered within a tolerance of the seek target instead.
+ * <p>
+ * If no such frame arrives within a timeout the wait completes anyway - seeking to the frame that is already displayed produces no new frame at all.
+ */
+final class FrameArrival {
+
+    private static final Logger log = LoggerFactory.getLogger(FrameArrival.class);
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * Longest time to wait for a frame after a seek, in milliseconds.
+     */
+    static final long TIMEOUT = 2000;
+
+    private final long timeout;
+
+    /**
+     * Target of the most recent seek, or {@link #NONE} once its frame has arrived.
+     */
+    private long targetTime = NONE;
+
+    private long tolerance;
+
+    /**
+     * Completed when a frame for the most recent seek arrives.
+     */
+    private CompletableFuture<Void> arrived = CompletableFuture.completedFuture(null);
+
+    /**
+     * Create a frame arrival tracker with the default timeout.
+     */
+    FrameArrival() {
+        this(TIMEOUT);
+    }
+
+    /**
+     * Create a frame arrival tracker.
+     *
+     * @param timeout longest time to wait for a frame after a seek, in milliseconds
+     */
+    FrameArrival(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Notification that a seek was requested.
+     *
+     * @param time target time, in milliseconds
+     * @param tolerance largest difference between the target and the media time of a frame for the frame to count as the result of the seek, in milliseconds
+     */
+    synchronized void seeking(long time, long tolerance) {
+        log.trace("seeking(time={}, tolerance={})", time, tolerance);
+        targetTime = time;
+        this.tolerance = tolerance;
+        if (arrived.isDone()) {
+            arrived = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * Notification that the video surface has been given a new frame.
+     * <p>
+     * Invoked on a native media player thread.
+     *
+     * @param mediaTime estimated media time of the frame, or {@link Long#MIN_VALUE} if it is not known
+     */
+    void frameDelivered(long mediaTime) {
+        CompletableFuture<Void> completed;
+        synchronized (this) {
+            if (targetTime == NONE || mediaTime == NONE || Math.abs(mediaTime - targetTime) > tolerance) {
+                return;
+            }
+            targetTime = NONE;
+            completed = arrived;
+        }
+        // Completed outside the lock, dependent actions run on this thread
+        completed.complete(null);
+    }
+
+    /**
+     * Wait for the video surface to show the result of the most recent seek.
+     *
+     * @return future completed when a frame for the most recent seek has arrived, or the timeout has elapsed; already completed if there is no seek
+     *         outstanding
+     */
+    synchronized CompletableFuture<Void> await() {
+        if (arrived.isDone()) {
+            return arrived;
+        }
+        long awaitedTime = targetTime;
+        CompletableFuture<Void> pending = arrived;
+        return pending.copy()
+            .completeOnTimeout(null, timeout, TimeUnit.MILLISECONDS)
+            .whenComplete((result, error) -> {
+                if (!pending.isDone()) {
+                    log.debug("No frame arrived within {}ms of seeking to {}", timeout, awaitedTime);
+                }
+            });
+    }
+
+    /**
+     * Abandon any outstanding seek, e.g. when new media is played, releasing anything waiting for it.
+     */
+    void reset() {
+        CompletableFuture<Void> completed;
+        synchronized (this) {
+            targetTime = NONE;
+            completed = arrived;
+        }
+        completed.complete(null);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return toStringHelper(this)
+            .add("targetTime", targetTime)
+            .add("arrived", arrived.isDone())
+            .toString();
+    }
+}
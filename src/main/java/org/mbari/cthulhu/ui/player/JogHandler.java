@@ -5,8 +5,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.caprica.vlcj.player.base.MediaPlayer;
 
-import java.util.concurrent.TimeUnit;
-
 import static org.mbari.cthulhu.app.CthulhuApplication.application;
 
 /**
@@ -14,12 +12,14 @@ import static org.mbari.cthulhu.app.CthulhuApplication.application;
  * <p>
  * There are various challenges to be addressed to implement an optimal jogging strategy.
  * <p>
- * First, for repeated jog inputs a sample strategy is used otherwise the native media player can get overwhelmed with
- * requests to adjust the time and cause a loss of synchronisation with the video decoding.
+ * First, for repeated jog inputs the native media player can get overwhelmed with requests to adjust the time and
+ * cause a loss of synchronisation with the video decoding.
  * <p>
- * Even with this sampling it is unfortunately still possible, although much less likely, to lose that synchronisation.
+ * Jogs are therefore dispatched via the player component's {@link SeekScheduler}, which only sends a new seek once the
+ * previous one has produced its frame. Each jog is applied relative to the time the player is already heading for, so
+ * rapid repeated jogs accumulate rather than being lost, but only the newest target is ever actually decoded.
  * <p>
- * If that happens, the media must be played to resolve it.
+ * Should synchronisation still be lost, the media must be played to resolve it.
  * <p>
  * Second, frame-perfect addressing (for the short frame skips) simply is not possible so an approximation is required.
  * <p>
@@ -31,7 +31,10 @@ import static org.mbari.cthulhu.app.CthulhuApplication.application;
  * milliseconds per frame.
  * <p>
  * In practice, this seems to work out better than trying to implement direct frame addressing and "snapping" to the
- * nearest frame.
+ * nearest frame, unless the exact frame times are known.
+ * <p>
+ * Where the media has a frame index (built from the container metadata) the short frame skips instead move to the
+ * exact time of the next or previous frame, so every short skip decodes a new frame.
  */
 final class JogHandler {
 
@@ -40,18 +43,17 @@ final class JogHandler {
     /**
      * Link a source of observable jog events to a player component.
      * <p>
-     * Jog events will be throttled and translated to various playback time adjustments.
+     * Jog events will be translated to various playback time adjustments, paced to match the decoder.
      *
      * @param playerComponent player component
      * @param jogObservable source of jog events
      */
     static void installJogHandler(PlayerComponent playerComponent, Observable<Jog> jogObservable) {
         jogObservable
-            .sample(application().settings().mediaPlayer().skipThrottle(), TimeUnit.MILLISECONDS)
             .subscribe(jog -> {
                 log.trace("jog={}", jog);
                 MediaPlayer mediaPlayer = playerComponent.mediaPlayer();
-                long time = mediaPlayer.status().time();
+                long time = playerComponent.seekTargetTime();
                 switch (jog) {
                     case START:
                         time = 0;
@@ -63,10 +65,10 @@ final class JogHandler {
                         time = Math.max(0, time - application().settings().mediaPlayer().normalSkip());
                         break;
                     case SHORT_BACK:
-                        time = Math.max(0, time - playerComponent.frameTime());
+                        time = Math.max(0, playerComponent.previousFrameTime(time));
                         break;
                     case SHORT_SKIP:
-                        time = Math.min(mediaPlayer.status().length(), time + playerComponent.frameTime());
+                        time = Math.min(mediaPlayer.status().length(), playerComponent.nextFrameTime(time));
                         break;
                     case SKIP:
                         time = Math.min(mediaPlayer.status().length(), time + application().settings().mediaPlayer().normalSkip());
@@ -75,7 +77,7 @@ final class JogHandler {
                         time = Math.min(mediaPlayer.status().length(), time + application().settings().mediaPlayer().longSkip());
                         break;
                 }
-                playerComponent.setTime(time);
+                playerComponent.seek(time);
             });
     }
 
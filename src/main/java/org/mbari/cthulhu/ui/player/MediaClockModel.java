@@ -0,0 +1,213 @@
+package org.mbari.cthulhu.ui.player;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Model of the relationship between system time and media time for a playing media player.
+ * <p>
+ * The native media player reports its time irregularly and with some jitter, with a granularity that depends on the decoder in use. This model fits a line
+ * (an offset and a rate) through the most recent (system time, media time) samples with a small least-squares regression:
+ * <ul>
+ *     <li>the commanded playback rate is used as a prior for the fitted rate, so a few noisy samples can not pull the rate far away from what was asked for,
+ *     and with only a single sample the commanded rate is used as-is;</li>
+ *     <li>when a new fit disagrees with the time currently being reported, the reported time slews smoothly towards the new fit rather than jumping to it;</li>
+ *     <li>a sample that is wildly inconsistent with the model (e.g. after a seek) restarts the model at that sample.</li>
+ * </ul>
+ * The reported time never moves backwards while playing forwards.
+ * <p>
+ * System times are given in nanoseconds (from {@link System#nanoTime()}), media times in milliseconds.
+ * <p>
+ * This class is not thread-safe, callers must synchronise access.
+ */
+final class MediaClockModel {
+
+    /**
+     * Number of recent samples used for the fit.
+     */
+    private static final int SAMPLE_COUNT = 8;
+
+    /**
+     * Weight of the commanded rate prior, expressed as an equivalent sum of squared system time deviations in milliseconds squared.
+     * <p>
+     * Samples spanning around a second outweigh the prior, samples spanning only a few frames do not.
+     */
+    private static final double PRIOR_WEIGHT = 250_000;
+
+    /**
+     * Deviation of a sample from the model beyond which the sample is treated as a discontinuity, in milliseconds.
+     */
+    private static final double DISCONTINUITY_THRESHOLD = 1000;
+
+    /**
+     * Time taken to slew from the previously reported time to a new fit, in milliseconds of system time.
+     */
+    private static final double SLEW_PERIOD = 250;
+
+    /**
+     * Fitted rate may not deviate from the commanded rate by more than this factor.
+     */
+    private static final double MAX_RATE_DEVIATION = 1.5;
+
+    private final long[] sampleNanos = new long[SAMPLE_COUNT];
+
+    private final long[] sampleTimes = new long[SAMPLE_COUNT];
+
+    private int sampleCount;
+
+    private int nextSample;
+
+    /**
+     * Rate at which the media was asked to play.
+     */
+    private double commandedRate = 1.0;
+
+    /**
+     * Fitted line, media time (milliseconds) at {@link #fitNanos}, and rate.
+     */
+    private long fitNanos;
+
+    private double fitTime;
+
+    private double fitRate = 1.0;
+
+    /**
+     * Difference between the previously reported time and the new fit at the time of the fit, decays to zero over the slew period.
+     */
+    private double slewOffset;
+
+    /**
+     * Most recently reported time.
+     */
+    private long lastReported = Long.MIN_VALUE;
+
+    /**
+     * Set the commanded playback rate.
+     *
+     * @param rate rate, e.g. 1.0 for normal speed
+     * @param nanoTime system time at which the rate was changed
+     */
+    void rate(double rate, long nanoTime) {
+        if (rate > 0 && rate != commandedRate) {
+            // Previous samples were taken at a different rate, restart from the current estimate
+            boolean restart = sampleCount > 0;
+            long mediaTime = restart ? time(nanoTime) : 0;
+            this.commandedRate = rate;
+            if (restart) {
+                reset(nanoTime, mediaTime);
+            }
+        }
+    }
+
+    /**
+     * Restart the model at a known time, e.g. after a seek or when playback resumes.
+     * <p>
+     * The next reported time is exactly the given time.
+     *
+     * @param nanoTime system time
+     * @param mediaTime media time
+     */
+    void reset(long nanoTime, long mediaTime) {
+        sampleCount = 0;
+        nextSample = 0;
+        slewOffset = 0;
+        lastReported = Long.MIN_VALUE;
+        addSample(nanoTime, mediaTime);
+        fitNanos = nanoTime;
+        fitTime = mediaTime;
+        fitRate = commandedRate;
+    }
+
+    /**
+     * Add a sample of the media time reported by the native media player.
+     *
+     * @param nanoTime system time at which the media time was reported
+     * @param mediaTime reported media time
+     */
+    void sample(long nanoTime, long mediaTime) {
+        if (sampleCount == 0 || Math.abs(mediaTime - line(nanoTime)) > DISCONTINUITY_THRESHOLD * Math.max(1, commandedRate)) {
+            reset(nanoTime, mediaTime);
+            return;
+        }
+        double current = time(nanoTime);
+        addSample(nanoTime, mediaTime);
+        fit(nanoTime);
+        slewOffset = current - fitTime;
+    }
+
+    /**
+     * Get the media time at a particular system time.
+     *
+     * @param nanoTime system time
+     * @return media time
+     */
+    long time(long nanoTime) {
+        long time = Math.round(line(nanoTime) + slew(nanoTime));
+        if (time < lastReported) {
+            time = lastReported;
+        }
+        lastReported = time;
+        return time;
+    }
+
+    private double line(long nanoTime) {
+        return fitTime + fitRate * millis(nanoTime - fitNanos);
+    }
+
+    private double slew(long nanoTime) {
+        double elapsed = millis(nanoTime - fitNanos);
+        return elapsed >= SLEW_PERIOD || elapsed < 0 ? 0 : slewOffset * (1 - elapsed / SLEW_PERIOD);
+    }
+
+    private void addSample(long nanoTime, long mediaTime) {
+        sampleNanos[nextSample] = nanoTime;
+        sampleTimes[nextSample] = mediaTime;
+        nextSample = (nextSample + 1) % SAMPLE_COUNT;
+        if (sampleCount < SAMPLE_COUNT) {
+            sampleCount++;
+        }
+    }
+
+    /**
+     * Fit a line through the samples, with the commanded rate as a prior for the slope, and re-base it at a particular system time.
+     *
+     * @param nanoTime system time at which to re-base the line
+     */
+    private void fit(long nanoTime) {
+        // Work relative to the re-base time to keep the numbers small
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            meanX += millis(sampleNanos[i] - nanoTime);
+            meanY += sampleTimes[i];
+        }
+        meanX /= sampleCount;
+        meanY /= sampleCount;
+        double sxx = 0;
+        double sxy = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            double dx = millis(sampleNanos[i] - nanoTime) - meanX;
+            sxx += dx * dx;
+            sxy += dx * (sampleTimes[i] - meanY);
+        }
+        double rate = (sxy + PRIOR_WEIGHT * commandedRate) / (sxx + PRIOR_WEIGHT);
+        rate = Math.max(commandedRate / MAX_RATE_DEVIATION, Math.min(commandedRate * MAX_RATE_DEVIATION, rate));
+        fitRate = rate;
+        fitTime = meanY - rate * meanX;
+        fitNanos = nanoTime;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("commandedRate", commandedRate)
+            .add("fitRate", fitRate)
+            .add("samples", sampleCount)
+            .toString();
+    }
+}
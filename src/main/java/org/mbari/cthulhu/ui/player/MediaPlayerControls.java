@@ -1,5 +1,7 @@
 package org.mbari.cthulhu.ui.player;
 
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
 import org.mbari.cthulhu.ui.components.mediaplayer.FrameCaptureButton;
 import org.mbari.cthulhu.ui.components.mediaplayer.PlayPauseButton;
 import org.tbee.javafx.scene.layout.MigPane;
@@ -37,6 +39,10 @@ final class MediaPlayerControls extends MigPane {
         frameCaptureButton = new FrameCaptureButton(playerComponent.mediaPlayer());
         timelineComponent = new TimelineComponent(playerComponent);
 
+        MenuItem captureFramesMenuItem = new MenuItem("Capture Frames...");
+        captureFramesMenuItem.setOnAction(event -> new BatchCaptureDialog(playerComponent).show(getScene().getWindow()));
+        frameCaptureButton.setContextMenu(new ContextMenu(captureFramesMenuItem));
+
         add(volumeControls);
         add(playPauseButton);
         add(frameCaptureButton, "wrap");
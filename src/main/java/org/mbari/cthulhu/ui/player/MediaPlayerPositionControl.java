@@ -4,14 +4,14 @@ import io.reactivex.rxjava3.subjects.PublishSubject;
 import javafx.application.Platform;
 import javafx.geometry.Orientation;
 import javafx.scene.control.Slider;
+import org.mbari.cthulhu.thumbnails.ThumbnailCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.caprica.vlcj.player.base.MediaPlayer;
 import uk.co.caprica.vlcj.player.base.MediaPlayerEventAdapter;
 
-import java.util.concurrent.TimeUnit;
-
 import static org.mbari.cthulhu.app.CthulhuApplication.application;
+import static org.mbari.cthulhu.thumbnails.ThumbnailCache.thumbnailCache;
 
 /**
  * A slider component used to indicate, and change, the current playback position for a media player.
@@ -27,8 +27,8 @@ import static org.mbari.cthulhu.app.CthulhuApplication.application;
  * <p>
  * A click either side of the thumb immediately sets the playback position to that value.
  * <p>
- * Dragging the slider via its thumb generates multiple position changed events which are throttled before being used
- * to set the new playback position.
+ * Dragging the slider via its thumb generates multiple position changed events which are paced by the player
+ * component's {@link SeekScheduler} before being used to set the new playback position.
  * <p>
  * Implementation note on fast seeking, especially while paused:
  * <p>
@@ -38,8 +38,12 @@ import static org.mbari.cthulhu.app.CthulhuApplication.application;
  * <p>
  * Sadly this is unpredictable (it does not always happen) and it can not be detected when it does happen.
  * <p>
- * Throttling the rate at which seek events are dispatched to the native media player seems to help mitigate, but not
- * entirely eradicate, this problem.
+ * Only dispatching a new seek once the previous one has produced its frame, with intermediate positions dropped, helps
+ * mitigate this problem without the fixed delay of a throttle.
+ * <p>
+ * Better still, when a thumbnail from the {@link ThumbnailCache} is available for the position being dragged to, the
+ * thumbnail is previewed instead and no seek is dispatched at all until the drag ends. Thumbnails are also previewed
+ * when hovering over the slider.
  */
 final class MediaPlayerPositionControl extends Slider {
 
@@ -50,18 +54,35 @@ final class MediaPlayerPositionControl extends Slider {
     private final PlayerComponent playerComponent;
 
     /**
-     * Observable used to throttle media player seek requests.
+     * Observable used to pass slider positions on as media player seek requests.
      */
     private final PublishSubject<Float> seekRequests = PublishSubject.create();
 
+    /**
+     * Latest position reported by the native media player, applied once per JavaFX pulse.
+     */
+    private final RenderCoordinator.FloatSlot controlPosition;
+
     /**
      * Flag if external position events (from the native media player) should be temporarily ignored.
      * <p>
-     * This is used in addition to relying on {@link #isValueChanging()} to prevent dispatching redundant position
-     * change tasks via {@link Platform#runLater(Runnable)}.
+     * This is used in addition to relying on {@link #isValueChanging()} to prevent queuing redundant position
+     * changes with the {@link RenderCoordinator}.
      */
     private volatile boolean ignoreExternalEvents = false;
 
+    private final ThumbnailPreview thumbnailPreview = new ThumbnailPreview();
+
+    /**
+     * Media resource locator of the current media, or <code>null</code> if there is none.
+     */
+    private String mrl;
+
+    /**
+     * Length of the current media.
+     */
+    private long length;
+
     /**
      * Create a media player slider component.
      *
@@ -69,6 +90,7 @@ final class MediaPlayerPositionControl extends Slider {
      */
     MediaPlayerPositionControl(PlayerComponent playerComponent) {
         this.playerComponent = playerComponent;
+        this.controlPosition = playerComponent.renderCoordinator().floatSlot(this::showControlPosition);
 
         getStyleClass().add(STYLE_CLASS_NAME);
 
@@ -99,19 +121,24 @@ final class MediaPlayerPositionControl extends Slider {
      *     when the mouse is subsequently released, stop ignoring external media player events;
      *   </li>
      *   <li>
-     *     for actually translating the position events to media player seek requests, a throttle is used.
+     *     for actually translating the position events to media player seek requests, the seek scheduler is used.
      *   </li>
      * </ul>
      */
     private void registerSliderEventHandlers() {
         valueChangingProperty().addListener((observableValue, oldValue, newValue) -> {
             if (!newValue) {
+                thumbnailPreview.hide();
                 newPosition((float) getValue());
                 seekRequests.onNext((float) getValue()); // this listener may not actually be needed
             }
         });
         valueProperty().addListener((observable, oldValue, newValue) -> {
             if (isValueChanging()) {
+                if (showThumbnail(newValue.doubleValue() * getWidth(), newValue.doubleValue())) {
+                    // The thumbnail stands in for the frame, seeking is deferred until the drag ends
+                    return;
+                }
                 newPosition((float) getValue());
                 seekRequests.onNext(newValue.floatValue());
             }
@@ -126,9 +153,18 @@ final class MediaPlayerPositionControl extends Slider {
             ignoreExternalEvents = false;
             setValueChanging(false);
         });
+        setOnMouseMoved(mouseEvent -> {
+            if (!showThumbnail(mouseEvent.getX(), mouseEvent.getX() / getWidth())) {
+                thumbnailPreview.hide();
+            }
+        });
+        setOnMouseExited(mouseEvent -> {
+            if (!isValueChanging()) {
+                thumbnailPreview.hide();
+            }
+        });
         seekRequests
             .distinctUntilChanged()
-            .sample(application().settings().mediaPlayer().scrubThrottle(), TimeUnit.MILLISECONDS)
             .subscribe(this::setMediaPlayerPosition);
     }
 
@@ -138,6 +174,45 @@ final class MediaPlayerPositionControl extends Slider {
         playerComponent.eventSource().newTime(playerComponent.mediaPlayer().status().time());
     }
 
+    /**
+     * Show the cached thumbnail for a position, if there is one.
+     *
+     * @param x horizontal position of the preview, in local coordinates
+     * @param position fractional playback position, from 0.0 to 1.0
+     * @return <code>true</code> if a thumbnail was shown; <code>false</code> if none is available
+     */
+    private boolean showThumbnail(double x, double position) {
+        int stride = application().settings().mediaPlayer().thumbnailStride();
+        if (mrl == null || length <= 0 || stride <= 0) {
+            return false;
+        }
+        long time = Math.round(Math.max(0, Math.min(1, position)) * length);
+        return thumbnailCache().thumbnail(mrl, stride, time)
+            .map(image -> {
+                thumbnailPreview.show(this, x, image, time, length);
+                return true;
+            })
+            .orElse(false);
+    }
+
+    /**
+     * Set the current media, and start generating thumbnails for it in the background.
+     * <p>
+     * Invoked on the JavaFX application thread.
+     *
+     * @param newMrl media resource locator, or <code>null</code> if there is no media
+     * @param newLength length of the media
+     */
+    void setMedia(String newMrl, long newLength) {
+        log.debug("setMedia(newMrl={}, newLength={})", newMrl, newLength);
+        this.mrl = newMrl;
+        this.length = newLength;
+        int stride = application().settings().mediaPlayer().thumbnailStride();
+        if (newMrl != null && newLength > 0 && stride > 0) {
+            thumbnailCache().generate(newMrl, stride);
+        }
+    }
+
     /**
      * Register event handlers for the media player component.
      * <p>
@@ -153,7 +228,10 @@ final class MediaPlayerPositionControl extends Slider {
             @Override
             public void stopped(MediaPlayer mediaPlayer) {
                 // Can not seek if stopped
-                Platform.runLater(() -> setSeekable(false));
+                Platform.runLater(() -> {
+                    setSeekable(false);
+                    thumbnailPreview.hide();
+                });
             }
         });
     }
@@ -175,7 +253,7 @@ final class MediaPlayerPositionControl extends Slider {
      */
     private void setMediaPlayerPosition(float newPosition) {
         log.trace("setMediaPlayerPosition(newPosition={})", newPosition);
-        playerComponent.mediaPlayer().controls().setPosition(newPosition);
+        playerComponent.seekPosition(newPosition);
     }
 
     /**
@@ -186,12 +264,14 @@ final class MediaPlayerPositionControl extends Slider {
     void setControlPosition(float newPosition) {
         log.trace("setControlPosition(newPosition={})", newPosition);
         if (!ignoreExternalEvents) {
-            Platform.runLater(() -> {
-                // Ignore media player position changed events if the slider is currently being interacted with
-                if (!isValueChanging()) {
-                    setValue(newPosition);
-                }
-            });
+            controlPosition.set(newPosition);
+        }
+    }
+
+    private void showControlPosition(double newPosition) {
+        // Ignore media player position changed events if the slider is currently being interacted with
+        if (!isValueChanging()) {
+            setValue(newPosition);
         }
     }
 }
@@ -0,0 +1,233 @@
+package org.mbari.cthulhu.ui.player;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static org.mbari.cthulhu.ui.player.PlaybackClockService.playbackClockService;
+
+/**
+ * A more stable source of time events for a media player.
+ * <p>
+ * The native media player sends somewhat irregular time changes which if strictly adhered to will provide a less than optimal user experience, this component
+ * provides smooth regular updates for timer displays and annotations.
+ * <p>
+ * Each time-changed event from the native media player is used as a sample for a {@link MediaClockModel}, which tracks the actual playback rate and offset
+ * and is used to interpolate the media time between those events. The clock never queries the native media player itself.
+ * <p>
+ * While playing, the clock is driven by the shared {@link PlaybackClockService}. When paused or stopped, the clock is not driven at all.
+ * <p>
+ * The clock is updated from native media player event threads, the clock service thread and the JavaFX application thread, so access to the model is
+ * synchronised. Ticks are also serialised, and a tick is only delivered while playing, so no tick from the clock service can be delivered after the final
+ * tick on stopping.
+ */
+final class PlaybackClock {
+
+    private static final Logger log = LoggerFactory.getLogger(PlaybackClock.class);
+
+    /**
+     * Reported time while the media player has not reported a time since the clock was last reset.
+     */
+    static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    private final Consumer<Long> onTick;
+
+    private final MediaClockModel model = new MediaClockModel();
+
+    /**
+     * Lock held while delivering a tick, always acquired before the lock on the model.
+     */
+    private final Object ticks = new Object();
+
+    /**
+     * Media time while not playing, in milliseconds.
+     * <p>
+     * Only accessed while synchronised on the model.
+     */
+    private long stoppedTime;
+
+    /**
+     * Media time most recently reported by the media player, in milliseconds, and the system time at which it was reported, in nanoseconds.
+     * <p>
+     * Unlike the model, the reported time does not move to the target when a seek is requested - it becomes {@link #UNKNOWN_TIME} until the media player
+     * reports a time again, since until then a frame may still come from before the seek. Only accessed while synchronised on the model.
+     */
+    private long reportedTime = UNKNOWN_TIME;
+
+    private long reportedNanos;
+
+    /**
+     * Playback rate most recently requested, only accessed while synchronised on the model.
+     */
+    private double rate = 1.0;
+
+    private volatile boolean playing;
+
+    /**
+     * Create a clock.
+     *
+     * @param onTick function to execute with the current media time on each tick of the clock
+     */
+    PlaybackClock(Consumer<Long> onTick) {
+        this.onTick = onTick;
+    }
+
+    /**
+     * Synchronise the clock with a time reported by the media player.
+     *
+     * @param mediaTime media time, in milliseconds
+     */
+    void sync(long mediaTime) {
+        log.trace("sync(mediaTime={})", mediaTime);
+        synchronized (model) {
+            long nanoTime = System.nanoTime();
+            reportedTime = mediaTime;
+            reportedNanos = nanoTime;
+            if (playing) {
+                model.sample(nanoTime, mediaTime);
+            } else {
+                stoppedTime = mediaTime;
+            }
+        }
+    }
+
+    /**
+     * Move the clock to a new time, e.g. because the media player was asked to seek.
+     *
+     * @param mediaTime media time, in milliseconds
+     */
+    void reset(long mediaTime) {
+        log.trace("reset(mediaTime={})", mediaTime);
+        synchronized (model) {
+            model.reset(System.nanoTime(), mediaTime);
+            stoppedTime = mediaTime;
+            reportedTime = UNKNOWN_TIME;
+        }
+    }
+
+    /**
+     * Set the rate at which the media player was asked to play.
+     *
+     * @param rate playback rate, e.g. 1.0 for normal speed
+     */
+    void rate(double rate) {
+        log.debug("rate(rate={})", rate);
+        synchronized (model) {
+            this.rate = rate;
+            model.rate(rate, System.nanoTime());
+        }
+    }
+
+    /**
+     * Estimate the media time the media player itself has reached, from the time it most recently reported.
+     * <p>
+     * While playing, the reported time is extrapolated at the requested playback rate. Unlike the clock time, this does not jump ahead when a seek is
+     * requested, instead it is unknown until the media player reports the new time. It is an estimate of where the media player is, not the presentation time
+     * of any particular frame - the native media player does not expose that.
+     *
+     * @param nanoTime current system time, in nanoseconds
+     * @return estimated media time, in milliseconds, or {@link #UNKNOWN_TIME} if the media player has not reported a time since the clock was last reset
+     */
+    long reportedTime(long nanoTime) {
+        synchronized (model) {
+            if (!playing || reportedTime == UNKNOWN_TIME) {
+                return reportedTime;
+            }
+            return reportedTime + Math.round((nanoTime - reportedNanos) * rate / TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * The media started playing, start driving the clock.
+     */
+    void start() {
+        log.debug("start()");
+        synchronized (model) {
+            // Time did not advance while not playing, so restart the model from where it stopped
+            model.reset(System.nanoTime(), stoppedTime);
+            playing = true;
+        }
+        playbackClockService().register(this);
+    }
+
+    /**
+     * The media paused, stop driving the clock at the current media time.
+     * <p>
+     * The time comes from the clock model rather than the native media player, so this is safe to call from a native event thread.
+     */
+    void pause() {
+        log.debug("pause()");
+        stop(OptionalLong.empty());
+    }
+
+    /**
+     * The media stopped playing, stop driving the clock.
+     *
+     * @param mediaTime media time at which playback stopped, in milliseconds
+     */
+    void stop(long mediaTime) {
+        log.debug("stop(mediaTime={})", mediaTime);
+        stop(OptionalLong.of(mediaTime));
+    }
+
+    private void stop(OptionalLong stopTime) {
+        playbackClockService().unregister(this);
+        synchronized (ticks) {
+            boolean wasPlaying;
+            long mediaTime;
+            synchronized (model) {
+                wasPlaying = playing;
+                playing = false;
+                long nanoTime = System.nanoTime();
+                mediaTime = stopTime.orElseGet(() -> wasPlaying ? model.time(nanoTime) : stoppedTime);
+                model.reset(nanoTime, mediaTime);
+                stoppedTime = mediaTime;
+            }
+            if (wasPlaying) {
+                // One final tick so everything reflects the time at which playback stopped
+                onTick.accept(mediaTime);
+            }
+        }
+    }
+
+    /**
+     * Stop the clock permanently.
+     */
+    void close() {
+        log.debug("close()");
+        playing = false;
+        playbackClockService().unregister(this);
+    }
+
+    /**
+     * Get the current media time and notify the tick handler.
+     * <p>
+     * Invoked by the {@link PlaybackClockService}.
+     *
+     * @param nanoTime current system time, in nanoseconds
+     */
+    void tick(long nanoTime) {
+        synchronized (ticks) {
+            // Checked while holding the lock, so a tick already in progress can not overtake the final tick on stopping
+            if (playing) {
+                long time;
+                synchronized (model) {
+                    time = model.time(nanoTime);
+                }
+                onTick.accept(time);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("playing", playing)
+            .add("model", model)
+            .toString();
+    }
+}
@@ -0,0 +1,111 @@
+package org.mbari.cthulhu.ui.player;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Application-wide service that drives the {@link PlaybackClock} of every playing media player from a single thread.
+ * <p>
+ * Only playing clocks are registered with the service, a paused or stopped player costs nothing. When no clocks are registered at all, the service thread is
+ * idle.
+ * <p>
+ * The service never queries the native media players - each clock is synchronised by media player events and merely interpolated at each tick of this
+ * service.
+ */
+final class PlaybackClockService {
+
+    private static final Logger log = LoggerFactory.getLogger(PlaybackClockService.class);
+
+    /**
+     * Period between ticks, in milliseconds.
+     */
+    private static final long PERIOD = 10;
+
+    private static final class Holder {
+        private static final PlaybackClockService INSTANCE = new PlaybackClockService();
+    }
+
+    /**
+     * Get the playback clock service.
+     *
+     * @return clock service
+     */
+    static PlaybackClockService playbackClockService() {
+        return Holder.INSTANCE;
+    }
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder()
+            .setNameFormat("playback-clock")
+            .setDaemon(true)
+            .build()
+    );
+
+    /**
+     * Clocks that are currently playing.
+     */
+    private final Set<PlaybackClock> clocks = new CopyOnWriteArraySet<>();
+
+    /**
+     * Scheduled ticks, only present while there is at least one registered clock.
+     * <p>
+     * Only accessed while synchronised on this service.
+     */
+    private ScheduledFuture<?> ticks;
+
+    private PlaybackClockService() {
+    }
+
+    /**
+     * Start driving a clock.
+     *
+     * @param clock clock to drive
+     */
+    synchronized void register(PlaybackClock clock) {
+        log.debug("register(clock={})", clock);
+        if (clocks.add(clock) && ticks == null) {
+            ticks = executor.scheduleAtFixedRate(this::tick, 0, PERIOD, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop driving a clock.
+     *
+     * @param clock clock to stop driving
+     */
+    synchronized void unregister(PlaybackClock clock) {
+        log.debug("unregister(clock={})", clock);
+        if (clocks.remove(clock) && clocks.isEmpty() && ticks != null) {
+            ticks.cancel(false);
+            ticks = null;
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        for (PlaybackClock clock : clocks) {
+            try {
+                clock.tick(now);
+            } catch (RuntimeException e) {
+                log.error("Failed to tick clock {}", clock, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("clocks", clocks.size())
+            .toString();
+    }
+}
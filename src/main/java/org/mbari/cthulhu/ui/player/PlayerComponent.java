@@ -5,8 +5,11 @@ import javafx.application.Platform;
 import javafx.scene.image.ImageView;
 import javafx.stage.WindowEvent;
 import org.mbari.cthulhu.annotations.AnnotationController;
+import org.mbari.cthulhu.frameindex.FrameIndex;
 import org.mbari.cthulhu.ui.components.annotationview.AnnotationImageView;
+import org.mbari.cthulhu.ui.videosurface.FrameStatistics;
 import org.mbari.cthulhu.ui.videosurface.ImageViewVideoSurfaceFactory;
+import org.mbari.cthulhu.ui.videosurface.VideoFrame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.caprica.vlcj.media.TrackType;
@@ -15,12 +18,15 @@ import uk.co.caprica.vlcj.player.base.MediaPlayer;
 import uk.co.caprica.vlcj.player.base.MediaPlayerEventAdapter;
 import uk.co.caprica.vlcj.player.embedded.EmbeddedMediaPlayer;
 
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static org.mbari.cthulhu.app.CthulhuApplication.application;
+import static org.mbari.cthulhu.frameindex.FrameIndexCache.frameIndexCache;
 
 /**
  * A player component.
@@ -29,6 +35,11 @@ public final class PlayerComponent {
 
     private static final Logger log = LoggerFactory.getLogger(PlayerComponent.class);
 
+    /**
+     * Tolerance for a frame to count as the result of a seek when the frame rate is not known, in milliseconds.
+     */
+    private static final long FRAME_ARRIVAL_TOLERANCE = 40;
+
     /**
      * Unique identifier of this player component.
      */
@@ -39,17 +50,42 @@ public final class PlayerComponent {
      */
     private final MediaPlayerEventSource mediaPlayerEventSource = new MediaPlayerEventSource();
 
+    /**
+     * Component that applies the latest time, position and video frame changes once per JavaFX pulse.
+     */
+    private final RenderCoordinator renderCoordinator = new RenderCoordinator();
+
+    /**
+     * Counters for the video frames displayed and dropped by this component.
+     */
+    private final FrameStatistics frameStatistics = new FrameStatistics();
+
+    /**
+     * Component that paces interactive seeks (jogging and scrubbing) to match the speed of the decoder.
+     */
+    private final SeekScheduler seekScheduler = new SeekScheduler(this::scheduledSeek);
+
+    /**
+     * Tracks whether the video surface shows the result of the most recent seek.
+     */
+    private final FrameArrival frameArrival = new FrameArrival();
+
     private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
 
     private final ImageView videoImageView;
 
     private final EmbeddedMediaPlayer mediaPlayer;
 
+    private final ImageViewVideoSurfaceFactory videoSurfaceFactory;
+
     private final AnnotationImageView annotationImageView;
 
     private final AnnotationController annotationController;
 
-    private MediaPlayerTimer mediaPlayerTimer;
+    /**
+     * Clock providing regular, smooth, time updates while the media is playing.
+     */
+    private final PlaybackClock playbackClock = new PlaybackClock(mediaPlayerEventSource::newTime);
 
     private final MediaPlayerControls mediaPlayerControls;
 
@@ -62,6 +98,16 @@ public final class PlayerComponent {
      */
     private volatile FrameRate frameRate;
 
+    /**
+     * Exact frame and keyframe times for the current media, or <code>null</code> if not (yet) available.
+     */
+    private volatile FrameIndex frameIndex;
+
+    /**
+     * Media resource locator most recently requested to play.
+     */
+    private volatile String mrl;
+
     /**
      * Flag if the media is playing or not.
      * <p>
@@ -84,19 +130,30 @@ public final class PlayerComponent {
         videoImageView.setCache(true);
 
         mediaPlayer = application().mediaPlayerFactory().mediaPlayers().newEmbeddedMediaPlayer();
-        mediaPlayer.videoSurface().set(ImageViewVideoSurfaceFactory.getVideoSurface(videoImageView));
+        videoSurfaceFactory = ImageViewVideoSurfaceFactory.create(
+            videoImageView,
+            application().mediaPlayerConfig().videoBufferCount(),
+            renderCoordinator,
+            frameStatistics,
+            this::deliveredFrameTime,
+            mediaTime -> {
+                seekScheduler.frameDelivered(mediaTime);
+                frameArrival.frameDelivered(mediaTime);
+            }
+        );
+        mediaPlayer.videoSurface().set(videoSurfaceFactory.getVideoSurface());
 
         annotationImageView = new AnnotationImageView(this);
 
         annotationController = new AnnotationController(this, annotationImageView);
 
-        mediaPlayerTimer = new MediaPlayerTimer(mediaPlayer, mediaPlayerEventSource::newTime);
-
         mediaPlayerControls = new MediaPlayerControls(this);
 
         stage = new PlayerComponentStage(this, annotationImageView, mediaPlayerControls);
 
         registerEventHandlers();
+
+        renderCoordinator.start();
     }
 
     private void registerEventHandlers() {
@@ -118,6 +175,7 @@ public final class PlayerComponent {
             @Override
             public void opening(MediaPlayer mediaPlayer) {
                 log.debug("opening()");
+                playbackClock.reset(0);
                 mediaPlayerEventSource.newTime(0);
                 mediaPlayerEventSource.newPosition(0);
             }
@@ -141,6 +199,12 @@ public final class PlayerComponent {
                 }
             }
 
+            @Override
+            public void timeChanged(MediaPlayer mediaPlayer, long newTime) {
+                log.trace("timeChanged(newTime={})", newTime);
+                playbackClock.sync(newTime);
+            }
+
             @Override
             public void positionChanged(MediaPlayer mediaPlayer, float newPosition) {
                 log.trace("positionChanged(newPosition={})", newPosition);
@@ -157,18 +221,21 @@ public final class PlayerComponent {
             public void playing(MediaPlayer mediaPlayer) {
                 log.debug("playing()");
                 setPlaying(true);
+                playbackClock.start();
             }
 
             @Override
             public void paused(MediaPlayer mediaPlayer) {
                 log.debug("paused()");
                 setPlaying(false);
+                playbackClock.pause();
             }
 
             @Override
             public void stopped(MediaPlayer mediaPlayer) {
                 log.debug("stopped()");
                 setPlaying(false);
+                playbackClock.stop(0);
                 Platform.runLater(PlayerComponent.this::showDefaultView);
             }
 
@@ -176,6 +243,7 @@ public final class PlayerComponent {
             public void finished(MediaPlayer mediaPlayer) {
                 log.debug("finished()");
                 setPlaying(false);
+                playbackClock.stop(0);
                 // Can not seek when stopped, and in fact the media is "spent" so it makes sense to reset timers here
                 mediaPlayerEventSource.newTime(0);
                 mediaPlayerEventSource.newPosition(0);
@@ -185,6 +253,7 @@ public final class PlayerComponent {
             public void error(MediaPlayer mediaPlayer) {
                 log.error("error()");
                 setPlaying(false);
+                playbackClock.stop(0);
                 Platform.runLater(PlayerComponent.this::showDefaultView);
             }
 
@@ -268,6 +337,45 @@ public final class PlayerComponent {
         return videoImageView;
     }
 
+    /**
+     * Get the component used to apply time-driven user interface updates once per JavaFX pulse.
+     *
+     * @return render coordinator
+     */
+    public RenderCoordinator renderCoordinator() {
+        return renderCoordinator;
+    }
+
+    /**
+     * Get the counters for the video frames displayed and dropped by this component.
+     *
+     * @return frame statistics
+     */
+    public FrameStatistics frameStatistics() {
+        return frameStatistics;
+    }
+
+    /**
+     * Copy the video frame currently displayed by this component.
+     *
+     * @return copy of the current frame, tagged with its media time, or empty if no frame has been displayed yet
+     */
+    public Optional<VideoFrame> captureFrame() {
+        return videoSurfaceFactory.captureFrame();
+    }
+
+    /**
+     * Copy the video frame displayed by this component once it shows the result of the most recent seek.
+     * <p>
+     * The native media player seeks asynchronously, so the frame is only copied once a frame near the seek target has been delivered (or, failing that, after
+     * a timeout). If there is no seek outstanding the current frame is copied straight away.
+     *
+     * @return future copy of the frame, tagged with its media time, or empty if no frame has been displayed
+     */
+    public CompletableFuture<Optional<VideoFrame>> captureSeekedFrame() {
+        return frameArrival.await().thenApply(arrived -> captureFrame());
+    }
+
     /**
      * Show this component (bring it to front).
      */
@@ -276,10 +384,35 @@ public final class PlayerComponent {
         stage.toFront();
     }
 
+    /**
+     * Play the media at a particular rate.
+     *
+     * @param rate playback rate, e.g. 1.0 for normal speed
+     */
+    public void play(double rate) {
+        log.debug("play(rate={})", rate);
+        mediaPlayer.controls().setRate((float) rate);
+        playbackClock.rate(rate);
+        mediaPlayer.controls().play();
+    }
+
     public boolean playNewMedia(String mrl) {
         log.debug("playNewMedia(mrl={})", mrl);
+        this.mrl = mrl;
+        this.frameIndex = null;
+        seekScheduler.reset();
+        frameArrival.reset();
         boolean result = mediaPlayer.media().play(mrl);
         if (result) {
+            frameIndexCache().frameIndex(mrl).thenAccept(index -> {
+                // Ignore the index if different media was opened in the meantime
+                if (mrl.equals(this.mrl)) {
+                    log.debug("frameIndex={}", index);
+                    this.frameIndex = index.orElse(null);
+                }
+            });
+            log.debug("frameStatistics={}", frameStatistics);
+            frameStatistics.reset();
             annotationController.reset();
         }
         return result;
@@ -299,8 +432,16 @@ public final class PlayerComponent {
                 (int) Math.round(stage.getHeight())
             );
 
-            mediaPlayerTimer.cancel();
-            mediaPlayerTimer = null;
+            playbackClock.close();
+
+            annotationController.close();
+
+            seekScheduler.reset();
+            frameArrival.reset();
+            log.debug("seekScheduler={}", seekScheduler);
+
+            renderCoordinator.stop();
+            log.debug("frameStatistics={}", frameStatistics);
 
             mediaPlayer.controls().stop();
             mediaPlayer.release();
@@ -339,6 +480,100 @@ public final class PlayerComponent {
         return frameRate != null ? frameRate.frameTime() : 0;
     }
 
+    /**
+     * Get the time of the frame after the one displayed at a particular time.
+     * <p>
+     * This is exact if there is a frame index for the current media, otherwise it is approximated from the frame rate.
+     *
+     * @param time current time
+     * @return time of the next frame
+     */
+    long nextFrameTime(long time) {
+        FrameIndex currentFrameIndex = frameIndex;
+        return currentFrameIndex != null ? currentFrameIndex.nextFrameTime(time) : time + frameTime();
+    }
+
+    /**
+     * Get the time of the frame before the one displayed at a particular time.
+     * <p>
+     * This is exact if there is a frame index for the current media, otherwise it is approximated from the frame rate.
+     *
+     * @param time current time
+     * @return time of the previous frame
+     */
+    long previousFrameTime(long time) {
+        FrameIndex currentFrameIndex = frameIndex;
+        return currentFrameIndex != null ? currentFrameIndex.previousFrameTime(time) : time - frameTime();
+    }
+
+    /**
+     * Estimate the media time of a frame just delivered by the native media player.
+     * <p>
+     * Invoked on a native thread for every frame, so this uses the time last reported by the media player (rather than querying the native media player),
+     * snapped to the nearest frame if there is a frame index for the current media.
+     *
+     * @return estimated media time of the frame, in milliseconds, or {@link PlaybackClock#UNKNOWN_TIME} if the media player has not reported a time since the
+     *         most recent seek
+     */
+    private long deliveredFrameTime() {
+        long time = playbackClock.reportedTime(System.nanoTime());
+        FrameIndex currentFrameIndex = frameIndex;
+        return currentFrameIndex != null && time != PlaybackClock.UNKNOWN_TIME ? currentFrameIndex.snap(time) : time;
+    }
+
+    /**
+     * Get the frame index for the current media.
+     *
+     * @return frame index, or empty if there is none
+     */
+    public Optional<FrameIndex> frameIndex() {
+        return Optional.ofNullable(frameIndex);
+    }
+
+    /**
+     * Request an interactive seek, paced by the seek scheduler.
+     * <p>
+     * Unlike {@link #setTime(long)}, a burst of requests does not queue up seeks in the native media player - only the newest request is dispatched once the
+     * previous seek has produced its frame.
+     *
+     * @param newTime new time, milliseconds from the start of the media
+     */
+    void seek(long newTime) {
+        seekScheduler.seek(newTime);
+    }
+
+    /**
+     * Request an interactive seek to a position, paced by the seek scheduler.
+     *
+     * @param newPosition new position, from 0 to 1
+     */
+    void seekPosition(float newPosition) {
+        if (length > 0) {
+            seek(Math.round((double) newPosition * length));
+        }
+    }
+
+    /**
+     * Get the time the media player is heading for, taking account of interactive seeks that are still outstanding.
+     *
+     * @return target time, milliseconds from the start of the media
+     */
+    long seekTargetTime() {
+        return seekScheduler.targetTime(mediaPlayer.status().time());
+    }
+
+    private void scheduledSeek(long newTime) {
+        closeLock.readLock().lock();
+        try {
+            // The player component may have been closed while the seek was waiting
+            if (stage != null) {
+                setTime(newTime);
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
     /**
      * Change the media player time.
      *
@@ -347,8 +582,17 @@ public final class PlayerComponent {
     public boolean setTime(long newTime) {
         log.trace("setTime(newTime={})", newTime);
 
+        // Address the exact frame, so that consecutive seeks within the same frame are recognisable as such
+        FrameIndex currentFrameIndex = frameIndex;
+        if (currentFrameIndex != null) {
+            newTime = currentFrameIndex.snap(newTime);
+        }
+
         if (newTime >= 0 && newTime <= length) {
+            // Anything waiting for the result of the seek only accepts a frame within one frame of the target
+            frameArrival.seeking(newTime, frameTime() > 0 ? frameTime() : FRAME_ARRIVAL_TOLERANCE);
             mediaPlayer.controls().setTime(newTime);
+            playbackClock.reset(newTime);
 
             mediaPlayerEventSource.newTime(newTime);
             if (!mediaPlayer.status().isPlaying()) {
@@ -0,0 +1,222 @@
+package org.mbari.cthulhu.ui.player;
+
+import javafx.animation.AnimationTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * A component that coalesces time-driven user interface updates for a player component into a single update per JavaFX pulse.
+ * <p>
+ * Time, position and video frame changes are produced at a high rate by native media player and timer threads. Submitting each of those changes separately
+ * via {@link javafx.application.Platform#runLater(Runnable)} floods the application thread queue, especially with multiple players open, and causes stale
+ * updates to queue up behind one another.
+ * <p>
+ * Instead, each source of change is given a {@link Slot} that holds only the latest value. Any thread may set the value of a slot at any time, and once per
+ * pulse the coordinator applies the latest value of each changed slot on the JavaFX application thread - all intermediate values are simply dropped.
+ */
+public final class RenderCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderCoordinator.class);
+
+    private final List<Slot> slots = new CopyOnWriteArrayList<>();
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            pulse();
+        }
+    };
+
+    RenderCoordinator() {
+    }
+
+    /**
+     * Create a slot for a time (or other long) value.
+     *
+     * @param onPulse handler invoked on the JavaFX application thread with the latest value
+     * @return slot
+     */
+    public LongSlot longSlot(LongConsumer onPulse) {
+        return register(new LongSlot(onPulse));
+    }
+
+    /**
+     * Create a slot for a position (or other float) value.
+     *
+     * @param onPulse handler invoked on the JavaFX application thread with the latest value
+     * @return slot
+     */
+    public FloatSlot floatSlot(DoubleConsumer onPulse) {
+        return register(new FloatSlot(onPulse));
+    }
+
+    /**
+     * Create a slot that carries no value, only the fact that something (e.g. a new video frame) is pending.
+     *
+     * @param onPulse handler invoked on the JavaFX application thread
+     * @return slot
+     */
+    public SignalSlot signalSlot(Runnable onPulse) {
+        return register(new SignalSlot(onPulse));
+    }
+
+    /**
+     * Start applying updates.
+     */
+    void start() {
+        log.debug("start()");
+        timer.start();
+    }
+
+    /**
+     * Stop applying updates, any pending values are discarded.
+     */
+    void stop() {
+        log.debug("stop()");
+        timer.stop();
+        slots.clear();
+    }
+
+    private <T extends Slot> T register(T slot) {
+        slots.add(slot);
+        return slot;
+    }
+
+    private void pulse() {
+        for (Slot slot : slots) {
+            if (slot.pending.getAndSet(false)) {
+                try {
+                    slot.apply();
+                } catch (RuntimeException e) {
+                    log.error("Failed to apply update", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("slots", slots.size())
+            .toString();
+    }
+
+    /**
+     * A latest-wins holder for a pending update.
+     */
+    public static abstract class Slot {
+
+        private final AtomicBoolean pending = new AtomicBoolean();
+
+        private Slot() {
+        }
+
+        /**
+         * Mark this slot as having a pending update.
+         *
+         * @return {@code true} if there was already an update pending, that has now been superseded
+         */
+        final boolean markPending() {
+            return pending.getAndSet(true);
+        }
+
+        /**
+         * Apply the latest update, invoked on the JavaFX application thread.
+         */
+        abstract void apply();
+    }
+
+    /**
+     * A slot holding the latest long value.
+     */
+    public static final class LongSlot extends Slot {
+
+        private final AtomicLong value = new AtomicLong();
+
+        private final LongConsumer onPulse;
+
+        private LongSlot(LongConsumer onPulse) {
+            this.onPulse = onPulse;
+        }
+
+        /**
+         * Set the latest value, replacing any value that has not yet been applied.
+         *
+         * @param newValue new value
+         */
+        public void set(long newValue) {
+            value.set(newValue);
+            markPending();
+        }
+
+        @Override
+        void apply() {
+            onPulse.accept(value.get());
+        }
+    }
+
+    /**
+     * A slot holding the latest float value.
+     */
+    public static final class FloatSlot extends Slot {
+
+        private final AtomicInteger bits = new AtomicInteger();
+
+        private final DoubleConsumer onPulse;
+
+        private FloatSlot(DoubleConsumer onPulse) {
+            this.onPulse = onPulse;
+        }
+
+        /**
+         * Set the latest value, replacing any value that has not yet been applied.
+         *
+         * @param newValue new value
+         */
+        public void set(float newValue) {
+            bits.set(Float.floatToRawIntBits(newValue));
+            markPending();
+        }
+
+        @Override
+        void apply() {
+            onPulse.accept(Float.intBitsToFloat(bits.get()));
+        }
+    }
+
+    /**
+     * A slot that holds no value.
+     */
+    public static final class SignalSlot extends Slot {
+
+        private final Runnable onPulse;
+
+        private SignalSlot(Runnable onPulse) {
+            this.onPulse = onPulse;
+        }
+
+        /**
+         * Signal that an update is pending, multiple signals before the next pulse result in a single update.
+         *
+         * @return {@code true} if this signal superseded an update that was still pending
+         */
+        public boolean signal() {
+            return markPending();
+        }
+
+        @Override
+        void apply() {
+            onPulse.run();
+        }
+    }
+}
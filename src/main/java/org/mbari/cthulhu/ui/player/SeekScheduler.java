@@ -0,0 +1,233 @@
+package org.mbari.cthulhu.ui.player;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Component that paces seek requests for a single media player to match the speed of its decoder.
+ * <p>
+ * Rather than dispatching seeks at a fixed rate, at most one seek is in flight at any time:
+ * <ul>
+ *     <li>a seek requested while another is in flight replaces any seek still waiting, so only the newest target is ever dispatched next;</li>
+ *     <li>a seek completes when the video surface delivers a frame near the target time, and the time taken is folded into a running latency estimate;</li>
+ *     <li>if no such frame arrives within a timeout derived from that latency estimate (e.g. seeking to the frame already displayed produces no new
+ *     frame), the seek is treated as complete anyway - if its frame does arrive later, the latency is still measured.</li>
+ * </ul>
+ * A fast decoder therefore gets seeks as fast as it can show them, while a slow decoder is never sent a new seek before it has caught up with the last one.
+ * <p>
+ * Seeks are dispatched on a shared scheduler thread, never on a native media player thread.
+ */
+final class SeekScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(SeekScheduler.class);
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * Assumed seek latency before any seek has been measured, in milliseconds.
+     */
+    private static final double INITIAL_LATENCY = 100;
+
+    /**
+     * Weight given to each new latency measurement.
+     */
+    private static final double LATENCY_WEIGHT = 0.25;
+
+    /**
+     * Multiple of the latency estimate to wait for a frame before giving up on a seek.
+     */
+    private static final double TIMEOUT_FACTOR = 3;
+
+    private static final long MIN_TIMEOUT = 50;
+
+    private static final long MAX_TIMEOUT = 2000;
+
+    /**
+     * Largest difference between a seek target and the media time of a delivered frame for the frame to count as the result of the seek, in milliseconds.
+     */
+    private static final long ARRIVAL_TOLERANCE = 250;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder()
+            .setNameFormat("seek-scheduler")
+            .setDaemon(true)
+            .build()
+    );
+
+    /**
+     * Action that actually seeks the media player.
+     */
+    private final LongConsumer seekAction;
+
+    /**
+     * Newest seek target not yet dispatched.
+     */
+    private long pendingTime = NONE;
+
+    /**
+     * Target of the seek in flight.
+     */
+    private long inFlightTime = NONE;
+
+    private long dispatchNanos;
+
+    /**
+     * Target and dispatch time of the most recent seek that timed out, its frame may still arrive late.
+     */
+    private long lateTime = NONE;
+
+    private long lateDispatchNanos;
+
+    private ScheduledFuture<?> timeout;
+
+    /**
+     * Running estimate of the time from dispatching a seek to its frame being delivered, in milliseconds.
+     */
+    private double latency = INITIAL_LATENCY;
+
+    private long completed;
+
+    private long timedOut;
+
+    /**
+     * Create a seek scheduler.
+     *
+     * @param seekAction action that seeks the media player to a time
+     */
+    SeekScheduler(LongConsumer seekAction) {
+        this.seekAction = seekAction;
+    }
+
+    /**
+     * Request a seek, replacing any seek still waiting to be dispatched.
+     *
+     * @param time target time, in milliseconds
+     */
+    synchronized void seek(long time) {
+        log.trace("seek(time={})", time);
+        pendingTime = time;
+        if (inFlightTime == NONE) {
+            executor.execute(this::dispatchNext);
+        }
+    }
+
+    /**
+     * Get the time the media player is heading for, taking account of seeks that are waiting or in flight.
+     *
+     * @param currentTime time currently reported by the media player
+     * @return newest seek target, or the current time if there is no seek outstanding
+     */
+    synchronized long targetTime(long currentTime) {
+        if (pendingTime != NONE) {
+            return pendingTime;
+        }
+        return inFlightTime != NONE ? inFlightTime : currentTime;
+    }
+
+    /**
+     * Notification that the video surface has been given a new frame.
+     * <p>
+     * Invoked on a native media player thread.
+     *
+     * @param mediaTime media time of the frame, or {@link Long#MIN_VALUE} if it is not known
+     */
+    synchronized void frameDelivered(long mediaTime) {
+        if (arrived(inFlightTime, mediaTime)) {
+            measure(dispatchNanos);
+            completed++;
+            complete();
+        } else if (arrived(lateTime, mediaTime)) {
+            measure(lateDispatchNanos);
+            lateTime = NONE;
+        }
+    }
+
+    /**
+     * Abandon any outstanding seeks, e.g. when new media is played.
+     */
+    synchronized void reset() {
+        log.trace("reset()");
+        pendingTime = NONE;
+        inFlightTime = NONE;
+        lateTime = NONE;
+        cancelTimeout();
+    }
+
+    /**
+     * Get the current estimate of seek latency.
+     *
+     * @return latency, in milliseconds
+     */
+    synchronized double latency() {
+        return latency;
+    }
+
+    private void dispatchNext() {
+        long time;
+        synchronized (this) {
+            if (inFlightTime != NONE || pendingTime == NONE) {
+                return;
+            }
+            time = pendingTime;
+            pendingTime = NONE;
+            inFlightTime = time;
+            dispatchNanos = System.nanoTime();
+            long timeoutMillis = Math.max(MIN_TIMEOUT, Math.min(MAX_TIMEOUT, Math.round(latency * TIMEOUT_FACTOR)));
+            timeout = executor.schedule(() -> timeout(time, timeoutMillis), timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        seekAction.accept(time);
+    }
+
+    private synchronized void timeout(long time, long timeoutMillis) {
+        if (inFlightTime == time) {
+            log.trace("Seek to {} timed out after {}ms", time, timeoutMillis);
+            // No frame may simply mean there was no new frame to show, so the latency is only measured if the frame does arrive
+            lateTime = time;
+            lateDispatchNanos = dispatchNanos;
+            timedOut++;
+            complete();
+        }
+    }
+
+    private static boolean arrived(long targetTime, long mediaTime) {
+        return targetTime != NONE && mediaTime != NONE && Math.abs(mediaTime - targetTime) <= ARRIVAL_TOLERANCE;
+    }
+
+    private void measure(long sinceNanos) {
+        double sample = (System.nanoTime() - sinceNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        latency += LATENCY_WEIGHT * (sample - latency);
+    }
+
+    private void complete() {
+        inFlightTime = NONE;
+        cancelTimeout();
+        if (pendingTime != NONE) {
+            executor.execute(this::dispatchNext);
+        }
+    }
+
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return toStringHelper(this)
+            .add("latency", String.format("%.1f", latency))
+            .add("completed", completed)
+            .add("timedOut", timedOut)
+            .toString();
+    }
+}
@@ -0,0 +1,71 @@
+package org.mbari.cthulhu.ui.player;
+
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.paint.Color;
+import javafx.stage.Popup;
+import org.mbari.cthulhu.ui.components.timer.TimerLabel;
+import org.tbee.javafx.scene.layout.MigPane;
+
+/**
+ * A small popup that shows a thumbnail preview of the media, and its media time, above a position on a timeline.
+ */
+final class ThumbnailPreview extends Popup {
+
+    private static final String STYLE_CLASS_NAME = "thumbnail-preview";
+
+    /**
+     * Gap between the bottom of the preview and the top of the owner component, in pixels.
+     */
+    private static final double GAP = 8;
+
+    private final MigPane contentPane;
+
+    private final ImageView imageView;
+
+    private final TimerLabel timeLabel;
+
+    ThumbnailPreview() {
+        imageView = new ImageView();
+
+        timeLabel = new TimerLabel(TimerMode.ELAPSED);
+        timeLabel.setTextFill(Color.WHITE);
+
+        contentPane = new MigPane("ins 2, wrap, gapy 2", "[center]");
+        contentPane.getStyleClass().add(STYLE_CLASS_NAME);
+        contentPane.add(imageView);
+        contentPane.add(timeLabel);
+
+        getContent().add(contentPane);
+    }
+
+    /**
+     * Show a thumbnail, centred horizontally on a position along the owner component and just above it.
+     *
+     * @param owner component the preview belongs to
+     * @param x horizontal position, in the local coordinates of the owner
+     * @param image thumbnail image
+     * @param time media time of the position
+     * @param length length of the media
+     */
+    void show(Node owner, double x, Image image, long time, long length) {
+        if (imageView.getImage() != image) {
+            imageView.setImage(image);
+        }
+        timeLabel.tick(time, length);
+        Point2D anchor = owner.localToScreen(x, 0);
+        if (anchor == null) {
+            return;
+        }
+        double previewX = anchor.getX() - contentPane.prefWidth(-1) / 2;
+        double previewY = anchor.getY() - contentPane.prefHeight(-1) - GAP;
+        if (isShowing()) {
+            setX(previewX);
+            setY(previewY);
+        } else {
+            show(owner, previewX, previewY);
+        }
+    }
+}
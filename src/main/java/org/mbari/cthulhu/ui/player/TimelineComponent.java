@@ -7,6 +7,7 @@ import org.mbari.cthulhu.ui.components.timer.TimerLabel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tbee.javafx.scene.layout.MigPane;
+import uk.co.caprica.vlcj.media.InfoApi;
 import uk.co.caprica.vlcj.player.base.MediaPlayer;
 import uk.co.caprica.vlcj.player.base.MediaPlayerEventAdapter;
 
@@ -27,12 +28,15 @@ final class TimelineComponent extends MigPane {
 
     private final TimerLabel durationLabel;
 
+    private final RenderCoordinator.LongSlot time;
+
     private volatile long length;
 
     TimelineComponent(PlayerComponent playerComponent) {
         super("fill, ins 6", "[shrink]12[grow, fill]12[shrink]");
 
         this.playerComponent = playerComponent;
+        this.time = playerComponent.renderCoordinator().longSlot(this::showTime);
 
         slider = new MediaPlayerPositionControl(playerComponent);
 
@@ -73,14 +77,18 @@ final class TimelineComponent extends MigPane {
     private void setLength(long newLength) {
         log.debug("setLength(newLength={})", newLength);
         this.length = newLength;
+        InfoApi info = playerComponent.mediaPlayer().media().info();
+        slider.setMedia(info != null ? info.mrl() : null, newLength);
     }
 
     private void setTime(long time) {
         log.trace("setTime(time={})", time);
-        Platform.runLater(() -> {
-            elapsedTimeLabel.tick(time, length);
-            durationLabel.tick(time, length);
-        });
+        this.time.set(time);
+    }
+
+    private void showTime(long time) {
+        elapsedTimeLabel.tick(time, length);
+        durationLabel.tick(time, length);
     }
 
     private void setPosition(float position) {
@@ -0,0 +1,86 @@
+package org.mbari.cthulhu.ui.videosurface;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Counters for the video frames rendered by a video surface.
+ * <p>
+ * A frame is displayed if it made it to the screen, and dropped if it was superseded by a newer frame before it could be displayed (e.g. because the JavaFX
+ * application thread was busy).
+ * <p>
+ * Frames are counted from different threads, so all counters are atomic.
+ */
+public final class FrameStatistics {
+
+    private final AtomicLong displayed = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Time the counters were last reset, from {@link System#nanoTime()}.
+     */
+    private volatile long since = System.nanoTime();
+
+    /**
+     * Record a frame that was displayed.
+     */
+    void frameDisplayed() {
+        displayed.incrementAndGet();
+    }
+
+    /**
+     * Record a frame that was dropped.
+     */
+    void frameDropped() {
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Get the number of frames displayed since the counters were last reset.
+     *
+     * @return frame count
+     */
+    public long displayed() {
+        return displayed.get();
+    }
+
+    /**
+     * Get the number of frames dropped since the counters were last reset.
+     *
+     * @return frame count
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Get the effective display rate since the counters were last reset.
+     *
+     * @return displayed frames per second
+     */
+    public double displayRate() {
+        long elapsed = System.nanoTime() - since;
+        return elapsed > 0 ? displayed.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0;
+    }
+
+    /**
+     * Reset the counters, e.g. when new media is played.
+     */
+    public void reset() {
+        displayed.set(0);
+        dropped.set(0);
+        since = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("displayed", displayed.get())
+            .add("dropped", dropped.get())
+            .add("displayRate", String.format("%.1f", displayRate()))
+            .toString();
+    }
+}
@@ -1,10 +1,10 @@
 package org.mbari.cthulhu.ui.videosurface;
 
-import javafx.application.Platform;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.PixelBuffer;
 import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
+import org.mbari.cthulhu.ui.player.RenderCoordinator;
 import uk.co.caprica.vlcj.player.base.MediaPlayer;
 import uk.co.caprica.vlcj.player.embedded.videosurface.CallbackVideoSurface;
 import uk.co.caprica.vlcj.player.embedded.videosurface.VideoSurface;
@@ -14,11 +14,24 @@ import uk.co.caprica.vlcj.player.embedded.videosurface.callback.RenderCallback;
 import uk.co.caprica.vlcj.player.embedded.videosurface.callback.format.RV32BufferFormat;
 
 import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
 
 import static uk.co.caprica.vlcj.player.embedded.videosurface.VideoSurfaceAdapters.getVideoSurfaceAdapter;
 
 /**
  * Factory used to create a {@link VideoSurface} component for an {@link ImageView}.
+ * <p>
+ * With a single video buffer, the image view displays the native buffer directly - the native media player may then be writing a new frame into the same
+ * memory that is being displayed, which can cause visible tearing.
+ * <p>
+ * With multiple video buffers, each decoded frame is copied into a set of rotating {@link VideoBuffers} and the image view always shows the latest completed
+ * buffer. The native media player only exposes a single buffer to the callback, so this costs one copy per frame, but the copy happens on the native thread
+ * and never blocks the display.
+ * <p>
+ * Each frame is tagged with a media time supplied by the owner of the surface. The native media player does not expose the presentation time of a frame to
+ * the render callback, so this is an estimate of the media player position when the frame was delivered, not an exact frame timestamp.
  */
 public final class ImageViewVideoSurfaceFactory {
 
@@ -27,29 +40,107 @@ public final class ImageViewVideoSurfaceFactory {
     private final PixelBufferRenderCallback renderCallback;
     private final PixelBufferVideoSurface videoSurface;
 
-    private PixelBuffer<ByteBuffer> pixelBuffer;
+    /**
+     * Signal that a new video frame is ready, the image is refreshed at most once per JavaFX pulse.
+     */
+    private final RenderCoordinator.SignalSlot frameReady;
+
+    private final FrameStatistics frameStatistics;
+
+    /**
+     * Supplier of the estimated media time of a frame delivered by the native media player, must not call the native media player.
+     */
+    private final LongSupplier frameTime;
+
+    /**
+     * Listener notified of the media time of each frame delivered by the native media player.
+     */
+    private final LongConsumer frameDelivered;
+
+    /**
+     * Number of video buffers to use, one means the native buffer is displayed directly.
+     */
+    private final int bufferCount;
+
+    /**
+     * Pixel buffer wrapping the native buffer, used only when there is a single video buffer.
+     */
+    private volatile PixelBuffer<ByteBuffer> pixelBuffer;
 
     /**
-     * Get a {@link VideoSurface} for an {@link ImageView}.
+     * Rotating video buffers, used only when there are multiple video buffers.
+     */
+    private volatile VideoBuffers videoBuffers;
+
+    /**
+     * Native buffer, and the media time of the frame most recently decoded into it, used only when there is a single video buffer.
+     */
+    private volatile ByteBuffer nativeBuffer;
+
+    private volatile long nativeBufferTime;
+
+    private volatile int width;
+
+    private volatile int height;
+
+    /**
+     * Create a {@link VideoSurface} factory for an {@link ImageView}.
      *
      * @param imageView image view used to render the video
-     * @return video surface
+     * @param bufferCount number of video buffers, one to display the native buffer directly, otherwise at least three
+     * @param renderCoordinator coordinator used to refresh the image view
+     * @param frameStatistics counters for the displayed and dropped frames
+     * @param frameTime supplier, invoked on a native thread, of the estimated media time of each delivered frame, {@link Long#MIN_VALUE} if not known
+     * @param frameDelivered listener notified, on a native thread, of the media time of each delivered frame
+     * @return video surface factory
      */
-    public static VideoSurface getVideoSurface(ImageView imageView) {
-        return new ImageViewVideoSurfaceFactory(imageView).getVideoSurface();
+    public static ImageViewVideoSurfaceFactory create(ImageView imageView, int bufferCount, RenderCoordinator renderCoordinator, FrameStatistics frameStatistics, LongSupplier frameTime, LongConsumer frameDelivered) {
+        return new ImageViewVideoSurfaceFactory(imageView, bufferCount, renderCoordinator, frameStatistics, frameTime, frameDelivered);
     }
 
-    private ImageViewVideoSurfaceFactory(ImageView imageView) {
+    private ImageViewVideoSurfaceFactory(ImageView imageView, int bufferCount, RenderCoordinator renderCoordinator, FrameStatistics frameStatistics, LongSupplier frameTime, LongConsumer frameDelivered) {
         this.imageView = imageView;
+        this.bufferCount = bufferCount > 1 ? Math.max(bufferCount, VideoBuffers.MINIMUM_BUFFER_COUNT) : 1;
+        this.frameReady = renderCoordinator.signalSlot(this::showFrame);
+        this.frameStatistics = frameStatistics;
+        this.frameTime = frameTime;
+        this.frameDelivered = frameDelivered;
         this.bufferFormatCallback = new PixelBufferBufferFormatCallback();
         this.renderCallback = new PixelBufferRenderCallback();
         this.videoSurface = new PixelBufferVideoSurface();
     }
 
-    private VideoSurface getVideoSurface() {
+    /**
+     * Get the video surface.
+     *
+     * @return video surface
+     */
+    public VideoSurface getVideoSurface() {
         return videoSurface;
     }
 
+    /**
+     * Copy the video frame that is currently displayed, directly from the video buffer.
+     * <p>
+     * The frame is tagged with the estimated media time when that frame was delivered by the native media player.
+     * <p>
+     * With a single video buffer the native media player may be decoding into the buffer while it is copied, so a frame captured during playback may tear -
+     * there is no such problem when paused, or with multiple video buffers.
+     *
+     * @return copy of the current frame, or empty if no frame has been displayed yet
+     */
+    public Optional<VideoFrame> captureFrame() {
+        VideoBuffers currentVideoBuffers = videoBuffers;
+        if (currentVideoBuffers != null) {
+            return Optional.ofNullable(currentVideoBuffers.capture());
+        }
+        ByteBuffer currentNativeBuffer = nativeBuffer;
+        if (currentNativeBuffer != null) {
+            return Optional.of(VideoFrame.copyOf(currentNativeBuffer, width, height, nativeBufferTime));
+        }
+        return Optional.empty();
+    }
+
     private class PixelBufferBufferFormatCallback implements BufferFormatCallback {
 
         private int sourceWidth;
@@ -64,16 +155,58 @@ public final class ImageViewVideoSurfaceFactory {
 
         @Override
         public void allocatedBuffers(ByteBuffer[] buffers) {
-            PixelFormat<ByteBuffer> pixelFormat = PixelFormat.getByteBgraPreInstance();
-            pixelBuffer = new PixelBuffer<>(sourceWidth, sourceHeight, buffers[0], pixelFormat);
-            imageView.setImage(new WritableImage(pixelBuffer));
+            width = sourceWidth;
+            height = sourceHeight;
+            if (bufferCount == 1) {
+                nativeBuffer = buffers[0];
+                PixelFormat<ByteBuffer> pixelFormat = PixelFormat.getByteBgraPreInstance();
+                pixelBuffer = new PixelBuffer<>(sourceWidth, sourceHeight, buffers[0], pixelFormat);
+                imageView.setImage(new WritableImage(pixelBuffer));
+            } else {
+                // The image is set when the first frame is displayed
+                videoBuffers = new VideoBuffers(bufferCount, sourceWidth, sourceHeight, buffers[0].capacity());
+            }
         }
     }
 
     private class PixelBufferRenderCallback implements RenderCallback {
         @Override
         public void display(MediaPlayer mediaPlayer, ByteBuffer[] nativeBuffers, BufferFormat bufferFormat) {
-            Platform.runLater(() -> pixelBuffer.updateBuffer(pb -> null));
+            // At most one update is ever outstanding, if the previous frame has not been shown yet it is superseded by this one
+            // Tag each frame with its estimated media time, without a round-trip to the native media player on this thread
+            long mediaTime = frameTime.getAsLong();
+            VideoBuffers currentVideoBuffers = videoBuffers;
+            boolean dropped;
+            if (currentVideoBuffers != null) {
+                dropped = currentVideoBuffers.write(nativeBuffers[0], mediaTime);
+                frameReady.signal();
+            } else {
+                nativeBufferTime = mediaTime;
+                dropped = frameReady.signal();
+            }
+            if (dropped) {
+                frameStatistics.frameDropped();
+            }
+            frameDelivered.accept(mediaTime);
+        }
+    }
+
+    private void showFrame() {
+        if (bufferCount == 1) {
+            PixelBuffer<ByteBuffer> currentPixelBuffer = pixelBuffer;
+            if (currentPixelBuffer != null) {
+                currentPixelBuffer.updateBuffer(pb -> null);
+                frameStatistics.frameDisplayed();
+            }
+        } else {
+            VideoBuffers currentVideoBuffers = videoBuffers;
+            WritableImage image = currentVideoBuffers != null ? currentVideoBuffers.display() : null;
+            if (image != null) {
+                if (imageView.getImage() != image) {
+                    imageView.setImage(image);
+                }
+                frameStatistics.frameDisplayed();
+            }
         }
     }
 
@@ -0,0 +1,159 @@
+package org.mbari.cthulhu.ui.videosurface;
+
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * A set of rotating off-heap video buffers, each with its own {@link PixelBuffer} and {@link WritableImage}.
+ * <p>
+ * At any time each buffer is in exactly one of the following states:
+ * <ul>
+ *     <li>free, available to receive the next decoded frame;</li>
+ *     <li>being written by the native media player thread;</li>
+ *     <li>the latest completed frame, waiting to be displayed;</li>
+ *     <li>being displayed.</li>
+ * </ul>
+ * The JavaFX application thread always displays the latest completed frame, while the native media player thread fills the next free buffer - so the buffer
+ * being displayed is never written to, and the decoder never waits for the display.
+ * <p>
+ * A completed frame that is superseded by a newer frame before it is displayed is returned directly to the free buffers.
+ * <p>
+ * This requires at least three buffers.
+ */
+final class VideoBuffers {
+
+    /**
+     * Smallest number of buffers that allows writing, waiting and displaying to proceed independently.
+     */
+    static final int MINIMUM_BUFFER_COUNT = 3;
+
+    private final int width;
+
+    private final int height;
+
+    private final BlockingQueue<Frame> free;
+
+    private final AtomicReference<Frame> latest = new AtomicReference<>();
+
+    /**
+     * Frame currently displayed.
+     * <p>
+     * Only changed on the JavaFX application thread, and only accessed while synchronised on this object so that a capture can not observe a frame that is
+     * being returned to the free buffers.
+     */
+    private Frame displayed;
+
+    /**
+     * Create video buffers.
+     *
+     * @param count number of buffers, at least {@link #MINIMUM_BUFFER_COUNT}
+     * @param width width of the video, in pixels
+     * @param height height of the video, in pixels
+     * @param capacity size of each buffer, in bytes
+     */
+    VideoBuffers(int count, int width, int height, int capacity) {
+        if (count < MINIMUM_BUFFER_COUNT) {
+            throw new IllegalArgumentException("At least " + MINIMUM_BUFFER_COUNT + " buffers are required");
+        }
+        this.width = width;
+        this.height = height;
+        this.free = new ArrayBlockingQueue<>(count);
+        PixelFormat<ByteBuffer> pixelFormat = PixelFormat.getByteBgraPreInstance();
+        for (int i = 0; i < count; i++) {
+            free.add(new Frame(new PixelBuffer<>(width, height, ByteBuffer.allocateDirect(capacity), pixelFormat)));
+        }
+    }
+
+    /**
+     * Copy a decoded frame into the next free buffer and make it the latest completed frame.
+     * <p>
+     * Invoked on a native media player thread.
+     *
+     * @param source native buffer containing the decoded frame
+     * @param mediaTime media time of the decoded frame
+     * @return {@code true} if a completed frame was superseded (or there was no free buffer) and so was dropped without being displayed
+     */
+    boolean write(ByteBuffer source, long mediaTime) {
+        Frame frame = free.poll();
+        if (frame == null) {
+            return true;
+        }
+        ByteBuffer target = frame.pixelBuffer.getBuffer();
+        target.put(0, source, 0, Math.min(source.capacity(), target.capacity()));
+        frame.mediaTime = mediaTime;
+        Frame superseded = latest.getAndSet(frame);
+        if (superseded != null) {
+            free.add(superseded);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the latest completed frame and mark it as displayed, releasing the previously displayed frame.
+     * <p>
+     * Invoked on the JavaFX application thread.
+     *
+     * @return image for the frame to display, or {@code null} if no new frame has completed since the last call
+     */
+    WritableImage display() {
+        Frame frame = latest.getAndSet(null);
+        if (frame == null) {
+            return null;
+        }
+        frame.pixelBuffer.updateBuffer(pixelBuffer -> null);
+        synchronized (this) {
+            if (displayed != null) {
+                free.add(displayed);
+            }
+            displayed = frame;
+        }
+        return frame.image;
+    }
+
+    /**
+     * Copy the frame that is currently displayed.
+     * <p>
+     * May be invoked on any thread.
+     *
+     * @return copy of the displayed frame, or {@code null} if no frame has been displayed yet
+     */
+    synchronized VideoFrame capture() {
+        return displayed != null ? VideoFrame.copyOf(displayed.pixelBuffer.getBuffer(), width, height, displayed.mediaTime) : null;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("free", free.size())
+            .toString();
+    }
+
+    /**
+     * A single video buffer.
+     */
+    private static final class Frame {
+
+        private final PixelBuffer<ByteBuffer> pixelBuffer;
+
+        private final WritableImage image;
+
+        /**
+         * Media time of the frame currently held in this buffer.
+         */
+        private volatile long mediaTime;
+
+        private Frame(PixelBuffer<ByteBuffer> pixelBuffer) {
+            this.pixelBuffer = pixelBuffer;
+            this.image = new WritableImage(pixelBuffer);
+        }
+    }
+}
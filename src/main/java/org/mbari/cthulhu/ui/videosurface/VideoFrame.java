@@ -0,0 +1,98 @@
+package org.mbari.cthulhu.ui.videosurface;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * An in-memory copy of a single decoded video frame, tagged with its media time.
+ * <p>
+ * Pixels are stored as packed 32-bit RGB values (the same layout as an {@link java.awt.image.BufferedImage#TYPE_INT_RGB} image), one per pixel, in row order.
+ */
+public final class VideoFrame {
+
+    private final int width;
+
+    private final int height;
+
+    private final int[] pixels;
+
+    private final long mediaTime;
+
+    /**
+     * Create a video frame.
+     *
+     * @param width width of the frame, in pixels
+     * @param height height of the frame, in pixels
+     * @param pixels packed pixel values, not copied
+     * @param mediaTime media time of the frame, in milliseconds
+     */
+    public VideoFrame(int width, int height, int[] pixels, long mediaTime) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+        this.mediaTime = mediaTime;
+    }
+
+    /**
+     * Copy a video frame from a native BGRA video buffer.
+     *
+     * @param source video buffer
+     * @param width width of the frame, in pixels
+     * @param height height of the frame, in pixels
+     * @param mediaTime media time of the frame, in milliseconds
+     * @return copied frame
+     */
+    public static VideoFrame copyOf(ByteBuffer source, int width, int height, long mediaTime) {
+        int[] pixels = new int[width * height];
+        // Little-endian BGRA bytes are exactly ARGB integers, the alpha is ignored by an RGB image
+        source.duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(0, pixels);
+        return new VideoFrame(width, height, pixels, mediaTime);
+    }
+
+    /**
+     * Get the width of the frame.
+     *
+     * @return width, in pixels
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Get the height of the frame.
+     *
+     * @return height, in pixels
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Get the pixels of the frame.
+     *
+     * @return packed pixel values, not a copy
+     */
+    public int[] pixels() {
+        return pixels;
+    }
+
+    /**
+     * Get the media time of the frame.
+     *
+     * @return media time, in milliseconds
+     */
+    public long mediaTime() {
+        return mediaTime;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("width", width)
+            .add("height", height)
+            .add("mediaTime", mediaTime)
+            .toString();
+    }
+}
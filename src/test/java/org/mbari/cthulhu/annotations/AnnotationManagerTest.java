@@ -6,10 +6,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mbari.cthulhu.model.Annotation;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mbari.cthulhu.app.CthulhuApplication.application;
 
@@ -32,23 +35,23 @@ public class AnnotationManagerTest {
 
     @Test
     public void currentReturnsEmptyListWhenNoAnnotations() {
-        assertTrue(annotationManager.current(0L).isEmpty());
+        assertTrue(current(0L).isEmpty());
     }
 
     @Test
     public void currentReturnsValueForInRange() {
         add(annotation("1", 1000L, 1999L));
 
-        assertEquals(1, annotationManager.current(1000L).size());
-        assertEquals(1, annotationManager.current(1999L).size());
+        assertEquals(1, current(1000L).size());
+        assertEquals(1, current(1999L).size());
     }
 
     @Test
     public void currentReturnsEmptyListForOutOfRange() {
         add(annotation("1", 1000L, 1999L));
 
-        assertEquals(0, annotationManager.current(999L).size());
-        assertEquals(0, annotationManager.current(2000).size());
+        assertEquals(0, current(999L).size());
+        assertEquals(0, current(2000).size());
     }
 
     @Test
@@ -56,13 +59,13 @@ public class AnnotationManagerTest {
         add(annotation("1", 1000L, 1999L));
         add(annotation("2", 1000L, 1999L));
 
-        assertEquals(2, annotationManager.current(1000L).size());
-        assertEquals("1", annotationManager.current(1000L).get(0).caption().get());
-        assertEquals("2", annotationManager.current(1000L).get(1).caption().get());
+        assertEquals(2, current(1000L).size());
+        assertEquals("1", current(1000L).get(0).caption().get());
+        assertEquals("2", current(1000L).get(1).caption().get());
 
-        assertEquals(2, annotationManager.current(1999L).size());
-        assertEquals("1", annotationManager.current(1999L).get(0).caption().get());
-        assertEquals("2", annotationManager.current(1999L).get(1).caption().get());
+        assertEquals(2, current(1999L).size());
+        assertEquals("1", current(1999L).get(0).caption().get());
+        assertEquals("2", current(1999L).get(1).caption().get());
     }
 
     @Test
@@ -70,15 +73,15 @@ public class AnnotationManagerTest {
         add(annotation("1", 1000, 1999));
         add(annotation("2", 1400, 1599));
 
-        assertEquals(1, annotationManager.current(1000L).size());
-        assertEquals("1", annotationManager.current(1000L).get(0).caption().get());
+        assertEquals(1, current(1000L).size());
+        assertEquals("1", current(1000L).get(0).caption().get());
 
-        assertEquals(2, annotationManager.current(1400L).size());
-        assertEquals("1", annotationManager.current(1400L).get(0).caption().get());
-        assertEquals("2", annotationManager.current(1400L).get(1).caption().get());
+        assertEquals(2, current(1400L).size());
+        assertEquals("1", current(1400L).get(0).caption().get());
+        assertEquals("2", current(1400L).get(1).caption().get());
 
-        assertEquals(1, annotationManager.current(1600L).size());
-        assertEquals("1", annotationManager.current(1600L).get(0).caption().get());
+        assertEquals(1, current(1600L).size());
+        assertEquals("1", current(1600L).get(0).caption().get());
     }
 
     @Test
@@ -86,10 +89,10 @@ public class AnnotationManagerTest {
         Annotation a1 = annotation("1", 1000, 1999);
 
         add(a1);
-        assertEquals(1, annotationManager.current(1000L).size());
+        assertEquals(1, current(1000L).size());
 
         remove(a1);
-        assertEquals(0, annotationManager.current(1000L).size());
+        assertEquals(0, current(1000L).size());
     }
 
     @Test
@@ -99,14 +102,14 @@ public class AnnotationManagerTest {
 
         add(a1);
         add(a2);
-        assertEquals(2, annotationManager.current(1000L).size());
+        assertEquals(2, current(1000L).size());
 
         remove(a2);
-        assertEquals(1, annotationManager.current(1000L).size());
-        assertEquals("1", annotationManager.current(1000L).get(0).caption().get());
+        assertEquals(1, current(1000L).size());
+        assertEquals("1", current(1000L).get(0).caption().get());
 
         remove(a1);
-        assertEquals(0, annotationManager.current(1000L).size());
+        assertEquals(0, current(1000L).size());
     }
 
     @Test
@@ -116,14 +119,14 @@ public class AnnotationManagerTest {
 
         add(a1);
         add(a2);
-        assertEquals(2, annotationManager.current(1400L).size());
+        assertEquals(2, current(1400L).size());
 
         remove(a2);
-        assertEquals(1, annotationManager.current(1400L).size());
-        assertEquals("1", annotationManager.current(1400L).get(0).caption().get());
+        assertEquals(1, current(1400L).size());
+        assertEquals("1", current(1400L).get(0).caption().get());
 
         remove(a1);
-        assertEquals(0, annotationManager.current(1400L).size());
+        assertEquals(0, current(1400L).size());
     }
 
     @Test
@@ -132,16 +135,173 @@ public class AnnotationManagerTest {
         Annotation a2 = annotation("2", 1000, 1999);
 
         add(a1);
-        assertEquals(1, annotationManager.current(1000L).size());
+        assertEquals(1, current(1000L).size());
 
         remove(a2);
-        assertEquals(1, annotationManager.current(1000L).size());
+        assertEquals(1, current(1000L).size());
+    }
+
+    @Test
+    public void currentAppliesTimeWindowPadding() {
+        application().settings().annotations().display().timeWindowMillis(100);
+        try {
+            add(annotation("1", 1000, 1999));
+        } finally {
+            application().settings().annotations().display().timeWindowMillis(0);
+        }
+
+        assertEquals(1, current(900L).size());
+        assertEquals(1, current(2099L).size());
+        assertEquals(0, current(899L).size());
+        assertEquals(0, current(2100L).size());
+    }
+
+    @Test
+    public void addingSameAnnotationAgainReplacesIt() {
+        Annotation a1 = annotation("1", 1000, 1999);
+
+        add(a1);
+        add(a1);
+        assertEquals(1, current(1000L).size());
+
+        remove(a1);
+        assertEquals(0, current(1000L).size());
+    }
+
+    @Test
+    public void currentReflectsChangesAfterPreviousQuery() {
+        add(annotation("1", 1000, 1999));
+        assertEquals(1, current(1000L).size());
+
+        add(annotation("2", 1000, 1999));
+        assertEquals(2, current(1000L).size());
+    }
+
+    @Test
+    public void cursorReportsOnlyEnteredAndExitedAnnotations() {
+        Annotation first = annotation("1", 1000, 1999);
+        Annotation second = annotation("2", 1500, 2999);
+        add(first);
+        add(second);
+
+        ActiveSetCursor cursor = annotationManager.cursor();
+        ActiveSetCursor.Delta delta = cursor.step(1000L);
+        assertTrue(delta.replaced());
+        assertEquals(singletonList(first), delta.entered());
+
+        delta = cursor.step(1400L);
+        assertTrue(delta.isEmpty());
+
+        delta = cursor.step(1500L);
+        assertFalse(delta.replaced());
+        assertEquals(singletonList(second), delta.entered());
+        assertTrue(delta.exited().isEmpty());
+
+        delta = cursor.step(2000L);
+        assertTrue(delta.entered().isEmpty());
+        assertEquals(singletonList(first), delta.exited());
+    }
+
+    @Test
+    public void cursorReportsOnlyTheAnnotationsThatChanged() {
+        Annotation first = annotation("1", 1000, 1999);
+        Annotation third = annotation("3", 1000, 1999);
+        add(first);
+        add(third);
+
+        ActiveSetCursor cursor = annotationManager.cursor();
+        cursor.step(1000L);
+
+        Annotation second = annotation("2", 1000, 1999);
+        add(second);
+        ActiveSetCursor.Delta delta = cursor.step(1001L);
+        assertFalse(delta.replaced());
+        assertEquals(singletonList(second), delta.entered());
+        assertTrue(delta.exited().isEmpty());
+        assertTrue(delta.changed().isEmpty());
+
+        remove(first);
+        delta = cursor.step(1002L);
+        assertFalse(delta.replaced());
+        assertTrue(delta.entered().isEmpty());
+        assertEquals(singletonList(first), delta.exited());
+
+        annotationManager.select(singletonList(third.id()));
+        delta = cursor.step(1002L);
+        assertFalse(delta.replaced());
+        assertTrue(delta.entered().isEmpty());
+        assertTrue(delta.exited().isEmpty());
+        assertEquals(singletonList(third), delta.changed());
+        assertTrue(delta.changed().get(0).selected());
+
+        delta = cursor.step(1003L);
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    public void cursorReplacesActiveSetAfterLoadOrBackwardStep() {
+        Annotation first = annotation("1", 1000, 1999);
+        add(first);
+
+        ActiveSetCursor cursor = annotationManager.cursor();
+        cursor.step(1000L);
+
+        Annotation second = annotation("2", 1000, 1999);
+        annotationManager.load(List.of(first, second));
+        ActiveSetCursor.Delta delta = cursor.step(1001L);
+        assertTrue(delta.replaced());
+        assertEquals(List.of(first, second), delta.entered());
+
+        delta = cursor.step(500L);
+        assertTrue(delta.replaced());
+        assertTrue(delta.entered().isEmpty());
+    }
+
+    @Test
+    public void loadReplacesAllAnnotations() {
+        Annotation previous = annotation("0", 1000, 1999);
+        add(previous);
+
+        Annotation later = annotation("2", 1500, 2500);
+        Annotation earlier = annotation("1", 1000, 1999);
+        Annotation duplicate = new Annotation(later.id(), 500, 700, new BoundingBox(0, 0, 0, 0), "2");
+        annotationManager.load(List.of(duplicate, later, earlier));
+
+        assertEquals(List.of(earlier, later), current(1500L));
+        remove(earlier);
+        assertEquals(List.of(later), current(1500L));
+    }
+
+    @Test
+    public void bulkApplyMergesWithExistingAnnotations() {
+        Annotation existing = annotation("0", 1000, 1999);
+        Annotation replaced = annotation("1", 1000, 1999);
+        add(existing);
+        add(replaced);
+
+        List<Annotation> added = new ArrayList<>();
+        added.add(new Annotation(replaced.id(), 5000, 5999, new BoundingBox(0, 0, 0, 0), "1"));
+        for (int i = 0; i < 2000; i++) {
+            added.add(annotation("n" + i, 10_000 - i, 10_999));
+        }
+        annotationManager.apply(List.of(), added, List.of());
+
+        assertEquals(List.of(existing), current(1500L));
+        assertEquals(List.of(added.get(0)), current(5500L));
+        assertEquals(2000, current(10_500L).size());
     }
 
     private static Annotation annotation(String caption, long start, long end) {
         return new Annotation(UUID.randomUUID(), start, end, new BoundingBox(0, 0, 0, 0), caption);
     }
 
+    /**
+     * Get the complete active set at a particular time, as reported by a newly positioned cursor.
+     */
+    private List<Annotation> current(long elapsedTime) {
+        return annotationManager.cursor().step(elapsedTime).entered();
+    }
+
     private void add(Annotation annotation) {
         annotationManager.add(singletonList(annotation));
     }
@@ -0,0 +1,96 @@
+package org.mbari.cthulhu.annotations;
+
+import javafx.geometry.BoundingBox;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mbari.cthulhu.model.Annotation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mbari.cthulhu.app.CthulhuApplication.application;
+
+/**
+ * Tests for the {@link AnnotationStore} component.
+ */
+public class AnnotationStoreTest {
+
+    private final AnnotationStore store = new AnnotationStore();
+
+    @BeforeAll
+    public static void prepare() {
+        application().settings().annotations().display().timeWindowMillis(0);
+    }
+
+    @Test
+    public void rowRoundTripsAnnotation() {
+        Annotation annotation = new Annotation(UUID.randomUUID(), 1000, 2000, new BoundingBox(10, 20, 30, 40), "Nanomia");
+        annotation.selected(true);
+
+        int row = store.append(annotation, 900);
+        Annotation copy = store.rows().annotation(row);
+
+        assertEquals(row, store.row(annotation.id()));
+        assertEquals(900, store.key(row));
+        assertEquals(annotation.id(), copy.id());
+        assertEquals(1000, copy.startTime());
+        assertEquals(2000, copy.endTime());
+        assertEquals(annotation.bounds(), copy.bounds());
+        assertEquals("Nanomia", copy.caption().orElseThrow());
+        assertTrue(copy.selected());
+    }
+
+    @Test
+    public void captionsAreEncoded() {
+        int first = store.append(new Annotation(UUID.randomUUID(), 0, 0, new BoundingBox(0, 0, 1, 1), new String("Aegina")), 0);
+        int second = store.append(new Annotation(UUID.randomUUID(), 0, 0, new BoundingBox(0, 0, 1, 1), new String("Aegina")), 0);
+
+        assertEquals(store.rows().annotation(first).captionId(), store.rows().annotation(second).captionId());
+        assertSame(store.rows().annotation(first).caption().orElseThrow(), store.rows().annotation(second).caption().orElseThrow());
+    }
+
+    @Test
+    public void removedRowsAreNotFoundButRemainReadable() {
+        Random random = new Random(3);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            UUID id = new UUID(random.nextInt(64), random.nextLong());
+            ids.add(id);
+            store.append(new Annotation(id, i, i, new BoundingBox(0, 0, 1, 1), null), i);
+        }
+        AnnotationStore.Rows rows = store.rows();
+        for (int i = 0; i < ids.size(); i++) {
+            if (i % 4 != 0) {
+                store.remove(store.row(ids.get(i)));
+            }
+        }
+
+        assertEquals(2500, store.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i % 4 != 0 ? -1 : i, store.row(ids.get(i)));
+            assertEquals(ids.get(i), rows.annotation(i).id());
+        }
+        assertTrue(store.isSparse());
+    }
+
+    @Test
+    public void managerCompactsStoreAfterRemovals() {
+        AnnotationManager annotationManager = new AnnotationManager();
+        List<Annotation> annotations = new ArrayList<>();
+        for (int i = 0; i < 6000; i++) {
+            annotations.add(new Annotation(UUID.randomUUID(), i * 100L, i * 100L + 10, new BoundingBox(0, 0, 1, 1), "caption"));
+        }
+        annotationManager.add(annotations);
+        annotationManager.remove(annotations.subList(0, 5000));
+
+        assertEquals(List.of(annotations.get(5500)), annotationManager.cursor().step(550_005).entered());
+        assertTrue(annotationManager.cursor().step(450_005).entered().isEmpty());
+        annotationManager.remove(List.of(annotations.get(5500)));
+        assertTrue(annotationManager.cursor().step(550_005).entered().isEmpty());
+    }
+}
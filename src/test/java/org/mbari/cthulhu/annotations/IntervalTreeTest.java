@@ -0,0 +1,136 @@
+package org.mbari.cthulhu.annotations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@link IntervalTree} component.
+ */
+public class IntervalTreeTest {
+
+    private IntervalTree tree = new IntervalTree();
+
+    /**
+     * Label for each inserted interval, indexed by sequence number.
+     */
+    private final List<String> labels = new ArrayList<>();
+
+    @Test
+    public void queryReturnsNothingWhenEmpty() {
+        assertTrue(query(tree, 0).isEmpty());
+    }
+
+    @Test
+    public void queryIncludesBothEndpoints() {
+        insert(1000, 1999, "1");
+
+        assertEquals(asList("1"), query(tree, 1000));
+        assertEquals(asList("1"), query(tree, 1999));
+        assertTrue(query(tree, 999).isEmpty());
+        assertTrue(query(tree, 2000).isEmpty());
+    }
+
+    @Test
+    public void queryReturnsIdenticalIntervalsInSequenceOrder() {
+        insert(1000, 1999, "1");
+        insert(1000, 1999, "2");
+        insert(1000, 1999, "3");
+
+        assertEquals(asList("1", "2", "3"), query(tree, 1500));
+    }
+
+    @Test
+    public void removeUnknownIntervalReturnsSameTree() {
+        insert(1000, 1999, "1");
+
+        assertSame(tree, tree.remove(1000, 99));
+    }
+
+    @Test
+    public void previousVersionsAreUnchanged() {
+        insert(1000, 1999, "a");
+        IntervalTree before = tree;
+        long b = insert(500, 2500, "b");
+
+        IntervalTree removed = tree.remove(500, b);
+
+        assertEquals(asList("a"), query(before, 1500));
+        assertEquals(asList("b", "a"), query(tree, 1500));
+        assertEquals(asList("a"), query(removed, 1500));
+    }
+
+    @Test
+    public void queryMatchesBruteForce() {
+        Random random = new Random(42);
+        List<long[]> intervals = new ArrayList<>();
+        // Enough operations to force several compactions
+        for (int i = 0; i < 20000; i++) {
+            if (!intervals.isEmpty() && random.nextInt(3) == 0) {
+                long[] interval = intervals.remove(random.nextInt(intervals.size()));
+                tree = tree.remove(interval[0], interval[2]);
+            } else {
+                long start = random.nextInt(100_000);
+                long end = start + random.nextInt(5_000);
+                intervals.add(new long[] {start, end, insert(start, end, start + "-" + end)});
+            }
+        }
+        for (int i = 0; i < 500; i++) {
+            long point = random.nextInt(105_000);
+            long expected = intervals.stream().filter(interval -> interval[0] <= point && interval[1] >= point).count();
+            assertEquals(expected, query(tree, point).size());
+        }
+        assertEquals(intervals.size(), tree.size());
+    }
+
+    @Test
+    public void builtTreeMatchesBruteForce() {
+        Random random = new Random(7);
+        List<long[]> intervals = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            long start = random.nextInt(100_000);
+            intervals.add(new long[] {start, start + random.nextInt(5_000)});
+        }
+        intervals.sort((a, b) -> Long.compare(a[0], b[0]));
+        IntervalTree built = IntervalTree.build(intervals.size(), index -> intervals.get(index)[0], index -> intervals.get(index)[1], 0);
+
+        for (int i = 0; i < 500; i++) {
+            long point = random.nextInt(105_000);
+            long expected = intervals.stream().filter(interval -> interval[0] <= point && interval[1] >= point).count();
+            List<Long> result = new ArrayList<>();
+            built.visitContaining(point, (start, end, sequence) -> result.add(sequence));
+            assertEquals(expected, result.size());
+        }
+        // The built tree remains usable as an ordinary tree
+        long[] first = intervals.get(0);
+        assertEquals(intervals.size() - 1, built.remove(first[0], 0).size());
+        assertEquals(intervals.size() + 1, built.insert(50, 60, intervals.size()).size());
+    }
+
+    @Test
+    public void buildRejectsUnsortedValues() {
+        List<Long> values = asList(2L, 1L);
+        assertThrows(IllegalArgumentException.class, () -> IntervalTree.build(values.size(), values::get, values::get, 0));
+    }
+
+    private long insert(long start, long end, String label) {
+        long sequence = labels.size();
+        labels.add(label);
+        tree = tree.insert(start, end, sequence);
+        return sequence;
+    }
+
+    private List<String> query(IntervalTree tree, long point) {
+        List<String> result = new ArrayList<>();
+        tree.visitContaining(point, (start, end, sequence) -> result.add(labels.get((int) sequence)));
+        return result;
+    }
+}
@@ -0,0 +1,73 @@
+package org.mbari.cthulhu.annotations;
+
+import javafx.geometry.BoundingBox;
+import org.junit.jupiter.api.Test;
+import org.mbari.cthulhu.model.Annotation;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for the {@link LocalizationIngest} component.
+ */
+public class LocalizationIngestTest {
+
+    private final BlockingQueue<LocalizationIngest.Batch> batches = new LinkedBlockingQueue<>();
+
+    @Test
+    public void changesWithinWindowAreAppliedAsOneBatch() throws InterruptedException {
+        LocalizationIngest ingest = new LocalizationIngest(batches::add, Runnable::run, 50, 1000);
+        Annotation first = annotation();
+        Annotation second = annotation();
+
+        ingest.added(List.of(first));
+        ingest.added(List.of(second));
+
+        LocalizationIngest.Batch batch = batches.poll(1, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        assertEquals(List.of(first, second), batch.added());
+        assertNull(batches.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void removeThenAddCollapsesToReplacement() {
+        LocalizationIngest ingest = new LocalizationIngest(batches::add, Runnable::run, 10_000, 1000);
+        Annotation original = annotation();
+        Annotation edited = new Annotation(original.id(), 0, 10, new BoundingBox(5, 5, 10, 10), "edited");
+        Annotation ephemeral = annotation();
+
+        ingest.removed(List.of(original));
+        ingest.added(List.of(edited));
+        ingest.added(List.of(ephemeral));
+        ingest.removed(List.of(ephemeral));
+        ingest.flush();
+
+        LocalizationIngest.Batch batch = batches.remove();
+        assertEquals(List.of(edited), batch.replaced());
+        assertEquals(List.of(ephemeral), batch.removed());
+        assertEquals(List.of(), batch.added());
+        assertEquals(List.of(), batch.updated());
+    }
+
+    @Test
+    public void sizeLimitTriggersBatchWithoutWaiting() throws InterruptedException {
+        LocalizationIngest ingest = new LocalizationIngest(batches::add, Runnable::run, 10_000, 3);
+
+        ingest.added(List.of(annotation(), annotation(), annotation()));
+
+        LocalizationIngest.Batch batch = batches.poll(1, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        assertEquals(3, batch.added().size());
+    }
+
+    private static Annotation annotation() {
+        return new Annotation(UUID.randomUUID(), 0, 10, new BoundingBox(0, 0, 10, 10), "caption");
+    }
+}
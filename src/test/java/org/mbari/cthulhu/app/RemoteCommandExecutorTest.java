@@ -0,0 +1,128 @@
+package org.mbari.cthulhu.app;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@link RemoteCommandExecutor} component.
+ */
+public class RemoteCommandExecutorTest {
+
+    private static final UUID FIRST = UUID.randomUUID();
+
+    private static final UUID SECOND = UUID.randomUUID();
+
+    private final RemoteCommandExecutor commands = new RemoteCommandExecutor();
+
+    /**
+     * Released at the end of each test, so a blocked command never outlives its test.
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void teardown() {
+        release.countDown();
+        commands.release(FIRST);
+        commands.release(SECOND);
+    }
+
+    @Test
+    public void commandsForOnePlayerRunInOrder() throws Exception {
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> expected = new ArrayList<>();
+        CompletableFuture<Integer> last = null;
+        for (int i = 0; i < 200; i++) {
+            int index = i;
+            expected.add(index);
+            if (i % 2 == 0) {
+                commands.submit("submit", FIRST, () -> executed.add(index));
+            } else {
+                last = commands.enqueue("enqueue", FIRST, () -> {
+                    executed.add(index);
+                    return index;
+                });
+            }
+        }
+
+        assertEquals(199, last.get(5, TimeUnit.SECONDS));
+        assertEquals(expected, executed);
+    }
+
+    @Test
+    public void slowCommandDoesNotHoldUpOtherPlayers() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocked = commands.enqueue("slow", FIRST, () -> {
+            started.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Optional.of("second"), commands.query("elapsedTime", SECOND, () -> Optional.of("second")));
+        assertTrue(commands.execute("play", SECOND, () -> true));
+        assertFalse(blocked.isDone());
+
+        // The same player is still held up behind the slow command
+        CompletableFuture<Boolean> queued = commands.enqueue("pause", FIRST, () -> true);
+        assertFalse(queued.isDone());
+        release.countDown();
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertTrue(blocked.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failuresArePropagatedAndCounted() throws Exception {
+        ExecutionException failure = assertThrows(ExecutionException.class, () ->
+            commands.enqueue("framecapture", FIRST, () -> {
+                throw new IOException("capture failed");
+            }).get(5, TimeUnit.SECONDS)
+        );
+        assertInstanceOf(IOException.class, failure.getCause());
+
+        assertFalse(commands.execute("open", FIRST, () -> {
+            throw new IllegalStateException("open failed");
+        }));
+        assertFalse(commands.execute("open", FIRST, () -> false));
+        assertEquals(Optional.empty(), commands.query("elapsedTime", FIRST, () -> {
+            throw new IllegalStateException("query failed");
+        }));
+
+        // A failed command does not stop the commands queued after it
+        assertTrue(commands.enqueue("play", FIRST, () -> true).get(5, TimeUnit.SECONDS));
+
+        assertEquals(1, commands.metrics().get("framecapture").failures());
+        assertEquals(2, commands.metrics().get("open").count());
+        assertEquals(2, commands.metrics().get("open").failures());
+        assertEquals(1, commands.metrics().get("elapsedTime").failures());
+        assertEquals(0, commands.metrics().get("play").failures());
+    }
+
+    @Test
+    public void executedCommandThatTimesOutBeforeStartingIsAbandoned() throws Exception {
+        commands.submit("slow", FIRST, () -> release.await(10, TimeUnit.SECONDS));
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+        assertFalse(commands.execute("open", FIRST, () -> executed.add("open")));
+
+        release.countDown();
+        assertTrue(commands.enqueue("play", FIRST, () -> executed.add("play")).get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("play"), executed);
+        assertEquals(1, commands.metrics().get("open").timeouts());
+    }
+}
@@ -0,0 +1,42 @@
+package org.mbari.cthulhu.capture;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the {@link FrameCaptureBatch} component.
+ */
+public class FrameCaptureBatchTest {
+
+    private static final File DIRECTORY = new File("frames");
+
+    @Test
+    public void timesAreSortedWithoutDuplicates() {
+        FrameCaptureBatch batch = FrameCaptureBatch.atTimes(List.of(5000L, 1000L, 3000L, 1000L), DIRECTORY);
+        assertEquals(List.of(1000L, 3000L, 5000L), batch.times(0));
+    }
+
+    @Test
+    public void strideCoversWholeLength() {
+        FrameCaptureBatch batch = FrameCaptureBatch.everyMillis(400, DIRECTORY);
+        assertEquals(List.of(0L, 400L, 800L), batch.times(1000));
+        assertThrows(IllegalStateException.class, () -> batch.times(0));
+    }
+
+    @Test
+    public void fileIsNamedAfterRequestedTime() {
+        FrameCaptureBatch batch = FrameCaptureBatch.atTimes(List.of(12345L), DIRECTORY).withImageFormat("JPG");
+        assertEquals(new File(DIRECTORY, "frame-000012345.jpg"), batch.file(12345));
+    }
+
+    @Test
+    public void invalidBatchesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> FrameCaptureBatch.atTimes(List.of(-1L), DIRECTORY));
+        assertThrows(IllegalArgumentException.class, () -> FrameCaptureBatch.everyMillis(0, DIRECTORY));
+    }
+}
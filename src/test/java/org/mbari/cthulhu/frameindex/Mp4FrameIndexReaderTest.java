@@ -0,0 +1,157 @@
+package org.mbari.cthulhu.frameindex;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@link Mp4FrameIndexReader} and {@link FrameIndex} components.
+ */
+public class Mp4FrameIndexReaderTest {
+
+    /**
+     * 30000/1001 frames per second, the awkward NTSC rate where a frame is not a whole number of milliseconds.
+     */
+    private static final int TIMESCALE = 30000;
+
+    private static final int FRAME_DURATION = 1001;
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void indexesPresentationOrderAndKeyframes() throws IOException {
+        FrameIndex frameIndex = read(mp4(true)).orElseThrow();
+
+        assertEquals(6, frameIndex.frameCount());
+        assertEquals(2, frameIndex.keyframeCount());
+        // Frame 1 starts at 33.366ms, so is addressed as 34ms
+        assertEquals(34, frameIndex.nextFrameTime(0));
+        // Media player reports the start of frame 1 rounded down, which must still be frame 1
+        assertEquals(67, frameIndex.nextFrameTime(33));
+        assertEquals(34, frameIndex.previousFrameTime(67));
+        assertEquals(0, frameIndex.previousFrameTime(0));
+        assertEquals(167, frameIndex.nextFrameTime(1000));
+        assertEquals(101, frameIndex.snap(120));
+        assertEquals(0, frameIndex.keyframeBefore(99));
+        assertEquals(101, frameIndex.keyframeBefore(101));
+    }
+
+    @Test
+    public void everyFrameIsKeyframeWithoutSyncSamples() throws IOException {
+        FrameIndex frameIndex = read(mp4(false)).orElseThrow();
+        assertEquals(6, frameIndex.keyframeCount());
+    }
+
+    @Test
+    public void quickTimeDataHandlerDoesNotReplaceMediaHandler() throws IOException {
+        byte[] stbl = box("stbl", fullBox("stts", 1, 6, FRAME_DURATION));
+        // QuickTime media information has its own data handler, with component type "dhlr" and subtype "alis"
+        byte[] video = box("trak", box("mdia", mdhd(), hdlr("vide"), box("minf", hdlr("alis"), stbl)));
+        FrameIndex frameIndex = read(concat(box("ftyp", "qt  ".getBytes(StandardCharsets.ISO_8859_1)), box("moov", video))).orElseThrow();
+        assertEquals(6, frameIndex.frameCount());
+    }
+
+    @Test
+    public void fragmentedFileHasNoIndex() throws IOException {
+        // Sample tables in the metadata box are empty, the samples are described by fragments after it
+        byte[] stbl = box("stbl", fullBox("stts", 0));
+        byte[] video = box("trak", box("mdia", mdhd(), hdlr("vide"), box("minf", stbl)));
+        byte[] fragment = box("moof", box("mfhd", new byte[8]));
+        assertTrue(read(concat(box("ftyp", "iso6".getBytes(StandardCharsets.ISO_8859_1)), box("moov", video), fragment, box("mdat", new byte[64]))).isEmpty());
+    }
+
+    @Test
+    public void nonMp4FileHasNoIndex() throws IOException {
+        File file = new File(directory, "not.mp4");
+        Files.write(file.toPath(), "This is not a video".getBytes(StandardCharsets.UTF_8));
+        Optional<FrameIndex> frameIndex;
+        try {
+            frameIndex = Mp4FrameIndexReader.read(file);
+        } catch (IOException e) {
+            frameIndex = Optional.empty();
+        }
+        assertTrue(frameIndex.isEmpty());
+    }
+
+    @Test
+    public void serialisedFormRoundTrips() throws IOException {
+        FrameIndex frameIndex = read(mp4(true)).orElseThrow();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        frameIndex.write(new DataOutputStream(bytes));
+        FrameIndex copy = FrameIndex.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(frameIndex.frameCount(), copy.frameCount());
+        assertEquals(frameIndex.nextFrameTime(33), copy.nextFrameTime(33));
+        assertEquals(frameIndex.keyframeBefore(150), copy.keyframeBefore(150));
+    }
+
+    private Optional<FrameIndex> read(byte[] content) throws IOException {
+        File file = new File(directory, "test.mp4");
+        Files.write(file.toPath(), content);
+        return Mp4FrameIndexReader.read(file);
+    }
+
+    /**
+     * Create a minimal MP4 file, with an audio track followed by a video track of six frames in two groups of pictures, decoded as I P B I P B.
+     *
+     * @param syncSamples <code>true</code> to include a sync sample table
+     * @return file content
+     */
+    private static byte[] mp4(boolean syncSamples) {
+        byte[] stts = fullBox("stts", 1, 6, FRAME_DURATION);
+        // Composition offsets put each B frame before the preceding P frame, and delay everything by one frame
+        byte[] ctts = fullBox("ctts", 6, 1, FRAME_DURATION, 1, 2 * FRAME_DURATION, 1, 0, 1, FRAME_DURATION, 1, 2 * FRAME_DURATION, 1, 0);
+        byte[] stbl = syncSamples ? box("stbl", stts, ctts, fullBox("stss", 2, 1, 4)) : box("stbl", stts, ctts);
+        byte[] video = box("trak", box("mdia", mdhd(), hdlr("vide"), box("minf", stbl)));
+        byte[] audio = box("trak", box("mdia", mdhd(), hdlr("soun"), box("minf", box("stbl", fullBox("stts", 1, 100, 1024)))));
+        return concat(box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1)), box("moov", audio, video), box("mdat", new byte[64]));
+    }
+
+    private static byte[] mdhd() {
+        // Creation time, modification time, timescale, duration, language and quality
+        return fullBox("mdhd", 0, 0, TIMESCALE, 6 * FRAME_DURATION, 0);
+    }
+
+    private static byte[] hdlr(String handler) {
+        ByteBuffer body = ByteBuffer.allocate(24);
+        body.putInt(0).putInt(0).put(handler.getBytes(StandardCharsets.ISO_8859_1));
+        return box("hdlr", body.array());
+    }
+
+    private static byte[] fullBox(String type, int... values) {
+        ByteBuffer body = ByteBuffer.allocate(4 + values.length * 4);
+        body.putInt(0);
+        for (int value : values) {
+            body.putInt(value);
+        }
+        return box(type, body.array());
+    }
+
+    private static byte[] box(String type, byte[]... children) {
+        byte[] body = concat(children);
+        ByteBuffer box = ByteBuffer.allocate(8 + body.length);
+        box.putInt(8 + body.length).put(type.getBytes(StandardCharsets.ISO_8859_1)).put(body);
+        return box.array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
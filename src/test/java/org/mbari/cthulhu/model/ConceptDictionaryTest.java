@@ -0,0 +1,40 @@
+package org.mbari.cthulhu.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mbari.cthulhu.model.ConceptDictionary.conceptDictionary;
+
+/**
+ * Tests for the {@link ConceptDictionary} component.
+ */
+public class ConceptDictionaryTest {
+
+    @Test
+    public void equalConceptsShareIdentifier() {
+        int id = conceptDictionary().id(new String("Bathochordaeus"));
+
+        assertEquals(id, conceptDictionary().id(new String("Bathochordaeus")));
+        assertNotEquals(id, conceptDictionary().id("Bathochordaeus charon"));
+        assertEquals("Bathochordaeus", conceptDictionary().concept(id));
+    }
+
+    @Test
+    public void missingConceptHasNoIdentifier() {
+        assertEquals(ConceptDictionary.NONE, conceptDictionary().id(null));
+        assertEquals(ConceptDictionary.NONE, conceptDictionary().id(""));
+        assertNull(conceptDictionary().concept(ConceptDictionary.NONE));
+    }
+
+    @Test
+    public void identifiersRemainValidAsDictionaryGrows() {
+        int first = conceptDictionary().id("Solmissus");
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("concept-" + i, conceptDictionary().concept(conceptDictionary().id("concept-" + i)));
+        }
+
+        assertEquals("Solmissus", conceptDictionary().concept(first));
+    }
+}
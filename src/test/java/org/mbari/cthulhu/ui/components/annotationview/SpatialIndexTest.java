@@ -0,0 +1,65 @@
+package org.mbari.cthulhu.ui.components.annotationview;
+
+import javafx.geometry.BoundingBox;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the {@link SpatialIndex} component.
+ */
+public class SpatialIndexTest {
+
+    private SpatialIndex<String> index;
+
+    @BeforeEach
+    public void setup() {
+        index = new SpatialIndex<>(10);
+    }
+
+    @Test
+    public void pointQueryReturnsTopmostFirst() {
+        index.put("a", new BoundingBox(0, 0, 50, 50));
+        index.put("b", new BoundingBox(20, 20, 50, 50));
+        index.put("c", new BoundingBox(100, 100, 5, 5));
+
+        assertEquals(List.of("b", "a"), index.at(30, 30));
+        assertEquals(List.of("a"), index.at(5, 5));
+        assertEquals(List.of("c"), index.at(105, 105));
+        assertEquals(List.of(), index.at(80, 5));
+    }
+
+    @Test
+    public void movedItemKeepsStackingOrder() {
+        index.put("a", new BoundingBox(0, 0, 5, 5));
+        index.put("b", new BoundingBox(50, 50, 5, 5));
+        index.put("a", new BoundingBox(48, 48, 5, 5));
+
+        assertEquals(List.of("b", "a"), index.at(51, 51));
+        assertEquals(List.of(), index.at(2, 2));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void regionQueryFindsIntersectingItems() {
+        index.put("a", new BoundingBox(0, 0, 5, 5));
+        index.put("b", new BoundingBox(30, 30, 5, 5));
+        index.put("c", new BoundingBox(-40, 60, 100, 5));
+
+        assertEquals(List.of("c", "b"), index.intersecting(new BoundingBox(25, 25, 40, 40)));
+        assertEquals(List.of("a"), index.intersecting(new BoundingBox(4, 4, 1, 1)));
+    }
+
+    @Test
+    public void removedItemIsNotFound() {
+        index.put("a", new BoundingBox(0, 0, 25, 25));
+        index.remove("a");
+        index.remove("missing");
+
+        assertEquals(List.of(), index.at(10, 10));
+        assertEquals(0, index.size());
+    }
+}
@@ -0,0 +1,84 @@
+package org.mbari.cthulhu.ui.player;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@link FrameArrival} component.
+ */
+public class FrameArrivalTest {
+
+    private final FrameArrival frameArrival = new FrameArrival();
+
+    /**
+     * Media time of the frame currently on the simulated video surface.
+     */
+    private final AtomicLong displayed = new AtomicLong(1000);
+
+    @Test
+    public void captureWaitsForFrameAfterSeek() throws Exception {
+        frameArrival.seeking(5000, 40);
+        // Captures the frame on the surface at the moment the wait completes
+        CompletableFuture<Long> captured = frameArrival.await().thenApply(arrived -> displayed.get());
+
+        // Frames still arriving from before the seek, or with no known time yet, are not the result of the seek
+        deliver(1040);
+        deliver(Long.MIN_VALUE);
+        deliver(4900);
+        assertFalse(captured.isDone());
+
+        deliver(5000);
+        assertEquals(5000L, captured.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void captureIsImmediateWithoutSeek() {
+        assertTrue(frameArrival.await().isDone());
+
+        frameArrival.seeking(5000, 40);
+        deliver(5020);
+        assertTrue(frameArrival.await().isDone());
+    }
+
+    @Test
+    public void newerSeekReplacesTarget() throws Exception {
+        frameArrival.seeking(5000, 40);
+        CompletableFuture<Long> captured = frameArrival.await().thenApply(arrived -> displayed.get());
+        frameArrival.seeking(8000, 40);
+
+        deliver(5000);
+        assertFalse(captured.isDone());
+        deliver(8000);
+        assertEquals(8000L, captured.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void waitGivesUpWhenNoFrameArrives() throws Exception {
+        FrameArrival shortTimeout = new FrameArrival(50);
+        shortTimeout.seeking(5000, 40);
+
+        shortTimeout.await().get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void resetReleasesWaiters() {
+        frameArrival.seeking(5000, 40);
+        CompletableFuture<Void> arrived = frameArrival.await();
+
+        frameArrival.reset();
+        assertTrue(arrived.isDone());
+        assertTrue(frameArrival.await().isDone());
+    }
+
+    private void deliver(long mediaTime) {
+        displayed.set(mediaTime);
+        frameArrival.frameDelivered(mediaTime);
+    }
+}
@@ -0,0 +1,82 @@
+package org.mbari.cthulhu.ui.player;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the {@link MediaClockModel} component.
+ */
+public class MediaClockModelTest {
+
+    private static final long MS = 1_000_000L;
+
+    private MediaClockModel model;
+
+    @BeforeEach
+    public void setup() {
+        model = new MediaClockModel();
+    }
+
+    @Test
+    public void singleSampleUsesCommandedRate() {
+        model.reset(0, 1000);
+        assertEquals(1100, model.time(100 * MS));
+
+        model.rate(0.25, 100 * MS);
+        assertEquals(1125, model.time(200 * MS));
+    }
+
+    @Test
+    public void fitTracksActualRateDespiteJitter() {
+        Random random = new Random(1);
+        model.rate(4.0, 0);
+        model.reset(0, 0);
+        // Samples every 250ms at 4x, with up to +/- 40ms of reporting jitter
+        for (long t = 250; t <= 5000; t += 250) {
+            model.sample(t * MS, 4 * t + random.nextInt(81) - 40);
+        }
+        long expected = 4 * 5500;
+        assertTrue(Math.abs(model.time(5500 * MS) - expected) < 40, "time should stay locked to the playback rate");
+    }
+
+    @Test
+    public void slewsTowardsNewSampleInsteadOfSnapping() {
+        model.reset(0, 0);
+        assertEquals(100, model.time(100 * MS));
+
+        // The player reports that it is actually 80ms ahead
+        model.sample(100 * MS, 180);
+        long justAfter = model.time(101 * MS);
+        assertTrue(justAfter < 110, "time should not jump to the new sample");
+
+        // Once slewed, the time has moved towards the new sample - but a single sample only partially outweighs the commanded rate
+        long afterSlew = model.time(600 * MS);
+        assertTrue(afterSlew > 620 && afterSlew <= 680, "time should converge towards the new sample");
+    }
+
+    @Test
+    public void neverMovesBackwardsWhilePlaying() {
+        model.reset(0, 0);
+        long before = model.time(200 * MS);
+
+        // The player reports that it is actually behind
+        model.sample(200 * MS, 120);
+        assertTrue(model.time(201 * MS) >= before);
+    }
+
+    @Test
+    public void discontinuityRestartsModel() {
+        model.reset(0, 0);
+        model.sample(100 * MS, 100);
+
+        // e.g. a seek
+        model.sample(200 * MS, 60_000);
+        assertEquals(60_000, model.time(200 * MS));
+        assertEquals(60_100, model.time(300 * MS));
+    }
+}
@@ -0,0 +1,28 @@
+package org.mbari.cthulhu.ui.player;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the {@link PlaybackClock} component.
+ */
+public class PlaybackClockTest {
+
+    private final PlaybackClock clock = new PlaybackClock(time -> {});
+
+    @Test
+    public void reportedTimeIsUnknownAfterSeekUntilReportedAgain() {
+        assertEquals(PlaybackClock.UNKNOWN_TIME, clock.reportedTime(System.nanoTime()));
+
+        clock.sync(1000);
+        assertEquals(1000, clock.reportedTime(System.nanoTime()));
+
+        // Seeking close to the current time must not leave the old time in place, a frame from before the seek would look like the result of the seek
+        clock.reset(1100);
+        assertEquals(PlaybackClock.UNKNOWN_TIME, clock.reportedTime(System.nanoTime()));
+
+        clock.sync(1100);
+        assertEquals(1100, clock.reportedTime(System.nanoTime()));
+    }
+}
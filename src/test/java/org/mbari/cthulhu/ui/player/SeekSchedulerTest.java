@@ -0,0 +1,73 @@
+package org.mbari.cthulhu.ui.player;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for the {@link SeekScheduler} component.
+ */
+public class SeekSchedulerTest {
+
+    private final BlockingQueue<Long> seeks = new LinkedBlockingQueue<>();
+
+    private final SeekScheduler scheduler = new SeekScheduler(seeks::add);
+
+    @Test
+    public void onlyNewestPendingSeekIsDispatched() throws InterruptedException {
+        scheduler.seek(1000);
+        assertEquals(1000L, seeks.poll(1, TimeUnit.SECONDS));
+
+        // Still in flight, so these wait and replace one another
+        scheduler.seek(2000);
+        scheduler.seek(3000);
+        scheduler.seek(4000);
+        assertEquals(4000, scheduler.targetTime(0));
+        assertNull(seeks.poll(20, TimeUnit.MILLISECONDS));
+
+        scheduler.frameDelivered(1010);
+        assertEquals(4000L, seeks.poll(1, TimeUnit.SECONDS));
+        scheduler.frameDelivered(4000);
+        assertEquals(List.of(), List.copyOf(seeks));
+        assertEquals(500, scheduler.targetTime(500));
+    }
+
+    @Test
+    public void frameWithUnknownTimeDoesNotCompleteSeek() throws InterruptedException {
+        scheduler.seek(0);
+        assertEquals(0L, seeks.poll(1, TimeUnit.SECONDS));
+        scheduler.seek(2000);
+
+        // A frame delivered before the media player reported a time after the seek
+        scheduler.frameDelivered(Long.MIN_VALUE);
+        assertNull(seeks.poll(20, TimeUnit.MILLISECONDS));
+        scheduler.frameDelivered(0);
+        assertEquals(2000L, seeks.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void seekWithoutFrameTimesOut() throws InterruptedException {
+        scheduler.seek(1000);
+        assertEquals(1000L, seeks.poll(1, TimeUnit.SECONDS));
+        scheduler.seek(2000);
+
+        // No frame is ever delivered for the first seek
+        assertEquals(2000L, seeks.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void resetAbandonsOutstandingSeeks() throws InterruptedException {
+        scheduler.seek(1000);
+        assertEquals(1000L, seeks.poll(1, TimeUnit.SECONDS));
+        scheduler.seek(2000);
+        scheduler.reset();
+        assertEquals(500, scheduler.targetTime(500));
+        assertNull(seeks.poll(500, TimeUnit.MILLISECONDS));
+    }
+}